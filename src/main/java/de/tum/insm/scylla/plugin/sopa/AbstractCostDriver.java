@@ -10,6 +10,8 @@ public class AbstractCostDriver extends CostDriver {
 
     @NonNull
     protected List<ConcreteCostDriver> children;
+    // Calculator of all children that choose none themselves, the run-wide one if null
+    private CostCalculatorType calculatorType;
 
     public AbstractCostDriver(@NonNull String id, @NonNull List<ConcreteCostDriver> children) {
         super(id);
@@ -24,6 +26,14 @@ public class AbstractCostDriver extends CostDriver {
         children.add((ConcreteCostDriver) concreteCostDriver);
     }
 
+    public CostCalculatorType getCalculatorType() {
+        return calculatorType;
+    }
+
+    public void setCalculatorType(CostCalculatorType calculatorType) {
+        this.calculatorType = calculatorType;
+    }
+
 
     @Override
     public boolean equals(Object obj) {
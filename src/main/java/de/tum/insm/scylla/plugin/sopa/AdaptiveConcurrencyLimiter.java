@@ -0,0 +1,215 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the number of requests in flight against a server by a limit that adapts to how the server copes.
+ *
+ * The limit grows additively while requests succeed with latencies close to the lowest latency seen recently,
+ * and shrinks multiplicatively once latencies rise above that baseline by the tolerance, or requests fail.
+ * This finds the concurrency a server handles best on any machine without configuring it.
+ * Requests of different kinds, such as cheap state polls and expensive calculations, are compared only with
+ * the baseline of their own kind.
+ */
+public class AdaptiveConcurrencyLimiter {
+    static final int DEFAULT_INITIAL_LIMIT = 4;
+    static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+    // Factors applied to the limit on high latency and on errors
+    private static final double LATENCY_BACKOFF = 0.9;
+    private static final double ERROR_BACKOFF = 0.7;
+    // The baseline latency is measured anew after this many samples, so that it follows lasting changes
+    private static final int BASELINE_SAMPLES = 500;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private final Map<String, Baseline> baselines = new HashMap<>();
+
+    // Statistics
+    private long requests;
+    private long failures;
+    private int maxQueueDepth;
+
+    /**
+     * @param latencyTolerance factor by which the latency may exceed its baseline before the limit shrinks
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double latencyTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max, but are " + minLimit + " and " + maxLimit);
+        }
+        if (latencyTolerance <= 1.0) {
+            throw new IllegalArgumentException("Latency tolerance must be above 1, but is " + latencyTolerance);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @param maxLimit upper bound of requests in flight
+     */
+    public static AdaptiveConcurrencyLimiter upTo(int maxLimit) {
+        return new AdaptiveConcurrencyLimiter(DEFAULT_INITIAL_LIMIT, 1, maxLimit, DEFAULT_LATENCY_TOLERANCE);
+    }
+
+    /**
+     * Waits until one more request may be in flight
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            waiting++;
+            maxQueueDepth = Math.max(maxQueueDepth, waiting);
+            try {
+                while (inFlight >= (int) limit) {
+                    permitReleased.await();
+                }
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends a request of no particular kind acquired before and adapts the limit to its outcome
+     *
+     * @param rttNanos time from sending the request until the server answered
+     * @param failed   whether the request failed, e.g. timed out or was answered with an error status
+     */
+    public void release(long rttNanos, boolean failed) {
+        release(null, rttNanos, failed);
+    }
+
+    /**
+     * Ends a request acquired before and adapts the limit to its outcome
+     *
+     * @param kind     kind of the request, e.g. the JSON-RPC method, whose latency baseline the latency is compared with
+     * @param rttNanos time from sending the request until the server answered
+     * @param failed   whether the request failed, e.g. timed out or was answered with an error status
+     */
+    public void release(String kind, long rttNanos, boolean failed) {
+        lock.lock();
+        try {
+            requests++;
+            if (failed) {
+                failures++;
+                limit = Math.max(minLimit, limit * ERROR_BACKOFF);
+            } else {
+                long baselineRttNanos = baselines.computeIfAbsent(kind, k -> new Baseline()).update(rttNanos);
+                if (rttNanos > baselineRttNanos * latencyTolerance) {
+                    limit = Math.max(minLimit, limit * LATENCY_BACKOFF);
+                } else if (inFlight * 2 >= limit) {
+                    // Grows by about one per limit requests, i.e. by one per round trip when the limit is used up
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            inFlight--;
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lowest latency of the requests of one kind seen recently
+     */
+    private static final class Baseline {
+        private long rttNanos = Long.MAX_VALUE;
+        private long nextRttNanos = Long.MAX_VALUE;
+        private int samples;
+
+        /**
+         * @return the baseline including the latency
+         */
+        private long update(long sampleRttNanos) {
+            rttNanos = Math.min(rttNanos, sampleRttNanos);
+            long baseline = rttNanos;
+            nextRttNanos = Math.min(nextRttNanos, sampleRttNanos);
+            if (++samples >= BASELINE_SAMPLES) {
+                rttNanos = nextRttNanos;
+                nextRttNanos = Long.MAX_VALUE;
+                samples = 0;
+            }
+            return baseline;
+        }
+    }
+
+    /**
+     * @return number of requests currently allowed in flight
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of requests currently waiting for the limit
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxQueueDepth() {
+        lock.lock();
+        try {
+            return maxQueueDepth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<String, Double> baselineRttMillis() {
+        Map<String, Double> millis = new HashMap<>();
+        baselines.forEach((kind, baseline) -> millis.put(kind, baseline.rttNanos == Long.MAX_VALUE ? 0.0 : baseline.rttNanos / 1e6));
+        return millis;
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "AdaptiveConcurrencyLimiter{" +
+                    "limit=" + (int) limit +
+                    ", inFlight=" + inFlight +
+                    ", queueDepth=" + waiting +
+                    ", maxQueueDepth=" + maxQueueDepth +
+                    ", requests=" + requests +
+                    ", failures=" + failures +
+                    ", baselineRttMillis=" + baselineRttMillis() +
+                    '}';
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Snaps sampled amounts to a grid before their score is looked up, so that close amounts share one cached score.
+ * The score of the grid amount is used for the sampled amount, which for product systems linear in their amount
+ * has the same relative error as the snapped amount.
+ *
+ * @param grid kind of grid, null for no quantization
+ * @param step spacing of an absolute grid, or relative distance between neighbouring amounts of a relative grid
+ */
+public record AmountQuantization(Grid grid, double step) {
+
+    public static final AmountQuantization NONE = new AmountQuantization(null, 0.0);
+
+    public enum Grid {
+        /**
+         * Multiples of the step, for amounts that vary on a fixed scale
+         */
+        ABSOLUTE,
+        /**
+         * Powers of 1 + step, bounding the relative error for amounts spanning several orders of magnitude
+         */
+        RELATIVE
+    }
+
+    public AmountQuantization {
+        if (grid != null && !(step > 0.0)) {
+            throw new IllegalArgumentException("Quantization step must be positive, but is " + step);
+        }
+    }
+
+    /**
+     * @param grid attribute value as written in the configuration, e.g. "relative"; may be null
+     * @param step attribute value of the step; may be null if no grid is given
+     * @return the matching quantization, or null if no grid is given
+     */
+    public static AmountQuantization fromAttributes(String grid, String step) {
+        if (grid == null || grid.isBlank()) return null;
+        if (grid.trim().equalsIgnoreCase("none")) return NONE;
+        Grid parsedGrid;
+        try {
+            parsedGrid = Grid.valueOf(grid.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown quantization grid: " + grid);
+        }
+        if (step == null) {
+            throw new IllegalArgumentException("Quantization grid " + grid + " needs a quantizationStep");
+        }
+        return new AmountQuantization(parsedGrid, Double.parseDouble(step));
+    }
+
+    public boolean isEnabled() {
+        return grid != null;
+    }
+
+    /**
+     * @return the grid amount closest to the given amount
+     */
+    public double quantize(double amount) {
+        if (grid == null || amount == 0.0 || !Double.isFinite(amount)) return amount;
+        return switch (grid) {
+            case ABSOLUTE -> Math.rint(amount / step) * step;
+            case RELATIVE -> {
+                double base = Math.log1p(step);
+                yield Math.copySign(Math.exp(Math.rint(Math.log(Math.abs(amount)) / base) * base), amount);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return grid == null ? "none" : grid.name().toLowerCase() + " " + step;
+    }
+
+    /**
+     * Relative errors between sampled and quantized amounts of one cost driver
+     */
+    public static class Statistics {
+        private final LongAdder lookups = new LongAdder();
+        private final DoubleAdder totalRelativeError = new DoubleAdder();
+        private final AtomicLong maxRelativeErrorBits = new AtomicLong(Double.doubleToLongBits(0.0));
+
+        public void record(double amount, double quantizedAmount) {
+            double error = ResponseCurve.relativeError(quantizedAmount, amount);
+            lookups.increment();
+            totalRelativeError.add(error);
+            maxRelativeErrorBits.accumulateAndGet(Double.doubleToLongBits(error),
+                    (current, candidate) -> Double.longBitsToDouble(candidate) > Double.longBitsToDouble(current) ? candidate : current);
+        }
+
+        public long getLookups() {
+            return lookups.sum();
+        }
+
+        public double getMaxRelativeError() {
+            return Double.longBitsToDouble(maxRelativeErrorBits.get());
+        }
+
+        public double getMeanRelativeError() {
+            long count = lookups.sum();
+            return count == 0 ? 0.0 : totalRelativeError.sum() / count;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Range of amounts a cost driver's distribution produces in practice.
+ * Unbounded distributions are cut at quantiles far in their tails.
+ *
+ * @param lower smallest amount of the range
+ * @param upper largest amount of the range
+ */
+public record AmountRange(double lower, double upper) {
+
+    // Number of standard deviations covered around the mean of unbounded distributions
+    private static final double TAIL_STANDARD_DEVIATIONS = 4.0;
+
+    public AmountRange {
+        if (lower > upper) {
+            throw new IllegalArgumentException("Lower bound " + lower + " is above upper bound " + upper);
+        }
+    }
+
+    public boolean contains(double amount) {
+        return amount >= lower && amount <= upper;
+    }
+
+    public boolean isPoint() {
+        return lower == upper;
+    }
+
+    /**
+     * @param distribution distribution as parsed by {@link CostDriverSCParserPlugin}, may be null
+     * @return range of the distribution, or null if it is unknown
+     */
+    public static AmountRange of(Map<String, Object> distribution) {
+        if (distribution == null) return null;
+        String distributionType = (String) distribution.get("distributionType");
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> values = (List<Map<String, Object>>) distribution.get("values");
+        if (distributionType == null || values == null || values.isEmpty()) return null;
+
+        switch (distributionType) {
+            case "constantDistribution": {
+                double value = valueOf(values, "constantValue", 1.0);
+                return new AmountRange(value, value);
+            }
+            case "exponentialDistribution": {
+                // 99.9% quantile of the exponential distribution
+                double mean = valueOf(values, "mean", 1.0);
+                return new AmountRange(0.0, mean * Math.log(1000));
+            }
+            case "normalDistribution": {
+                double mean = valueOf(values, "mean", 1.0);
+                double standardDeviation = valueOf(values, "standardDeviation", 0.0);
+                return new AmountRange(mean - TAIL_STANDARD_DEVIATIONS * standardDeviation,
+                        mean + TAIL_STANDARD_DEVIATIONS * standardDeviation);
+            }
+            case "uniformDistribution":
+                return new AmountRange(valueOf(values, "lower", 0.0), valueOf(values, "upper", 1.0));
+            case "triangularDistribution":
+                return new AmountRange(valueOf(values, "lower", 0.0), valueOf(values, "upper", 1.0));
+            case "erlangDistribution": {
+                double order = valueOf(values, "order", 1.0);
+                double mean = valueOf(values, "mean", 1.0);
+                // Covers the tail of a sum of order exponential phases, also if mean refers to a single phase
+                return new AmountRange(0.0, mean * (order + TAIL_STANDARD_DEVIATIONS * Math.sqrt(order)));
+            }
+            case "binomialDistribution":
+                return new AmountRange(0.0, valueOf(values, "amount", 1.0));
+            case "arbitraryFiniteProbabilityDistribution": {
+                double lower = Double.POSITIVE_INFINITY;
+                double upper = Double.NEGATIVE_INFINITY;
+                for (Map<String, Object> value : values) {
+                    double entry = ((Number) value.get("value")).doubleValue();
+                    lower = Math.min(lower, entry);
+                    upper = Math.max(upper, entry);
+                }
+                return new AmountRange(lower, upper);
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static double valueOf(List<Map<String, Object>> values, String id, double defaultValue) {
+        for (Map<String, Object> value : values) {
+            if (id.equals(value.get("id"))) {
+                return ((Number) value.get("value")).doubleValue();
+            }
+        }
+        return defaultValue;
+    }
+}
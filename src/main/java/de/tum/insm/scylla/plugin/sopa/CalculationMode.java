@@ -0,0 +1,34 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+/**
+ * How the cost of a concrete cost driver is derived from OpenLCA for a sampled amount
+ */
+public enum CalculationMode {
+    /**
+     * One OpenLCA calculation per distinct amount
+     */
+    EXACT,
+    /**
+     * One OpenLCA calculation of the unit score (amount = 1) per product system, impact method and normalization set,
+     * scaled locally by the sampled amount. Exact for product systems that are linear in their reference amount.
+     */
+    LINEAR,
+    /**
+     * Interpolation on a response curve that is built from calculations on a grid of amounts spanning the
+     * driver's distribution. For product systems that are not linear in their amount, e.g. due to fixed setup flows.
+     */
+    SURROGATE;
+
+    /**
+     * @param value attribute value as written in the configuration, e.g. "linear"; may be null
+     * @return the matching mode, or null if no value is given
+     */
+    public static CalculationMode fromAttribute(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown calculation mode: " + value);
+        }
+    }
+}
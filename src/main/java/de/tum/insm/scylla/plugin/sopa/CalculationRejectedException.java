@@ -0,0 +1,12 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+/**
+ * Signals that an LCA calculation was not attempted, because it is known or expected to fail
+ */
+public class CalculationRejectedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public CalculationRejectedException(String message) {
+        super(message);
+    }
+}
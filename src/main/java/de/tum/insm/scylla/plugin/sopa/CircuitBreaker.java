@@ -0,0 +1,150 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to a failing service for a while instead of letting every call run into its timeout.
+ *
+ * The breaker keeps the outcomes of the last windowSize calls. Once at least minimumCalls of them are known and the
+ * share of failures reaches the failure rate threshold, the breaker opens and rejects all calls for the open duration.
+ * Afterwards a single trial call is let through: its success closes the breaker, its failure opens it again.
+ */
+public class CircuitBreaker {
+    static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+    static final int DEFAULT_MINIMUM_CALLS = 10;
+    static final int DEFAULT_WINDOW_SIZE = 20;
+    static final long DEFAULT_OPEN_DURATION_MILLIS = 30_000;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationNanos;
+    private final LongSupplier nanoClock;
+
+    // Ring buffer of the last outcomes, true for failures
+    private final boolean[] outcomes;
+    private int recordedOutcomes;
+    private int nextOutcome;
+    private int failuresInWindow;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialCallInFlight;
+    private long rejectedCalls;
+    private long openings;
+
+    public CircuitBreaker(double failureRateThreshold, int minimumCalls, int windowSize, long openDurationMillis) {
+        this(failureRateThreshold, minimumCalls, windowSize, openDurationMillis, System::nanoTime);
+    }
+
+    CircuitBreaker(double failureRateThreshold, int minimumCalls, int windowSize, long openDurationMillis, LongSupplier nanoClock) {
+        if (failureRateThreshold <= 0.0 || failureRateThreshold > 1.0) {
+            throw new IllegalArgumentException("Failure rate threshold must be in (0, 1], but is " + failureRateThreshold);
+        }
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Minimum calls must be between 1 and the window size " + windowSize + ", but are " + minimumCalls);
+        }
+        if (openDurationMillis < 0) {
+            throw new IllegalArgumentException("Open duration must not be negative");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.outcomes = new boolean[windowSize];
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    public static CircuitBreaker defaults() {
+        return new CircuitBreaker(DEFAULT_FAILURE_RATE_THRESHOLD, DEFAULT_MINIMUM_CALLS, DEFAULT_WINDOW_SIZE, DEFAULT_OPEN_DURATION_MILLIS);
+    }
+
+    /**
+     * @return true if the call may be made, in which case its outcome must be recorded; false if it is rejected
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openDurationNanos) {
+            state = State.HALF_OPEN;
+            trialCallInFlight = false;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (!trialCallInFlight) {
+                    trialCallInFlight = true;
+                    return true;
+                }
+                // Only one trial call at a time
+                rejectedCalls++;
+                return false;
+            default:
+                rejectedCalls++;
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void recordFailure() {
+        if (state == State.HALF_OPEN) {
+            open("trial call failed");
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recordedOutcomes >= minimumCalls && (double) failuresInWindow / recordedOutcomes >= failureRateThreshold) {
+                open(failuresInWindow + " failures in the last " + recordedOutcomes + " calls");
+            }
+        }
+    }
+
+    private void record(boolean failure) {
+        if (recordedOutcomes == outcomes.length) {
+            if (outcomes[nextOutcome]) failuresInWindow--;
+        } else {
+            recordedOutcomes++;
+        }
+        outcomes[nextOutcome] = failure;
+        if (failure) failuresInWindow++;
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+    }
+
+    private void open(String reason) {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+        trialCallInFlight = false;
+        openings++;
+        System.err.println("[CircuitBreaker] Opened, " + reason + ", rejecting calls for " + TimeUnit.NANOSECONDS.toMillis(openDurationNanos) + " ms");
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        trialCallInFlight = false;
+        recordedOutcomes = 0;
+        nextOutcome = 0;
+        failuresInWindow = 0;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return number of calls rejected because the breaker was open
+     */
+    public synchronized long getRejectedCalls() {
+        return rejectedCalls;
+    }
+
+    public synchronized long getOpenings() {
+        return openings;
+    }
+}
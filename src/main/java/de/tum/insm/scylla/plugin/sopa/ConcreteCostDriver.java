@@ -1,27 +1,70 @@
 package de.tum.insm.scylla.plugin.sopa;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.springframework.lang.NonNull;
 
 import de.hpi.bpt.scylla.exception.ScyllaValidationException;
+import de.hpi.bpt.scylla.logger.DebugLogger;
 
 public class ConcreteCostDriver extends CostDriver {
     @NonNull
     protected CostDriver parent;
     @NonNull
     protected Double LCAScore;
-    private static OpenLcaCostCalculator costCalculator;
+    private static OpenLcaServerPool costCalculator;
+    // In-process calculators drivers can choose instead of the bridge
+    private static final Map<CostCalculatorType, LcaCalculator> localCalculators = new ConcurrentHashMap<>();
+    // Calculator of all drivers that choose none themselves
+    private static volatile CostCalculatorType defaultCalculatorType = CostCalculatorType.BRIDGE;
     
     private static String bridgeServerUrl = "http://localhost:8081";
     
     // Add cache for calculated costs
-    private static final Map<String, Double> costCache = new HashMap<>();
-    private static final Object cacheLock = new Object();
+    private static volatile LcaResultCache costCache = new LcaResultCache(LcaResultCache.DEFAULT_MAX_ENTRIES);
+    // Calculations started but not yet completed, joined by later misses of the same score
+    private static final Map<LcaCacheKey, CompletableFuture<Double>> inFlightCalculations = new ConcurrentHashMap<>();
+    // Scores whose calculation failed recently, with the nano time until which they are not calculated again
+    static final long DEFAULT_NEGATIVE_CACHE_TTL_MILLIS = 60_000;
+    private static volatile long negativeCacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_NEGATIVE_CACHE_TTL_MILLIS);
+    private static final Map<LcaCacheKey, Long> failedCalculations = new ConcurrentHashMap<>();
+    // Number of costs that fell back to the static LCA score, by driver
+    private static final Map<String, LongAdder> fallbacks = new ConcurrentHashMap<>();
+    // Optional cache that outlives the run, consulted after the in-memory cache
+    private static PersistentLcaCache persistentCache;
+
+    // Response curves of the surrogate calculation mode, built once per driver, impact method, normalization set and range
+    record SurrogateKey(String productSystemId, String impactMethodId, String normalizationSetId, AmountRange range) {
+    }
+    private static final Map<SurrogateKey, CompletableFuture<ResponseCurve>> surrogates = new ConcurrentHashMap<>();
+    // Errors introduced by amount quantization, by driver
+    private static final Map<String, AmountQuantization.Statistics> quantizationStatistics = new ConcurrentHashMap<>();
+    private static final ExecutorService surrogateBuilder = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "surrogate-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     // Add distribution field
     private Map<String, Object> distribution;
+
+    // Overrides the run-wide calculation mode if set
+    private CalculationMode calculationMode;
+    // Overrides the run-wide amount quantization if set
+    private AmountQuantization amountQuantization;
+    // Overrides the calculator of the parent and the run-wide one if set
+    private CostCalculatorType calculatorType;
     
     public ConcreteCostDriver(@NonNull String id, @NonNull CostDriver parent, @NonNull Double LCAScore) throws ScyllaValidationException {
         super(id);
@@ -33,7 +76,7 @@ public class ConcreteCostDriver extends CostDriver {
 
         this.LCAScore = LCAScore;
         if (costCalculator == null) {
-            costCalculator = new OpenLcaCostCalculator(bridgeServerUrl);
+            costCalculator = new OpenLcaServerPool(bridgeServerUrl, OpenLcaCostCalculator.DEFAULT_MAX_CONCURRENT_CALCULATIONS);
         }
     }
 
@@ -46,8 +89,118 @@ public class ConcreteCostDriver extends CostDriver {
     }
 
     public static void setBridgeServerUrl(String url) {
-        bridgeServerUrl = url;
-        costCalculator = new OpenLcaCostCalculator(url);
+        setBridgeServer(url, OpenLcaCostCalculator.DEFAULT_MAX_CONCURRENT_CALCULATIONS);
+    }
+
+    /**
+     * Replaces the shared calculator by one for the given server, allowing the given number of parallel calculations
+     */
+    public static void setBridgeServer(String url, int maxConcurrentCalculations) {
+        setBridgeServers(List.of(url), maxConcurrentCalculations, OpenLcaServerPool.DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Replaces the shared calculator by one spreading the calculations over the given servers
+     *
+     * @param maxConcurrentCalculations parallel calculations per server
+     */
+    public static void setBridgeServers(List<String> urls, int maxConcurrentCalculations, long healthCheckIntervalMillis) {
+        bridgeServerUrl = urls.get(0);
+        if (costCalculator != null) {
+            costCalculator.shutdown();
+        }
+        costCalculator = new OpenLcaServerPool(urls, maxConcurrentCalculations, healthCheckIntervalMillis);
+    }
+
+    /**
+     * @return the calculation mode configured for this driver, or the run-wide one if the driver has none
+     */
+    public CalculationMode getCalculationMode() {
+        return calculationMode != null ? calculationMode : CostDriverSettings.getInstance().getCalculationMode();
+    }
+
+    public void setCalculationMode(CalculationMode calculationMode) {
+        this.calculationMode = calculationMode;
+    }
+
+    /**
+     * @return the amount quantization configured for this driver, or the run-wide one if the driver has none
+     */
+    public AmountQuantization getAmountQuantization() {
+        return amountQuantization != null ? amountQuantization : CostDriverSettings.getInstance().getAmountQuantization();
+    }
+
+    public void setAmountQuantization(AmountQuantization amountQuantization) {
+        this.amountQuantization = amountQuantization;
+    }
+
+    /**
+     * @return the calculator configured for this driver, else the one of its abstract cost driver, else the run-wide one
+     */
+    public CostCalculatorType getCalculatorType() {
+        if (calculatorType != null) return calculatorType;
+        if (parent instanceof AbstractCostDriver abstractCostDriver && abstractCostDriver.getCalculatorType() != null) {
+            return abstractCostDriver.getCalculatorType();
+        }
+        return defaultCalculatorType;
+    }
+
+    public void setCalculatorType(CostCalculatorType calculatorType) {
+        this.calculatorType = calculatorType;
+    }
+
+    /**
+     * Sets the cache that persists calculated scores across runs, replacing and closing the previous one
+     *
+     * @param cache the new cache, or null to only cache in memory
+     */
+    public static synchronized void setPersistentCache(PersistentLcaCache cache) {
+        if (persistentCache != null && persistentCache != cache) {
+            try {
+                persistentCache.close();
+            } catch (IOException e) {
+                System.err.println("[ConcreteCostDriver] Could not close " + persistentCache.getFile() + ": " + e.getMessage());
+            }
+        }
+        persistentCache = cache;
+    }
+
+    public static PersistentLcaCache getPersistentCache() {
+        return persistentCache;
+    }
+
+    public static OpenLcaServerPool getCostCalculator() {
+        return costCalculator;
+    }
+
+    /**
+     * @param type       {@link CostCalculatorType#TABLE} or {@link CostCalculatorType#ENGINE}
+     * @param calculator calculates the scores of the drivers choosing the type, null to remove it
+     */
+    public static void setLocalCalculator(CostCalculatorType type, LcaCalculator calculator) {
+        if (type == CostCalculatorType.STATIC || type == CostCalculatorType.BRIDGE) {
+            throw new IllegalArgumentException(type + " is not an in-process calculator");
+        }
+        if (calculator != null) {
+            localCalculators.put(type, calculator);
+        } else {
+            localCalculators.remove(type);
+        }
+    }
+
+    public static LcaCalculator getLocalCalculator(CostCalculatorType type) {
+        return localCalculators.get(type);
+    }
+
+    /**
+     * @param type calculator of all drivers that choose none themselves
+     */
+    public static void setDefaultCalculatorType(CostCalculatorType type) {
+        defaultCalculatorType = type;
+    }
+
+    public static CostCalculatorType getDefaultCalculatorType() {
+        return defaultCalculatorType;
     }
 
     public Double getLCAScore() {
@@ -66,94 +219,301 @@ public class ConcreteCostDriver extends CostDriver {
         return id;
     }
 
-    
+
+    /**
+     * Blocking variant of {@link #calculateCostAsync(String, String, double)}.
+     */
     public Double calculateCost(String impactMethodId, String normalizationSetId, double amount) {
+        return calculateCostAsync(impactMethodId, normalizationSetId, amount).join();
+    }
+
+    /**
+     * Blocking variant of {@link #calculateCostAsync(String, String, double, AmountRange)}.
+     */
+    public Double calculateCost(String impactMethodId, String normalizationSetId, double amount, AmountRange amountRange) {
+        return calculateCostAsync(impactMethodId, normalizationSetId, amount, amountRange).join();
+    }
+
+    public CompletableFuture<Double> calculateCostAsync(String impactMethodId, String normalizationSetId, double amount) {
+        return calculateCostAsync(impactMethodId, normalizationSetId, amount, null);
+    }
+
+    /**
+     * Calculates the cost of this driver with its calculator without blocking the caller,
+     * so that independent calculations of several drivers can be fanned out in parallel.
+     * Drivers with the {@link CostCalculatorType#STATIC} calculator use their static LCA score right away.
+     *
+     * In {@link CalculationMode#LINEAR} only the unit score is calculated and scaled by the amount.
+     * In {@link CalculationMode#SURROGATE} amounts within the given range are interpolated on the range's response curve,
+     * amounts outside of it, or without a known range, are calculated exactly.
+     * Exactly calculated amounts are snapped to the grid of the driver's {@link AmountQuantization} first.
+     *
+     * @param amountRange range of amounts the driver's distribution produces, may be null
+     * @return future completing with the calculated cost; falls back to the static LCA score if the calculation fails
+     */
+    public CompletableFuture<Double> calculateCostAsync(String impactMethodId, String normalizationSetId, double amount, AmountRange amountRange) {
+        CostCalculatorType calculatorType = getCalculatorType();
+        if (calculatorType == CostCalculatorType.STATIC) {
+            return CompletableFuture.completedFuture(LCAScore);
+        }
+        if (calculatorType == CostCalculatorType.BRIDGE && costCalculator == null) {
+            System.err.println("[ConcreteCostDriver] ERROR: Cost calculator is null!");
+            return CompletableFuture.completedFuture(LCAScore);
+        }
+
+        CompletableFuture<Double> cost = switch (getCalculationMode()) {
+            case LINEAR -> lookupScoreAsync(impactMethodId, normalizationSetId, 1.0)
+                    .thenApply(unitScore -> unitScore * amount);
+            case SURROGATE -> amountRange != null && amountRange.contains(amount)
+                    ? surrogateAsync(impactMethodId, normalizationSetId, amountRange).thenApply(curve -> curve.valueAt(amount))
+                    : quantizedScoreAsync(impactMethodId, normalizationSetId, amount);
+            case EXACT -> quantizedScoreAsync(impactMethodId, normalizationSetId, amount);
+        };
+        return cost.exceptionally(e -> {
+            Throwable cause = unwrap(e);
+            fallbacks.computeIfAbsent(id, driverId -> new LongAdder()).increment();
+            if (cause instanceof CalculationRejectedException) {
+                // Expected to fail, the cause was already reported when it first occurred
+                System.err.println("[ConcreteCostDriver] Using static LCA score for " + id + ": " + cause.getMessage());
+                return LCAScore;
+            }
+            System.err.println("[ConcreteCostDriver] Error calculating cost for " + id + ": " + cause.getMessage());
+            System.err.println("[ConcreteCostDriver] Stack trace:");
+            cause.printStackTrace(System.err);
+            return LCAScore;
+        });
+    }
+
+    /**
+     * Starts calculating the scores that {@link #calculateCostAsync(String, String, double, AmountRange)} will look up
+     * for the given amounts, so that they are cached once the costs are needed. Unlike the cost calculation,
+     * it neither falls back to the static LCA score nor counts fallbacks or quantization errors.
+     *
+     * @param amounts     amounts the driver's distribution can produce, null if they are not known in advance
+     * @param amountRange range of amounts the driver's distribution produces, may be null
+     * @return future completing once the scores are cached or their calculation failed, never exceptionally
+     */
+    public CompletableFuture<Void> prefetchAsync(String impactMethodId, String normalizationSetId, List<Double> amounts, AmountRange amountRange) {
+        CostCalculatorType calculatorType = getCalculatorType();
+        if (calculatorType == CostCalculatorType.STATIC || (calculatorType == CostCalculatorType.BRIDGE && costCalculator == null)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        AmountQuantization quantization = getAmountQuantization();
+        List<CompletableFuture<?>> prefetches = new ArrayList<>();
+        switch (getCalculationMode()) {
+            case LINEAR -> prefetches.add(lookupScoreAsync(impactMethodId, normalizationSetId, 1.0));
+            case SURROGATE -> {
+                if (amountRange != null) {
+                    prefetches.add(surrogateAsync(impactMethodId, normalizationSetId, amountRange));
+                } else if (amounts != null) {
+                    amounts.forEach(amount -> prefetches.add(lookupScoreAsync(impactMethodId, normalizationSetId, quantization.quantize(amount))));
+                }
+            }
+            case EXACT -> {
+                if (amounts != null) {
+                    amounts.forEach(amount -> prefetches.add(lookupScoreAsync(impactMethodId, normalizationSetId, quantization.quantize(amount))));
+                }
+            }
+        }
+        return CompletableFuture.allOf(prefetches.stream()
+                .map(prefetch -> prefetch.handle((result, error) -> null))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    private CompletableFuture<Double> quantizedScoreAsync(String impactMethodId, String normalizationSetId, double amount) {
+        AmountQuantization quantization = getAmountQuantization();
+        if (!quantization.isEnabled()) {
+            return lookupScoreAsync(impactMethodId, normalizationSetId, amount);
+        }
+        double quantizedAmount = quantization.quantize(amount);
+        quantizationStatistics.computeIfAbsent(id, driverId -> new AmountQuantization.Statistics()).record(amount, quantizedAmount);
+        return lookupScoreAsync(impactMethodId, normalizationSetId, quantizedAmount);
+    }
+
+    /**
+     * Looks the score up in the in-memory cache, then in the persistent cache, and only then calculates it.
+     * Only scores of the bridge are persisted, so that a driver switched to another calculator never gets
+     * the scores of the previous one from an earlier run.
+     * A score is calculated at most once at a time: misses while its calculation is in flight wait for that calculation.
+     * After a failed calculation the score is not calculated again until the negative cache TTL has passed.
+     *
+     * @return future completing with the cached or newly calculated score for the given amount, exceptionally if the calculation fails
+     */
+    private CompletableFuture<Double> lookupScoreAsync(String impactMethodId, String normalizationSetId, double amount) {
         // Use id as the OpenLCA reference
         String productSystemId = id;
-        String impactMethodIdToUse = impactMethodId;
-        String normalizationSetIdToUse = normalizationSetId;
-        double amountToUse = amount;
-
-        // Create a unique cache key
-        String cacheKey = String.format("%s_%s_%s_%.2f", 
-            productSystemId, 
-            impactMethodIdToUse, 
-            normalizationSetIdToUse != null ? normalizationSetIdToUse : "null",
-            amountToUse);
-        
+
+        LcaCacheKey cacheKey = LcaCacheKey.of(productSystemId, impactMethodId, normalizationSetId, amount);
+        LcaResultCache costCache = ConcreteCostDriver.costCache;
+        CostCalculatorType calculatorType = getCalculatorType();
+
         // Check cache first
-        synchronized (cacheLock) {
-            Double cachedCost = costCache.get(cacheKey);
-            if (cachedCost != null) {
-                return cachedCost;
+        Double cachedCost = costCache.get(cacheKey);
+        if (cachedCost != null) {
+            return CompletableFuture.completedFuture(cachedCost);
+        }
+
+        // Then scores persisted by earlier runs or other processes, which spares the bridge entirely
+        PersistentLcaCache persistentCache = calculatorType == CostCalculatorType.BRIDGE ? ConcreteCostDriver.persistentCache : null;
+        if (persistentCache != null) {
+            Double persistedCost = persistentCache.get(cacheKey);
+            if (persistedCost != null) {
+                costCache.put(cacheKey, persistedCost);
+                return CompletableFuture.completedFuture(persistedCost);
             }
         }
 
-        try {
-            if (costCalculator == null) {
-                System.err.println("[ConcreteCostDriver] ERROR: Cost calculator is null!");
-                return LCAScore;
+        Long failedUntil = failedCalculations.get(cacheKey);
+        if (failedUntil != null) {
+            if (System.nanoTime() - failedUntil < 0) {
+                return CompletableFuture.failedFuture(new CalculationRejectedException(
+                        "Calculation of " + productSystemId + " failed recently and is not retried yet"));
             }
+            failedCalculations.remove(cacheKey, failedUntil);
+        }
 
-            String resultJson = costCalculator.calculateCostViaBridge(
-                productSystemId,
-                impactMethodIdToUse,
-                normalizationSetIdToUse,
-                amountToUse
-            );
-            
-            // Parse the JSON response
-            try {
-                
-                resultJson = resultJson.trim();
-                if (resultJson.startsWith("{") && resultJson.endsWith("}")) {
-                    // Extract the success value
-                    int successIndex = resultJson.indexOf("\"success\":");
-                    if (successIndex != -1) {
-                        String successPart = resultJson.substring(successIndex + "\"success\":".length());
-                        successPart = successPart.substring(0, successPart.indexOf(",")).trim();
-                        boolean isSuccess = Boolean.parseBoolean(successPart);
-                        
-                        if (isSuccess) {
-                            // Extract cost value
-                            int costIndex = resultJson.indexOf("\"cost\":");
-                            if (costIndex != -1) {
-                                String costPart = resultJson.substring(costIndex + "\"cost\":".length());
-                                costPart = costPart.substring(0, costPart.indexOf("}")).trim();
-                                double calculatedCost = Double.parseDouble(costPart);
-                                
-                                // Store in cache
-                                synchronized (cacheLock) {
-                                    costCache.put(cacheKey, calculatedCost);
-                                }
-                                
-                                System.out.println("[ConcreteCostDriver] Successfully calculated cost: " + calculatedCost);
-                                return calculatedCost;
+        CompletableFuture<Double> calculation = new CompletableFuture<>();
+        CompletableFuture<Double> inFlight = inFlightCalculations.putIfAbsent(cacheKey, calculation);
+        if (inFlight != null) {
+            costCache.recordDeduplicatedLoad();
+            return inFlight;
+        }
+        // A calculation of the same score may have completed between the lookup above and registering this one
+        cachedCost = costCache.peek(cacheKey);
+        if (cachedCost != null) {
+            inFlightCalculations.remove(cacheKey, calculation);
+            calculation.complete(cachedCost);
+            return calculation;
+        }
+
+        long loadStart = System.nanoTime();
+        LcaCalculator calculator = calculatorType == CostCalculatorType.BRIDGE ? costCalculator : localCalculators.get(calculatorType);
+        if (calculator == null) {
+            inFlightCalculations.remove(cacheKey, calculation);
+            calculation.completeExceptionally(new CalculationRejectedException(
+                    "No " + calculatorType.name().toLowerCase() + " calculator configured for " + productSystemId));
+            return calculation;
+        }
+        calculator.calculateCostAsync(productSystemId, impactMethodId, normalizationSetId, amount)
+                .whenComplete((calculatedCost, error) -> {
+                    if (error == null) {
+                        // Store in cache before leaving the flight, so that later misses find it there
+                        costCache.recordLoad(System.nanoTime() - loadStart);
+                        costCache.put(cacheKey, calculatedCost);
+                        if (persistentCache != null) {
+                            try {
+                                persistentCache.put(cacheKey, calculatedCost);
+                            } catch (IOException e) {
+                                System.err.println("[ConcreteCostDriver] Could not persist cost for " + id + ": " + e.getMessage());
                             }
                         }
+                        DebugLogger.log("[ConcreteCostDriver] Successfully calculated cost: " + calculatedCost);
+                    } else if (negativeCacheTtlNanos > 0 && !(unwrap(error) instanceof CalculationRejectedException)) {
+                        failedCalculations.put(cacheKey, System.nanoTime() + negativeCacheTtlNanos);
                     }
-                }
-                System.err.println("[ConcreteCostDriver] Error parsing response for " + id + ": " + resultJson);
-                return LCAScore;
-            } catch (Exception e) {
-                System.err.println("[ConcreteCostDriver] Error parsing response for " + id + ": " + e.getMessage());
-                System.err.println("[ConcreteCostDriver] Stack trace:");
-                e.printStackTrace(System.err);
-                return LCAScore;
-            }
-        } catch (Exception e) {
-            System.err.println("[ConcreteCostDriver] Error calculating cost for " + id + ": " + e.getMessage());
-            System.err.println("[ConcreteCostDriver] Stack trace:");
-            e.printStackTrace(System.err);
-            return LCAScore;
+                    inFlightCalculations.remove(cacheKey, calculation);
+                    if (error == null) {
+                        calculation.complete(calculatedCost);
+                    } else {
+                        calculation.completeExceptionally(error);
+                    }
+                });
+        return calculation;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * @return future completing with the response curve of the range, built at most once while it succeeds;
+     * a failed build is forgotten, so that the next lookup builds the curve again
+     */
+    private CompletableFuture<ResponseCurve> surrogateAsync(String impactMethodId, String normalizationSetId, AmountRange amountRange) {
+        CostDriverSettings settings = CostDriverSettings.getInstance();
+        SurrogateKey key = new SurrogateKey(id, impactMethodId, normalizationSetId, amountRange);
+        CompletableFuture<ResponseCurve> surrogate = new CompletableFuture<>();
+        CompletableFuture<ResponseCurve> existing = surrogates.putIfAbsent(key, surrogate);
+        if (existing != null) {
+            return existing;
         }
+        CompletableFuture.supplyAsync(() -> {
+            ResponseCurve curve = ResponseCurve.build(
+                    gridAmount -> lookupScoreAsync(impactMethodId, normalizationSetId, gridAmount),
+                    amountRange,
+                    settings.getSurrogateInterpolation(),
+                    settings.getSurrogateGridPoints(),
+                    settings.getSurrogateMaxGridPoints(),
+                    settings.getSurrogateTolerance());
+            System.out.println("[ConcreteCostDriver] Built response curve for " + id + " on [" + amountRange.lower() + ", "
+                    + amountRange.upper() + "] with " + curve.getGridPoints() + " grid points, max observed error " + curve.getMaxObservedError());
+            return curve;
+        }, surrogateBuilder).whenComplete((curve, error) -> {
+            if (error == null) {
+                surrogate.complete(curve);
+            } else {
+                // Leave the map before failing, so that later lookups do not find the failed build
+                surrogates.remove(key, surrogate);
+                surrogate.completeExceptionally(unwrap(error));
+            }
+        });
+        return surrogate;
+    }
+
+    /**
+     * @return response curves built for this driver so far, by impact method, normalization set and range
+     */
+    public Map<SurrogateKey, ResponseCurve> getSurrogates() {
+        Map<SurrogateKey, ResponseCurve> built = new HashMap<>();
+        surrogates.forEach((key, curve) -> {
+            if (key.productSystemId().equals(id) && curve.isDone() && !curve.isCompletedExceptionally()) {
+                built.put(key, curve.join());
+            }
+        });
+        return built;
+    }
+
+    /**
+     * @return errors introduced by quantizing this driver's amounts, or null if none were quantized
+     */
+    public AmountQuantization.Statistics getQuantizationStatistics() {
+        return quantizationStatistics.get(id);
+    }
+
+    /**
+     * @return number of costs of this driver that fell back to the static LCA score because no score could be calculated
+     */
+    public long getFallbacks() {
+        LongAdder count = fallbacks.get(id);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * @param ttlMillis time a failed score is not calculated again, 0 to retry failed scores right away
+     */
+    public static void setNegativeCacheTtl(long ttlMillis) {
+        negativeCacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        failedCalculations.clear();
     }
 
     // Add method to clear cache if needed
     public static void clearCostCache() {
-        synchronized (cacheLock) {
-            costCache.clear();
-        }
+        costCache.clear();
+        surrogates.clear();
+        quantizationStatistics.clear();
+        failedCalculations.clear();
+        fallbacks.clear();
+    }
+
+    /**
+     * Replaces the in-memory cost cache by an empty one holding at most maxEntries scores
+     */
+    public static void setCostCacheSize(int maxEntries) {
+        costCache = new LcaResultCache(maxEntries);
+    }
+
+    public static LcaResultCache getCostCache() {
+        return costCache;
     }
 
     @Override
@@ -0,0 +1,68 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Maps keys to nodes so that a key keeps its node as long as that node is usable, and only the keys of a node
+ * that becomes unusable move, spread over the remaining nodes.
+ * Every node is placed at several points of a 64 bit hash ring; a key belongs to the first usable node
+ * at or after its own hash.
+ */
+public class ConsistentHashRing<T> {
+    static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+
+    /**
+     * @param nodes        nodes with distinct string representations, which are hashed to place them
+     * @param virtualNodes number of points of every node on the ring, more points spread the keys more evenly
+     */
+    public ConsistentHashRing(List<T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        for (T node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * @return the node owning the key among the usable ones, or null if no node is usable
+     */
+    public T nodeFor(String key, Predicate<T> usable) {
+        long hash = hash(key);
+        for (Map<Long, T> part : List.of(ring.tailMap(hash, true), ring.headMap(hash, false))) {
+            for (T node : part.values()) {
+                if (usable.test(node)) return node;
+            }
+        }
+        return null;
+    }
+
+    public T nodeFor(String key) {
+        return nodeFor(key, node -> true);
+    }
+
+    /**
+     * 64 bit FNV-1a with the MurmurHash3 finalizer, which spreads similar keys such as consecutive ids
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : String.valueOf(key).getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
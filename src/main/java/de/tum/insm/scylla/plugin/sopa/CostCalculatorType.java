@@ -0,0 +1,36 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+/**
+ * Where the cost of a concrete cost driver comes from, chosen per run, abstract or concrete cost driver
+ */
+public enum CostCalculatorType {
+    /**
+     * The static cost of the concrete cost driver, without any calculation
+     */
+    STATIC,
+    /**
+     * OpenLCA over the IPC bridge, see {@link OpenLcaServerPool}
+     */
+    BRIDGE,
+    /**
+     * Precomputed unit scores, see {@link UnitScoreTable}
+     */
+    TABLE,
+    /**
+     * In-process calculation from exported matrices, see {@link MatrixLcaEngine}
+     */
+    ENGINE;
+
+    /**
+     * @param value attribute value as written in the configuration, e.g. "table"; may be null
+     * @return the matching type, or null if no value is given
+     */
+    public static CostCalculatorType fromAttribute(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown cost calculator: " + value);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import de.hpi.bpt.scylla.exception.ScyllaValidationException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Checks the cost configuration before the simulation starts, so that mistakes surface in seconds instead of
+ * as fallbacks to static scores, or failures, after the whole simulation ran.
+ *
+ * The cost variants and task cost drivers are checked against the cost driver hierarchy of the global configuration,
+ * and the parameters of the amount distributions against what the distributions accept. Afterwards the bridge is
+ * asked, in batched requests to each server, whether it knows all product systems and impact methods the run uses.
+ * All problems found are reported together.
+ */
+public final class CostConfigurationValidator {
+
+    static final long DEFAULT_BRIDGE_PROBE_TIMEOUT_MILLIS = 10_000;
+
+    private static final String PROBE_OPT_OUT = ". To run without the bridge, e.g. from a warm persistent cache,"
+            + " set preflightTimeout=\"0\" on the openLcaBridge element of the global configuration";
+
+    private static volatile long bridgeProbeTimeoutMillis = DEFAULT_BRIDGE_PROBE_TIMEOUT_MILLIS;
+
+    private CostConfigurationValidator() {
+    }
+
+    /**
+     * @param timeoutMillis time to wait for the bridge to answer the probe, 0 to not probe the bridge
+     */
+    public static void setBridgeProbeTimeout(long timeoutMillis) {
+        bridgeProbeTimeoutMillis = timeoutMillis;
+    }
+
+    public static long getBridgeProbeTimeout() {
+        return bridgeProbeTimeoutMillis;
+    }
+
+    /**
+     * @param abstractCostDrivers abstract cost drivers of the global configuration
+     * @param costVariants        cost variants of the simulation configuration
+     * @param taskCostDrivers     abstract cost driver ids by task node id
+     * @throws ScyllaValidationException listing all problems found
+     */
+    public static void validate(List<AbstractCostDriver> abstractCostDrivers, List<CostVariant> costVariants,
+                                Map<Integer, List<String>> taskCostDrivers) throws ScyllaValidationException {
+        List<String> problems = new ArrayList<>();
+        for (CostVariant costVariant : costVariants) {
+            String variant = "Cost variant " + costVariant.getId();
+            costVariant.getConcretisedACD().forEach((abstractId, concreteId) -> {
+                AbstractCostDriver abstractCostDriver = findAbstractCostDriver(abstractCostDrivers, abstractId);
+                if (abstractCostDriver == null) {
+                    problems.add(variant + " refers to the unknown abstract cost driver " + abstractId);
+                } else if (abstractCostDriver.getChildren().stream().noneMatch(child -> child.getId().equals(concreteId))) {
+                    problems.add(variant + " concretises " + abstractId + " with " + concreteId + ", which is not one of its concrete cost drivers");
+                }
+            });
+            costVariant.getDriverDistributions().forEach((concreteId, distribution) -> {
+                if (!costVariant.getConcretisedACD().containsValue(concreteId)) {
+                    problems.add(variant + " has a distribution for " + concreteId + ", which it does not use");
+                }
+                String problem = checkDistribution(distribution);
+                if (problem != null) {
+                    problems.add(variant + ": the distribution of " + concreteId + " " + problem);
+                }
+            });
+        }
+        taskCostDrivers.forEach((nodeId, abstractIds) -> {
+            for (String abstractId : abstractIds) {
+                if (findAbstractCostDriver(abstractCostDrivers, abstractId) == null) {
+                    problems.add("Task " + nodeId + " refers to the unknown abstract cost driver " + abstractId);
+                }
+            }
+        });
+        if (!problems.isEmpty()) {
+            throw new ScyllaValidationException("Invalid cost configuration:\n  " + String.join("\n  ", problems));
+        }
+    }
+
+    private static AbstractCostDriver findAbstractCostDriver(List<AbstractCostDriver> abstractCostDrivers, String abstractId) {
+        for (AbstractCostDriver abstractCostDriver : abstractCostDrivers) {
+            if (abstractCostDriver.getId().equals(abstractId)) return abstractCostDriver;
+        }
+        return null;
+    }
+
+    /**
+     * @param distribution distribution as parsed by {@link CostDriverSCParserPlugin}
+     * @return what is wrong with the distribution's parameters, or null if they are valid
+     */
+    static String checkDistribution(Map<String, Object> distribution) {
+        String distributionType = (String) distribution.get("distributionType");
+        if (distributionType == null) return "has an unsupported type";
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> values = (List<Map<String, Object>>) distribution.get("values");
+        if (values == null) values = List.of();
+        switch (distributionType) {
+            case "constantDistribution":
+                return isFinite(values, "constantValue") ? null : "needs a finite constant value";
+            case "exponentialDistribution":
+                return valueOf(values, "mean") > 0 ? null : "needs a positive mean";
+            case "normalDistribution":
+                if (!isFinite(values, "mean")) return "needs a finite mean";
+                return valueOf(values, "standardDeviation") >= 0 ? null : "needs a non-negative variance";
+            case "uniformDistribution":
+                if (!isFinite(values, "lower") || !isFinite(values, "upper")) return "needs finite bounds";
+                return valueOf(values, "lower") <= valueOf(values, "upper") ? null : "has its lower bound above its upper bound";
+            case "erlangDistribution":
+                if (!(valueOf(values, "order") > 0)) return "needs a positive order";
+                return valueOf(values, "mean") > 0 ? null : "needs a positive mean";
+            case "triangularDistribution": {
+                double lower = valueOf(values, "lower");
+                double peak = valueOf(values, "peak");
+                double upper = valueOf(values, "upper");
+                if (!(lower < upper)) return "needs its lower bound below its upper bound";
+                return lower <= peak && peak <= upper ? null : "has its peak outside its bounds";
+            }
+            case "binomialDistribution": {
+                double probability = valueOf(values, "probability");
+                if (!(probability >= 0 && probability <= 1)) return "needs a probability between 0 and 1";
+                return valueOf(values, "amount") >= 0 ? null : "needs a non-negative amount";
+            }
+            case "arbitraryFiniteProbabilityDistribution": {
+                if (values.isEmpty()) return "has no entries";
+                double frequencies = 0.0;
+                for (Map<String, Object> value : values) {
+                    Object frequency = value.get("frequency");
+                    if (!(value.get("value") instanceof Number number) || !Double.isFinite(number.doubleValue())) return "has an entry without finite value";
+                    if (!(frequency instanceof Number f) || !(f.doubleValue() >= 0)) return "has an entry without non-negative frequency";
+                    frequencies += f.doubleValue();
+                }
+                return frequencies > 0 ? null : "has no entry with positive frequency";
+            }
+            default:
+                return "has the unsupported type " + distributionType;
+        }
+    }
+
+    private static boolean isFinite(List<Map<String, Object>> values, String id) {
+        return Double.isFinite(valueOf(values, id));
+    }
+
+    // NaN if the parameter is missing, so that every comparison with it fails
+    private static double valueOf(List<Map<String, Object>> values, String id) {
+        for (Map<String, Object> value : values) {
+            if (id.equals(value.get("id")) && value.get("value") instanceof Number number) {
+                return number.doubleValue();
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Asks the bridge whether it knows the product systems of all concrete cost drivers the cost variants use
+     * and that are calculated via the bridge, and all impact methods of the run.
+     * Does nothing if the probe is disabled, the run has no impact method or no such driver.
+     *
+     * @throws ScyllaValidationException if the bridge cannot be reached, or lacks some of the data sets
+     */
+    public static void probeBridge(List<AbstractCostDriver> abstractCostDrivers, List<CostVariant> costVariants)
+            throws ScyllaValidationException {
+        OpenLcaServerPool pool = ConcreteCostDriver.getCostCalculator();
+        Set<String> impactMethods = new LinkedHashSet<>();
+        for (ImpactAssessment assessment : CostDriverSettings.getInstance().getImpactAssessments()) {
+            if (assessment.impactMethodId() != null) impactMethods.add(assessment.impactMethodId());
+        }
+        if (bridgeProbeTimeoutMillis <= 0 || pool == null || impactMethods.isEmpty()) return;
+
+        Set<String> productSystems = new LinkedHashSet<>();
+        for (CostVariant costVariant : costVariants) {
+            costVariant.getConcretisedACD().forEach((abstractId, concreteId) -> {
+                AbstractCostDriver abstractCostDriver = findAbstractCostDriver(abstractCostDrivers, abstractId);
+                if (abstractCostDriver == null) return;
+                for (ConcreteCostDriver driver : abstractCostDriver.getChildren()) {
+                    if (driver.getId().equals(concreteId) && driver.getCalculatorType() == CostCalculatorType.BRIDGE) {
+                        productSystems.add(driver.getOpenLCAProductSystemRef());
+                    }
+                }
+            });
+        }
+        if (productSystems.isEmpty()) return;
+
+        List<String> problems = new ArrayList<>();
+        for (String missing : findMissing(pool, "ProductSystem", productSystems)) {
+            problems.add("The bridge has no product system " + missing);
+        }
+        for (String missing : findMissing(pool, "ImpactMethod", impactMethods)) {
+            problems.add("The bridge has no impact method " + missing);
+        }
+        if (!problems.isEmpty()) {
+            throw new ScyllaValidationException("Invalid cost configuration:\n  " + String.join("\n  ", problems));
+        }
+        System.out.println("[CostConfigurationValidator] The bridge knows all " + productSystems.size()
+                + " product systems and " + impactMethods.size() + " impact methods of the run");
+    }
+
+    private static List<String> findMissing(OpenLcaServerPool pool, String type, Collection<String> ids) throws ScyllaValidationException {
+        String urls = String.join(", ", pool.getCalculators().stream().map(OpenLcaCostCalculator::getUrl).toList());
+        try {
+            return pool.findMissingDataSets(type, ids, bridgeProbeTimeoutMillis);
+        } catch (TimeoutException e) {
+            throw new ScyllaValidationException("The OpenLCA bridge at " + urls + " did not answer within " + bridgeProbeTimeoutMillis + " ms"
+                    + PROBE_OPT_OUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScyllaValidationException("Interrupted while probing the OpenLCA bridge at " + urls);
+        } catch (Exception e) {
+            throw new ScyllaValidationException("The OpenLCA bridge at " + urls + " cannot be reached: " + e.getMessage()
+                    + PROBE_OPT_OUT);
+        }
+    }
+}
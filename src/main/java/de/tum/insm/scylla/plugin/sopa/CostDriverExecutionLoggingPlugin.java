@@ -1,30 +1,30 @@
 package de.tum.insm.scylla.plugin.sopa;
 
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import java.util.Stack;
-import java.util.concurrent.atomic.AtomicReference;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLStreamException;
 
 import org.deckfour.xes.classification.XEventAttributeClassifier;
 import org.deckfour.xes.classification.XEventClassifier;
@@ -42,9 +42,8 @@ import org.deckfour.xes.model.XLog;
 import org.deckfour.xes.model.XTrace;
 import org.deckfour.xes.out.XesXmlGZIPSerializer;
 import org.deckfour.xes.out.XesXmlSerializer;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
+import de.hpi.bpt.scylla.logger.DebugLogger;
 import de.hpi.bpt.scylla.logger.ProcessNodeInfo;
 import de.hpi.bpt.scylla.logger.ProcessNodeTransitionType;
 import de.hpi.bpt.scylla.model.configuration.SimulationConfiguration;
@@ -66,17 +65,76 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
 
     boolean gzipOn = false;
 
-    
-    private final Map<String, Map<String, Double>> processInstanceCostCache = new HashMap<>();
-    
-    private Stack<CostVariant> costVariantStack = new Stack<>();
+    // Process instances costed ahead of the one merged next, per thread
+    private static final int INSTANCES_IN_FLIGHT_PER_THREAD = 4;
 
     private final Map<String, Double> distributionValueCache = new HashMap<>();
+    // Distributions whose sampling failed, so that they are neither sampled nor reported again
+    private final Map<String, RuntimeException> distributionValueFailures = new HashMap<>();
 
     private final Random random = new Random();
     
     private Model desmojModel;
 
+    /**
+     * Costs of an additional impact assessment, aggregated like those of the selected impact method
+     */
+    private static final class AssessmentCosts {
+        private final ImpactAssessment assessment;
+        // cost variant -> total costs of its instances
+        private final Map<String, List<Double>> instanceCosts = new LinkedHashMap<>();
+        // activity -> cost variant -> costs of its completed instances
+        private final Map<String, Map<String, List<Double>>> activityCosts = new LinkedHashMap<>();
+
+        AssessmentCosts(ImpactAssessment assessment) {
+            this.assessment = assessment;
+        }
+
+        void addInstanceCost(String costVariantId, double cost) {
+            instanceCosts.computeIfAbsent(costVariantId, k -> new ArrayList<>()).add(cost);
+        }
+
+        void addActivityCost(String taskName, String costVariantId, double cost) {
+            activityCosts.computeIfAbsent(taskName, k -> new LinkedHashMap<>())
+                    .computeIfAbsent(costVariantId, k -> new ArrayList<>()).add(cost);
+        }
+
+        /**
+         * Writes the average costs per cost variant, process instance and activity in an Impact_Assessment section
+         */
+        void writeTo(StatisticsXmlWriter xml) throws XMLStreamException {
+            xml.start("Impact_Assessment").attribute("impactMethod", assessment.impactMethodId());
+            if (assessment.normalizationSetId() != null) {
+                xml.attribute("normalizationSet", assessment.normalizationSetId());
+            }
+            List<Double> allInstanceCosts = new ArrayList<>();
+            for (Map.Entry<String, List<Double>> costs : instanceCosts.entrySet()) {
+                xml.element("Average_Cost_Variant_Cost", "id", costs.getKey().replace(' ', '_'), String.valueOf(average(costs.getValue())));
+                allInstanceCosts.addAll(costs.getValue());
+            }
+            xml.element("Average_Process_Instance_Cost", String.valueOf(average(allInstanceCosts)));
+
+            xml.start("Activity_Cost");
+            for (Map.Entry<String, Map<String, List<Double>>> activity : activityCosts.entrySet()) {
+                String act = activity.getKey();
+                xml.start("Activity").attribute("id", act.replace(' ', '_'));
+                List<Double> allActivityCosts = new ArrayList<>();
+                for (Map.Entry<String, List<Double>> costs : activity.getValue().entrySet()) {
+                    xml.element("Activity_Average_Cost_Variant_Cost", "id", costs.getKey().replace(' ', '_'), String.valueOf(average(costs.getValue())));
+                    allActivityCosts.addAll(costs.getValue());
+                }
+                xml.element("Activity_Average_Cost", "id", act.replace(' ', '_'), String.valueOf(average(allActivityCosts)));
+                xml.end();
+            }
+            xml.end();
+            xml.end();
+        }
+
+        private static double average(List<Double> costs) {
+            return costs.stream().mapToDouble(i -> i).average().orElse(0.0);
+        }
+    }
+
     @Override
     public String getName() {
         return CostDriverPluginUtils.PLUGIN_NAME;
@@ -86,16 +144,18 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
     public void writeToLog(SimulationModel model, String outputPathWithoutExtension) throws IOException {
         // Setze das DESMO-J Model für die Verteilungsfunktionen
         this.desmojModel = model;
-        // Clear all caches 
-        ConcreteCostDriver.clearCostCache();
-        processInstanceCostCache.clear();
+        // Clear all caches but the cost cache, which holds the scores prefetched since parsing
+        System.out.println("[CostDriverExecutionLoggingPlugin] " + LcaPrefetcher.getCompleted() + " of "
+                + LcaPrefetcher.getScheduled() + " prefetches completed during the simulation");
         distributionValueCache.clear();
-        costVariantStack.clear();
+        distributionValueFailures.clear();
 
         // Get impact method and normalization set 
         CostDriverSettings settings = CostDriverSettings.getInstance();
         String impactMethodId = settings.getImpactMethod();
-        String normalizationSetId = settings.getNormalizationSet();
+        // The selected impact method comes first, additional ones share the traversal and the sampled amounts
+        List<ImpactAssessment> assessments = settings.getImpactAssessments();
+        int threads = settings.getEventLogThreads();
 
         if (impactMethodId == null) {
             System.err.println("Warning: No impact method set in CostDriverSettings. Using XML values for costs.");
@@ -160,7 +220,10 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
              * Preparation for Average Cost Calculation
              * Scenario -> List of total costs
              */
-            Map<String, List<AtomicReference<Double>>> instancesCostVariant2TotalCostMap = new HashMap<>();
+            Map<String, List<Double>> instancesCostVariant2TotalCostMap = new HashMap<>();
+            List<AssessmentCosts> additionalAssessmentCosts = assessments.subList(1, assessments.size()).stream()
+                    .map(AssessmentCosts::new)
+                    .toList();
 
 
             /**
@@ -181,175 +244,70 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
              */
             Map<String, Map<String, List<Integer>>> activityCostVariantProcessIDMap = new HashMap<>();
 
+            Map<String, Object> nodeID2costDriversMap = (Map<String, Object>) simulationConfiguration.getExtensionAttributes().get("cost_driver_costDrivers");
+
             /**
-             * Preparation of writing to xml
+             * Variants are assigned and amounts sampled one instance after another, as DESMO-J draws in sequence,
+             * so every instance gets the same variant and amounts however many threads cost the instances afterwards
              * */
-            DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder docBuilder;
-            try {
-                docBuilder = docFactory.newDocumentBuilder();
-            } catch (ParserConfigurationException e) {
-                throw new RuntimeException(e);
-            }
-            // root elements
-            Document doc = docBuilder.newDocument();
-            Element rootElement = doc.createElement("Sustainability_Info");
-            doc.appendChild(rootElement);
-
-            for (Integer processInstanceId : nodeInfos.keySet()) {
-                // Initialize cost cache for this process instance
-                processInstanceCostCache.put(processInstanceId.toString(), new HashMap<>());
-
-                XTrace trace = factory.createTrace();
-                trace.getAttributes().put(XConceptExtension.KEY_NAME, factory
-                        .createAttributeLiteral(XConceptExtension.KEY_NAME, processInstanceId.toString(), conceptExt));
-                /**
-                 * add <string key=”cost:variant” value=”standard procedure”/>
-                 * */
+            List<Integer> processInstanceIds = new ArrayList<>(nodeInfos.keySet());
+            List<CostVariant> instanceCostVariants = new ArrayList<>(processInstanceIds.size());
+            for (Integer processInstanceId : processInstanceIds) {
                 CostVariant costVariant = costVariantStack.pop();
-                // Update our costVariantStack with the current variant
-                this.costVariantStack.push(costVariant);
-                trace.getAttributes().put("cost:variant", factory
-                        .createAttributeLiteral("cost:variant", costVariant.getId(), conceptExt));
-
-                List<ProcessNodeInfo> nodeInfoList = nodeInfos.get(processInstanceId);
-                Map<String, Object> nodeID2costDriversMap = (Map<String, Object>) simulationConfiguration.getExtensionAttributes().get("cost_driver_costDrivers");
-
-                AtomicReference<Double> totalCostPerInstance = new AtomicReference<>(0.0);
-
-                for (ProcessNodeInfo info : nodeInfoList) {
-
-                    XAttributeMap attributeMap = factory.createAttributeMap();
-
-                    Set<String> resources = info.getResources();
-                    for (String res : resources) {
-                        attributeMap.put(res, factory.createAttributeLiteral(XOrganizationalExtension.KEY_RESOURCE, res,
-                                organizationalExt));
-                    }
-
-                    ZonedDateTime zonedDateTime = baseDateTime.plus(info.getTimestamp(),
-                            DateTimeUtils.getReferenceChronoUnit());
-                    Date timestamp = new Date(zonedDateTime.toInstant().toEpochMilli());
-                    attributeMap.put(XTimeExtension.KEY_TIMESTAMP,
-                            factory.createAttributeTimestamp(XTimeExtension.KEY_TIMESTAMP, timestamp, timeExt));
-
-                    String taskName = info.getTaskName();
-
-                    attributeMap.put(XConceptExtension.KEY_NAME,
-                            factory.createAttributeLiteral(XConceptExtension.KEY_NAME, taskName, conceptExt));
+                instanceCostVariants.add(costVariant);
+                if (assessments.stream().anyMatch(assessment -> assessment.impactMethodId() != null)) {
+                    sampleAmounts(model.getGlobalConfiguration(), costVariant, nodeInfos.get(processInstanceId), nodeID2costDriversMap);
+                }
+            }
 
-                    /**
-                     * set processNodeInfo dataObjectField & add them into attributeMap
-                     **/
-                    Map<String, ConcreteCostDriver> concreteCostId2ObjectMap = new HashMap<>();
-
-                    //Preparation for taskCost
-                    AtomicReference<Double> taskCostRef = new AtomicReference<>(0.0);
-
-                    List<String> listOfCCDID = (List<String>) nodeID2costDriversMap.get(info.getId());
-                    List<String> CCDId = new ArrayList<>();
-
-                    if (listOfCCDID != null) {
-                        listOfCCDID.forEach(i -> {
-                            getConcreteCostDriver(model.getGlobalConfiguration(), costVariant, i).ifPresent(concretizationForDriverId -> {
-                                concreteCostId2ObjectMap.put(i, concretizationForDriverId);
-                                
-                                // Get cached cost for this driver in this process instance
-                                String cacheKey = processInstanceId + "_" + i;
-                                Double cachedCost = processInstanceCostCache.get(processInstanceId.toString()).get(cacheKey);
-                                
-                                if (cachedCost != null) {
-                                    taskCostRef.updateAndGet(v -> v + cachedCost);
-                                } else {
-                                    double calculatedCost = calculateCostForDriver(
-                                        concretizationForDriverId,
-                                        impactMethodId,
-                                        normalizationSetId,
-                                        cacheKey,
-                                        processInstanceId.toString()
-                                    );
-                                    taskCostRef.updateAndGet(v -> v + calculatedCost);
-                                }
-                                
-                                CCDId.add(i);
-                            });
-                        });
-
-                        info.SetDataObjectField(Collections.unmodifiableMap(concreteCostId2ObjectMap));
-
-                        Map<String, Object> dataObjects = info.getDataObjectField();
-                        for (String d0: dataObjects.keySet()) {
-                            ConcreteCostDriver ccd = (ConcreteCostDriver) dataObjects.get(d0);
-                            CCDId.add(ccd.getId());
-                            
-                            // Get the calculated cost for this driver
-                            String cacheKey = processInstanceId + "_" + d0;
-                            Double calculatedCost = processInstanceCostCache.get(processInstanceId.toString()).get(cacheKey);
-                            
-                            // If no calculated cost is found in cache, calculate it now
-                            if (calculatedCost == null) {
-                                calculatedCost = calculateCostForDriver(
-                                    ccd,
-                                    impactMethodId,
-                                    normalizationSetId,
-                                    cacheKey,
-                                    processInstanceId.toString()
-                                );
-                            }
-                            
-                            // Use the calculated cost in the attribute
-                            attributeMap.put(d0, factory.createAttributeLiteral("cost:driver", 
-                                d0 + "(" + ccd.getId() + "): " + calculatedCost,
-                                organizationalExt));
-                        }
+            /**
+             * Instances are costed in parallel and merged into the aggregates in instance order,
+             * keeping at most a few instances per thread in memory
+             * */
+            // In streaming mode the log only serves as header, every trace is written and dropped once its costs are known
+            StreamingXesSerializer xesWriter = settings.isStreamingEventLog()
+                    ? new StreamingXesSerializer(log, openLogStream(outputPathWithoutExtension + fileNameWithoutExtension))
+                    : null;
+            ExecutorService instanceExecutor = threads > 1 ? Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "event-log-costing");
+                thread.setDaemon(true);
+                return thread;
+            }) : null;
+            try {
+                Deque<CompletableFuture<InstanceCosts>> instancesInFlight = new ArrayDeque<>();
+                int nextInstance = 0;
+                while (nextInstance < processInstanceIds.size() || !instancesInFlight.isEmpty()) {
+                    while (nextInstance < processInstanceIds.size() && instancesInFlight.size() < INSTANCES_IN_FLIGHT_PER_THREAD * threads) {
+                        Integer processInstanceId = processInstanceIds.get(nextInstance);
+                        CostVariant instanceCostVariant = instanceCostVariants.get(nextInstance);
+                        nextInstance++;
+                        instancesInFlight.add(CompletableFuture.supplyAsync(() -> costInstance(factory, model.getGlobalConfiguration(), baseDateTime,
+                                nodeID2costDriversMap, assessments, processInstanceId, nodeInfos.get(processInstanceId), instanceCostVariant),
+                                instanceExecutor != null ? instanceExecutor : Runnable::run));
                     }
+                    InstanceCosts instance = instancesInFlight.poll().join();
+                    Integer processInstanceId = instance.processInstanceId;
+                    CostVariant costVariant = instance.costVariant;
 
-                    //if (taskCostRef.get() != 0.0) attributeMap.put("cost:activity", factory.createAttributeLiteral("cost:activity", String.valueOf(taskCostRef.get()), organizationalExt));
+                    for (NodeCosts node : instance.nodes) {
+                        String taskName = node.taskName();
+                        List<String> listOfCCDID = node.costDriverIds();
 
-                    //Add task CCD to activityCostVariantACDMap
-                    if (!activityCostVariantACDMap.containsKey(taskName)) activityCostVariantACDMap.put(taskName, new HashMap<>());
+                        //Add task CCD to activityCostVariantACDMap
+                        if (!activityCostVariantACDMap.containsKey(taskName)) activityCostVariantACDMap.put(taskName, new HashMap<>());
 
-                    if (!activityCostVariantACDMap.get(taskName).containsKey(costVariant.getId())) activityCostVariantACDMap.get(taskName).put(costVariant.getId(), CCDId);
+                        if (!activityCostVariantACDMap.get(taskName).containsKey(costVariant.getId())) activityCostVariantACDMap.get(taskName).put(costVariant.getId(), node.concreteCostDriverIds());
 
 
-                    //Add process instance id to activityCostVariantProcessInstanceID
-                    if (!activityCostVariantProcessIDMap.containsKey(taskName)) activityCostVariantProcessIDMap.put(taskName, new HashMap<>());
-                    if (!activityCostVariantProcessIDMap.get(taskName).containsKey(costVariant.getId())) activityCostVariantProcessIDMap.get(taskName).put(costVariant.getId(), new ArrayList<>(processInstanceId));
-                    else activityCostVariantProcessIDMap.get(taskName).get(costVariant.getId()).add(processInstanceId);
+                        //Add process instance id to activityCostVariantProcessInstanceID
+                        if (!activityCostVariantProcessIDMap.containsKey(taskName)) activityCostVariantProcessIDMap.put(taskName, new HashMap<>());
+                        if (!activityCostVariantProcessIDMap.get(taskName).containsKey(costVariant.getId())) activityCostVariantProcessIDMap.get(taskName).put(costVariant.getId(), new ArrayList<>(processInstanceId));
+                        else activityCostVariantProcessIDMap.get(taskName).get(costVariant.getId()).add(processInstanceId);
 
-                    if (!activity2ACD.containsKey(taskName)) activity2ACD.put(taskName, listOfCCDID);
-                    ProcessNodeTransitionType transition = info.getTransition();
-                    if (transition == ProcessNodeTransitionType.BEGIN
-                            || transition == ProcessNodeTransitionType.EVENT_BEGIN) {
-                        attributeMap.put(XLifecycleExtension.KEY_TRANSITION, factory
-                                .createAttributeLiteral(XLifecycleExtension.KEY_TRANSITION, "start", lifecycleExt));
-                    }
-                    else if (transition == ProcessNodeTransitionType.TERMINATE
-                            || transition == ProcessNodeTransitionType.EVENT_TERMINATE) {
-                        attributeMap.put(XLifecycleExtension.KEY_TRANSITION, factory
-                                .createAttributeLiteral(XLifecycleExtension.KEY_TRANSITION, "complete", lifecycleExt));
-
-                                if (taskCostRef.get() != 0.0) attributeMap.put("cost:activity", factory.createAttributeLiteral("cost:activity", String.valueOf(taskCostRef.get()), organizationalExt));
-
-                        //Only add the task's cost to total cost until it completed
-                        List<ConcreteCostDriver> listOfCCD = new ArrayList<>(concreteCostId2ObjectMap.values());
-                        // listOfCCD.forEach(i -> totalCostPerInstance.updateAndGet(v -> v + i.getLCAScore()));
-                        listOfCCD.forEach(i -> {
-                            String cacheKey = processInstanceId + "_" + i.getId();
-                            AtomicReference<Double> calculatedCostRef = new AtomicReference<>(processInstanceCostCache.get(processInstanceId.toString()).get(cacheKey));
-                            if (calculatedCostRef.get() == null) {
-                                calculatedCostRef.set(calculateCostForDriver(
-                                    i,
-                                    impactMethodId,
-                                    normalizationSetId,
-                                    cacheKey,
-                                    processInstanceId.toString()
-                                ));
-                            }
-                            totalCostPerInstance.updateAndGet(v -> v + calculatedCostRef.get());
-                        });
+                        if (!activity2ACD.containsKey(taskName)) activity2ACD.put(taskName, listOfCCDID);
 
-                        if (listOfCCDID != null) {
+                        double[] taskCosts = node.completedTaskCosts();
+                        if (taskCosts != null) {
                             //Only add the task's cost to averageCostEachActivityMap until it completed
                             if (!averageCostEachActivityMap.containsKey(taskName)) {
                                 averageCostEachActivityMap.put(taskName, new HashMap<>());
@@ -357,154 +315,381 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
                             if (!averageCostEachActivityMap.get(taskName).containsKey(costVariant.getId())) {
                                 averageCostEachActivityMap.get(taskName).put(costVariant.getId(), new ArrayList<>());
                             }
-                            averageCostEachActivityMap.get(taskName).get(costVariant.getId()).add(taskCostRef.get());
+                            averageCostEachActivityMap.get(taskName).get(costVariant.getId()).add(taskCosts[0]);
+                            for (int a = 1; a < assessments.size(); a++) {
+                                additionalAssessmentCosts.get(a - 1).addActivityCost(taskName, costVariant.getId(), taskCosts[a]);
+                            }
                         }
                     }
-                    else if (transition == ProcessNodeTransitionType.CANCEL) {
-                        attributeMap.put(XLifecycleExtension.KEY_TRANSITION, factory
-                                .createAttributeLiteral(XLifecycleExtension.KEY_TRANSITION, "ate_abort", lifecycleExt));
 
+                    double[] totalCosts = instance.totalCosts;
+                    for (int a = 1; a < assessments.size(); a++) {
+                        additionalAssessmentCosts.get(a - 1).addInstanceCost(costVariant.getId(), totalCosts[a]);
                     }
-                    else if (transition == ProcessNodeTransitionType.ENABLE
-                            || transition == ProcessNodeTransitionType.PAUSE
-                            || transition == ProcessNodeTransitionType.RESUME) {
-                        continue;
-                    }
-                    else {
-                        System.out.println("Transition type " + transition + " not supported in XESLogger.");
+
+                    /**
+                     * add total cost of each instances to instancesCostVariant2TotalCostMap
+                     * */
+                    if (!instancesCostVariant2TotalCostMap.containsKey(costVariant.getId())) {
+                        instancesCostVariant2TotalCostMap.put(costVariant.getId(), new ArrayList<>());
                     }
+                    instancesCostVariant2TotalCostMap.get(costVariant.getId()).add(totalCosts[0]);
 
-                    XEvent event = factory.createEvent(attributeMap);
-                    trace.add(event);
+                    if (xesWriter != null) {
+                        xesWriter.write(instance.trace);
+                    } else {
+                        log.add(instance.trace);
+                    }
                 }
-
-                /**
-                 * add <string key=”total cost” value=”<LCA score>”/>
-                 * */
-                trace.getAttributes().put("cost:Process_Instance", factory
-                        .createAttributeLiteral("cost:Process_Instance", String.valueOf(totalCostPerInstance.get()), conceptExt));
-
-                /**
-                 * add total cost of each instances to instancesCostVariant2TotalCostMap
-                 * */
-                if (!instancesCostVariant2TotalCostMap.containsKey(costVariant.getId())) {
-                    instancesCostVariant2TotalCostMap.put(costVariant.getId(), new ArrayList<>());
+            } finally {
+                if (instanceExecutor != null) {
+                    instanceExecutor.shutdown();
+                }
+                // Also if costing an instance failed, so that the event log file is not left open
+                if (xesWriter != null) {
+                    xesWriter.close();
                 }
-                instancesCostVariant2TotalCostMap.get(costVariant.getId()).add(totalCostPerInstance);
-
-                log.add(trace);
             }
 
             XesXmlSerializer serializer;
             FileOutputStream fos;
 
-            /**
-             * calculate average value of instances' total cost
-             * */
-            Map<String, Double> averageTotalCostMap = new HashMap<>();
-            List<Double> instanceCosts = new ArrayList<>();
-            for (String costVariant:instancesCostVariant2TotalCostMap.keySet()) {
-                averageTotalCostMap.put(costVariant, instancesCostVariant2TotalCostMap.get(costVariant).stream().mapToDouble(i -> i.get()).average().orElse(0.0));
-
-                Element cv = doc.createElement("Average_Cost_Variant_Cost");
-                cv.setAttribute("id", costVariant.replace(' ', '_'));
-                cv.setTextContent(String.valueOf(averageTotalCostMap.get(costVariant)));
-                rootElement.appendChild(cv);
-
-                //Collect all traces average cost
-                for (AtomicReference<Double> d: instancesCostVariant2TotalCostMap.get(costVariant)) instanceCosts.add(d.get());
+            if (xesWriter != null) {
+                System.out.println("[CostDriverExecutionLoggingPlugin] Streamed " + xesWriter.getTraces() + " traces to the event log");
             }
+            else {
+                if (gzipOn) {
+                    serializer = new XesXmlGZIPSerializer();
+                    fos = new FileOutputStream(outputPathWithoutExtension + fileNameWithoutExtension +  ".tar");
+                }
+                else {
+                    serializer = new XesXmlSerializer();
+                    fos = new FileOutputStream(outputPathWithoutExtension + fileNameWithoutExtension + ".xes");
+                };
+                serializer.serialize(log, fos);
+                fos.close();
+            }
+
+
+            /***
+             * Write to "XML" output file, element by element straight from the aggregates
+             */
+            try (StatisticsXmlWriter xml = new StatisticsXmlWriter(new FileOutputStream(
+                    outputPathWithoutExtension + "sustainability_global_information_statistic.xml"), "Sustainability_Info")) {
+                /**
+                 * calculate average value of instances' total cost
+                 * */
+                List<Double> instanceCosts = new ArrayList<>();
+                for (String costVariant:instancesCostVariant2TotalCostMap.keySet()) {
+                    xml.element("Average_Cost_Variant_Cost", "id", costVariant.replace(' ', '_'),
+                            String.valueOf(instancesCostVariant2TotalCostMap.get(costVariant).stream().mapToDouble(i -> i).average().orElse(0.0)));
 
-            //Calculate all traces average cost and put them into xml
-            Element tcv = doc.createElement("Average_Process_Instance_Cost");
-            tcv.setTextContent(String.valueOf(instanceCosts.stream().mapToDouble(i -> i).average().orElse(0.0)));
-            rootElement.appendChild(tcv);
+                    //Collect all traces average cost
+                    instanceCosts.addAll(instancesCostVariant2TotalCostMap.get(costVariant));
+                }
 
-            //Calculate all traces average cost per activities and put them into xml
-            Element acitivityAverageCost = doc.createElement("Activity_Cost");
+                //Calculate all traces average cost and put them into xml
+                xml.element("Average_Process_Instance_Cost", String.valueOf(instanceCosts.stream().mapToDouble(i -> i).average().orElse(0.0)));
 
+                //Calculate all traces average cost per activities and put them into xml
+                xml.start("Activity_Cost");
+                for (String act:averageCostEachActivityMap.keySet()) {
+                    xml.start("Activity").attribute("id", act.replace(' ', '_'));
+                    List<Double> costInDifferentCostVariantEachActivity = new ArrayList<>();
 
-            //Create other element for not aggregated data
-            Element individualCostPerInstance = doc.createElement("Activity_Instance_Cost");
+                    for (String scen: averageCostEachActivityMap.get(act).keySet()) {
+                        xml.element("Activity_Average_Cost_Variant_Cost", "id", scen.replace(' ', '_'),
+                                String.valueOf(averageCostEachActivityMap.get(act).get(scen).stream().mapToDouble(i -> i).average().orElse(0.0)));
 
-            for (String act:averageCostEachActivityMap.keySet()) {
-                Element activity = doc.createElement("Activity");
-                activity.setAttribute("id", act.replace(' ', '_'));
+                        //Add cost in different costVariant with different activity into a list
+                        costInDifferentCostVariantEachActivity.addAll(averageCostEachActivityMap.get(act).get(scen));
+                    }
+                    //Add activity average cost into log under "Activity_Average_Cost"
+                    xml.element("Activity_Average_Cost", "id", act.replace(' ', '_'),
+                            String.valueOf(costInDifferentCostVariantEachActivity.stream().mapToDouble(i -> i).average().orElse(0.0)));
+                    xml.end();
+                }
+                xml.end();
+
+                //Create other element for not aggregated data
+                xml.start("Activity_Instance_Cost");
+                for (String act:averageCostEachActivityMap.keySet()) {
+                    //Create individual activity cost
+                    xml.start("Activity").attribute("id", act.replace(' ', '_'));
+                    if (activity2ACD.get(act) != null) xml.attribute("ACD", activity2ACD.get(act).toString().replace("[","").replace("]", ""));
+
+                    for (String scen: averageCostEachActivityMap.get(act).keySet()) {
+                        //Add individual cost to different activity
+                        xml.start("Cost_Variant").attribute("id", scen.replace(' ', '_'));
+                        if (activityCostVariantACDMap.get(act).get(scen) != null && !activityCostVariantACDMap.get(act).get(scen).isEmpty())  xml.attribute("CCD", activityCostVariantACDMap.get(act).get(scen).toString().replace("[", "").replace("]", ""));
+
+                        xml.start("activity_instance_cost")
+                                .attribute("count", String.valueOf(averageCostEachActivityMap.get(act).get(scen).stream().count()))
+                                .attribute("ProcessInstance_IDs", activityCostVariantProcessIDMap.get(act).get(scen).stream().distinct().toList().toString().replace("[","").replace("]", ""))
+                                .text(String.valueOf(averageCostEachActivityMap.get(act).get(scen).get(0)))
+                                .end();
+                        xml.end();
+                    }
+                    xml.end();
+                }
+                xml.end();
+                for (AssessmentCosts assessmentCosts : additionalAssessmentCosts) {
+                    assessmentCosts.writeTo(xml);
+                }
+                writeCostDriverStatistics(xml, model.getGlobalConfiguration());
+            } catch (IOException | XMLStreamException e) {
+                e.printStackTrace();
+            }
+        }
+        System.out.println("[CostDriverExecutionLoggingPlugin] " + ConcreteCostDriver.getCostCache());
+        for (CostCalculatorType type : List.of(CostCalculatorType.TABLE, CostCalculatorType.ENGINE)) {
+            if (ConcreteCostDriver.getLocalCalculator(type) != null) {
+                System.out.println("[CostDriverExecutionLoggingPlugin] " + ConcreteCostDriver.getLocalCalculator(type));
+            }
+        }
+        if (ConcreteCostDriver.getCostCalculator() != null) {
+            System.out.println("[CostDriverExecutionLoggingPlugin] " + ConcreteCostDriver.getCostCalculator());
+        }
+    }
 
-                //Create activity cost list
-                Element activityCost = doc.createElement( "Activity_Average_Cost");
-                activityCost.setAttribute("id", act.replace(' ', '_'));
-                List<Double> costInDifferentCostVariantEachActivity = new ArrayList<>();
+    /**
+     * Trace and costs of a process instance, merged into the aggregates of the log in instance order
+     */
+    private static final class InstanceCosts {
+        final Integer processInstanceId;
+        final CostVariant costVariant;
+        final XTrace trace;
+        final double[] totalCosts;
+        final List<NodeCosts> nodes = new ArrayList<>();
+
+        InstanceCosts(Integer processInstanceId, CostVariant costVariant, XTrace trace, double[] totalCosts) {
+            this.processInstanceId = processInstanceId;
+            this.costVariant = costVariant;
+            this.trace = trace;
+            this.totalCosts = totalCosts;
+        }
+    }
 
-                //Create individual activity cost
-                Element individualActivityCost = doc.createElement("Activity");
-                individualActivityCost.setAttribute("id", act.replace(' ', '_'));
+    /**
+     * Cost drivers of a node info, with the costs of its task if it completed one with drivers, null otherwise
+     */
+    private record NodeCosts(String taskName, List<String> costDriverIds, List<String> concreteCostDriverIds, double[] completedTaskCosts) {}
 
-                for (String scen: averageCostEachActivityMap.get(act).keySet()) {
-                    Element scenario = doc.createElement("Activity_Average_Cost_Variant_Cost");
-                    scenario.setAttribute("id", scen.replace(' ', '_'));
-                    scenario.setTextContent(String.valueOf(averageCostEachActivityMap.get(act).get(scen).stream().mapToDouble(i -> i).average().orElse(0.0)));
-                    activity.appendChild(scenario);
+    /**
+     * Samples the amounts of the cost drivers the process instance uses, in the order its trace costs them,
+     * so that later calculations of any instance find them in the distribution value cache
+     */
+    private void sampleAmounts(
+            GlobalConfiguration globalConfiguration,
+            CostVariant costVariant,
+            List<ProcessNodeInfo> nodeInfoList,
+            Map<String, Object> nodeID2costDriversMap) {
+        for (ProcessNodeInfo info : nodeInfoList) {
+            List<String> listOfCCDID = (List<String>) nodeID2costDriversMap.get(info.getId());
+            if (listOfCCDID == null) continue;
+            for (String abstractCostDriverId : listOfCCDID) {
+                getConcreteCostDriver(globalConfiguration, costVariant, abstractCostDriverId).ifPresent(driver -> {
+                    Map<String, Object> distribution = costVariant.getDriverDistributions().get(driver.getId());
+                    if (distribution == null) return;
+                    try {
+                        getDistributionValue(driver.getId(), (String) distribution.get("distributionType"), distribution);
+                    } catch (RuntimeException e) {
+                        // Already reported, costing the driver fails with the same error and falls back to its static score
+                    }
+                });
+            }
+        }
+    }
 
-                    //Add cost in different costVariant with different activity into a list
-                    costInDifferentCostVariantEachActivity.addAll(averageCostEachActivityMap.get(act).get(scen));
+    /**
+     * Builds the trace of the process instance and calculates its costs. Only touches the instance's own node infos,
+     * so that instances can be costed in parallel.
+     */
+    private InstanceCosts costInstance(
+            XFactory factory,
+            GlobalConfiguration globalConfiguration,
+            ZonedDateTime baseDateTime,
+            Map<String, Object> nodeID2costDriversMap,
+            List<ImpactAssessment> assessments,
+            Integer processInstanceId,
+            List<ProcessNodeInfo> nodeInfoList,
+            CostVariant costVariant) {
+        XLifecycleExtension lifecycleExt = XLifecycleExtension.instance();
+        XOrganizationalExtension organizationalExt = XOrganizationalExtension.instance();
+        XTimeExtension timeExt = XTimeExtension.instance();
+        XConceptExtension conceptExt = XConceptExtension.instance();
+
+        // Costs of every impact assessment in this process instance, by driver
+        Map<String, double[]> instanceCostCache = new HashMap<>();
+
+        XTrace trace = factory.createTrace();
+        trace.getAttributes().put(XConceptExtension.KEY_NAME, factory
+                .createAttributeLiteral(XConceptExtension.KEY_NAME, processInstanceId.toString(), conceptExt));
+        /**
+         * add <string key=”cost:variant” value=”standard procedure”/>
+         * */
+        trace.getAttributes().put("cost:variant", factory
+                .createAttributeLiteral("cost:variant", costVariant.getId(), conceptExt));
+
+        double[] totalCosts = new double[assessments.size()];
+        InstanceCosts instance = new InstanceCosts(processInstanceId, costVariant, trace, totalCosts);
+
+        for (ProcessNodeInfo info : nodeInfoList) {
+
+            XAttributeMap attributeMap = factory.createAttributeMap();
+
+            Set<String> resources = info.getResources();
+            for (String res : resources) {
+                attributeMap.put(res, factory.createAttributeLiteral(XOrganizationalExtension.KEY_RESOURCE, res,
+                        organizationalExt));
+            }
 
-                    //Add individual cost to different activity
-                    Element individualCostWithDifferentCostVariant = doc.createElement("Cost_Variant");
-                    individualCostWithDifferentCostVariant.setAttribute("id", scen.replace(' ', '_'));
+            ZonedDateTime zonedDateTime = baseDateTime.plus(info.getTimestamp(),
+                    DateTimeUtils.getReferenceChronoUnit());
+            Date timestamp = new Date(zonedDateTime.toInstant().toEpochMilli());
+            attributeMap.put(XTimeExtension.KEY_TIMESTAMP,
+                    factory.createAttributeTimestamp(XTimeExtension.KEY_TIMESTAMP, timestamp, timeExt));
 
-                    if (activity2ACD.get(act) != null) individualActivityCost.setAttribute("ACD", activity2ACD.get(act).toString().replace("[","").replace("]", ""));
-                    if (activityCostVariantACDMap.get(act).get(scen) != null && !activityCostVariantACDMap.get(act).get(scen).isEmpty())  individualCostWithDifferentCostVariant.setAttribute("CCD", activityCostVariantACDMap.get(act).get(scen).toString().replace("[", "").replace("]", ""));
-                    individualActivityCost.appendChild(individualCostWithDifferentCostVariant);
+            String taskName = info.getTaskName();
 
-                    Element individualInstanceCost = doc.createElement("activity_instance_cost");
-                    individualInstanceCost.setTextContent(String.valueOf(averageCostEachActivityMap.get(act).get(scen).get(0)));
-                    individualInstanceCost.setAttribute("count", String.valueOf(averageCostEachActivityMap.get(act).get(scen).stream().count()));
-                    individualInstanceCost.setAttribute("ProcessInstance_IDs", activityCostVariantProcessIDMap.get(act).get(scen).stream().distinct().toList().toString().replace("[","").replace("]", ""));
-                    individualCostWithDifferentCostVariant.appendChild(individualInstanceCost);
+            attributeMap.put(XConceptExtension.KEY_NAME,
+                    factory.createAttributeLiteral(XConceptExtension.KEY_NAME, taskName, conceptExt));
 
-                    /**
-                     for (Double cost : averageCostEachActivityMap.get(act).get(scen)) {
-                     Element individualInstanceCost = doc.createElement("activity_instance_cost");
-                     individualInstanceCost.setTextContent(String.valueOf(cost));
-                     individualCostWithDifferentCostVariant.appendChild(individualInstanceCost);
-                     }
-                     **/
+            /**
+             * set processNodeInfo dataObjectField & add them into attributeMap
+             **/
+            Map<String, ConcreteCostDriver> concreteCostId2ObjectMap = new HashMap<>();
+
+            //Preparation for taskCost, one per impact assessment
+            double[] taskCosts = new double[assessments.size()];
+
+            List<String> listOfCCDID = (List<String>) nodeID2costDriversMap.get(info.getId());
+            List<String> CCDId = new ArrayList<>();
+
+            if (listOfCCDID != null) {
+                listOfCCDID.forEach(i -> {
+                    getConcreteCostDriver(globalConfiguration, costVariant, i).ifPresent(concretizationForDriverId -> {
+                        concreteCostId2ObjectMap.put(i, concretizationForDriverId);
+                        
+                        // Get cached costs for this driver in this process instance, calculating them if there are none
+                        String cacheKey = processInstanceId + "_" + i;
+                        addCosts(taskCosts, costsForDriver(
+                            concretizationForDriverId,
+                            assessments,
+                            cacheKey,
+                            instanceCostCache,
+                            costVariant
+                        ));
+                        
+                        CCDId.add(i);
+                    });
+                });
+
+                info.SetDataObjectField(Collections.unmodifiableMap(concreteCostId2ObjectMap));
+
+                Map<String, Object> dataObjects = info.getDataObjectField();
+                for (String d0: dataObjects.keySet()) {
+                    ConcreteCostDriver ccd = (ConcreteCostDriver) dataObjects.get(d0);
+                    CCDId.add(ccd.getId());
+                    
+                    // Get the calculated costs for this driver, calculated now if not found in cache
+                    String cacheKey = processInstanceId + "_" + d0;
+                    double[] calculatedCosts = costsForDriver(
+                        ccd,
+                        assessments,
+                        cacheKey,
+                        instanceCostCache,
+                        costVariant
+                    );
+                    
+                    // Use the calculated cost in the attribute
+                    attributeMap.put(d0, factory.createAttributeLiteral("cost:driver", 
+                        d0 + "(" + ccd.getId() + "): " + calculatedCosts[0],
+                        organizationalExt));
+                    for (int a = 1; a < assessments.size(); a++) {
+                        String key = d0 + ":" + assessments.get(a).label();
+                        attributeMap.put(key, factory.createAttributeLiteral("cost:driver",
+                            d0 + "(" + ccd.getId() + "): " + calculatedCosts[a],
+                            organizationalExt));
+                    }
                 }
-                //Add activity average cost into log under "Activity_Average_Cost"
-                activityCost.setTextContent(String.valueOf(costInDifferentCostVariantEachActivity.stream().mapToDouble(i -> i).average().orElse(0.0)));
-                activity.appendChild(activityCost);
+            }
+
+            //if (taskCostRef.get() != 0.0) attributeMap.put("cost:activity", factory.createAttributeLiteral("cost:activity", String.valueOf(taskCostRef.get()), organizationalExt));
 
-                //Add individual cost into log under "Individual_Cost_Per_Instance"
-                acitivityAverageCost.appendChild(activity);
-                individualCostPerInstance.appendChild(individualActivityCost);
+            ProcessNodeTransitionType transition = info.getTransition();
+            boolean completed = transition == ProcessNodeTransitionType.TERMINATE
+                    || transition == ProcessNodeTransitionType.EVENT_TERMINATE;
+            instance.nodes.add(new NodeCosts(taskName, listOfCCDID, CCDId, completed && listOfCCDID != null ? taskCosts : null));
+
+            if (transition == ProcessNodeTransitionType.BEGIN
+                    || transition == ProcessNodeTransitionType.EVENT_BEGIN) {
+                attributeMap.put(XLifecycleExtension.KEY_TRANSITION, factory
+                        .createAttributeLiteral(XLifecycleExtension.KEY_TRANSITION, "start", lifecycleExt));
             }
-            rootElement.appendChild(acitivityAverageCost);
-            rootElement.appendChild(individualCostPerInstance);
+            else if (transition == ProcessNodeTransitionType.TERMINATE
+                    || transition == ProcessNodeTransitionType.EVENT_TERMINATE) {
+                attributeMap.put(XLifecycleExtension.KEY_TRANSITION, factory
+                        .createAttributeLiteral(XLifecycleExtension.KEY_TRANSITION, "complete", lifecycleExt));
+
+                        if (taskCosts[0] != 0.0) attributeMap.put("cost:activity", factory.createAttributeLiteral("cost:activity", String.valueOf(taskCosts[0]), organizationalExt));
+                for (int a = 1; a < assessments.size(); a++) {
+                    String key = "cost:activity:" + assessments.get(a).label();
+                    if (taskCosts[a] != 0.0) attributeMap.put(key, factory.createAttributeLiteral(key, String.valueOf(taskCosts[a]), organizationalExt));
+                }
 
+                //Only add the task's cost to total cost until it completed
+                List<ConcreteCostDriver> listOfCCD = new ArrayList<>(concreteCostId2ObjectMap.values());
+                // listOfCCD.forEach(i -> totalCostPerInstance.updateAndGet(v -> v + i.getLCAScore()));
+                listOfCCD.forEach(i -> {
+                    String cacheKey = processInstanceId + "_" + i.getId();
+                    addCosts(totalCosts, costsForDriver(
+                        i,
+                        assessments,
+                        cacheKey,
+                        instanceCostCache,
+                        costVariant
+                    ));
+                });
+            }
+            else if (transition == ProcessNodeTransitionType.CANCEL) {
+                attributeMap.put(XLifecycleExtension.KEY_TRANSITION, factory
+                        .createAttributeLiteral(XLifecycleExtension.KEY_TRANSITION, "ate_abort", lifecycleExt));
 
-            if (gzipOn) {
-                serializer = new XesXmlGZIPSerializer();
-                fos = new FileOutputStream(outputPathWithoutExtension + fileNameWithoutExtension +  ".tar");
+            }
+            else if (transition == ProcessNodeTransitionType.ENABLE
+                    || transition == ProcessNodeTransitionType.PAUSE
+                    || transition == ProcessNodeTransitionType.RESUME) {
+                continue;
             }
             else {
-                serializer = new XesXmlSerializer();
-                fos = new FileOutputStream(outputPathWithoutExtension + fileNameWithoutExtension + ".xes");
-            };
-            serializer.serialize(log, fos);
-            fos.close();
+                System.out.println("Transition type " + transition + " not supported in XESLogger.");
+            }
 
+            XEvent event = factory.createEvent(attributeMap);
+            trace.add(event);
+        }
 
-            /***
-             * Write to "XML" output file
-             */
-            try (FileOutputStream output =
-                         new FileOutputStream(outputPathWithoutExtension + "sustainability_global_information_statistic.xml")) {
-                writeXml(doc, output);
-            } catch (IOException | TransformerException e) {
-                e.printStackTrace();
-            }
+        /**
+         * add <string key=”total cost” value=”<LCA score>”/>
+         * */
+        trace.getAttributes().put("cost:Process_Instance", factory
+                .createAttributeLiteral("cost:Process_Instance", String.valueOf(totalCosts[0]), conceptExt));
+        for (int a = 1; a < assessments.size(); a++) {
+            String key = "cost:Process_Instance:" + assessments.get(a).label();
+            trace.getAttributes().put(key, factory.createAttributeLiteral(key, String.valueOf(totalCosts[a]), conceptExt));
+        }
+        return instance;
+    }
+
+    /**
+     * @return buffered stream to the event log file, compressed like {@link XesXmlGZIPSerializer} does if gzipOn
+     */
+    private OutputStream openLogStream(String pathWithoutExtension) throws IOException {
+        if (gzipOn) {
+            return new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(pathWithoutExtension + ".tar")));
         }
+        return new BufferedOutputStream(new FileOutputStream(pathWithoutExtension + ".xes"));
     }
 
     /**
@@ -699,7 +884,7 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
     
 
     // Helper method to get or generate a distribution value
-    private double getDistributionValue(String driverId, String distributionType, Map<String, Object> distribution) {
+    private synchronized double getDistributionValue(String driverId, String distributionType, Map<String, Object> distribution) {
         List<Map<String, Object>> values = (List<Map<String, Object>>) distribution.get("values");
         String cacheKey = getDistributionCacheKey(driverId, distributionType, values);
 
@@ -707,7 +892,27 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
         if (cachedValue != null) {
             return cachedValue;
         }
+        // Sampling again would take one more draw from DESMO-J and shift all amounts sampled after it
+        RuntimeException failure = distributionValueFailures.get(cacheKey);
+        if (failure != null) {
+            throw failure;
+        }
+
+        double value;
+        try {
+            value = sampleDistributionValue(driverId, distributionType, values);
+        } catch (RuntimeException e) {
+            System.err.println("[CostDriverExecutionLoggingPlugin] Could not sample the amount of " + driverId + ": " + e.getMessage());
+            distributionValueFailures.put(cacheKey, e);
+            throw e;
+        }
+
+        // Cache the generated value
+        distributionValueCache.put(cacheKey, value);
+        return value;
+    }
 
+    private double sampleDistributionValue(String driverId, String distributionType, List<Map<String, Object>> values) {
         // Generate new value based on distribution type
         double value = 1.0; // Default value
         
@@ -728,7 +933,7 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
                     }
                 }
                 value = generateExponentialValueDesmoj(mean);
-                System.out.println("  Generated new exponential value (DESMO-J) for driver " + driverId + " with mean " + mean + ": " + value);
+                DebugLogger.log("  Generated new exponential value (DESMO-J) for driver " + driverId + " with mean " + mean + ": " + value);
             } else if ("normalDistribution".equals(distributionType)) {
                 double mean = 1.0; // Default mean
                 double standardDeviation = 0.0; // Default standard deviation
@@ -741,7 +946,7 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
 
                 }
                 value = generateNormalValueDesmoj(mean, standardDeviation);
-                System.out.println("  Generated new normal value (DESMO-J) for driver " + driverId + 
+                DebugLogger.log("  Generated new normal value (DESMO-J) for driver " + driverId + 
                     " with mean " + mean + " and standard deviation " + standardDeviation + ": " + value);
             } else if ("uniformDistribution".equals(distributionType)) {
                 double lower = 0.0; // Default lower bound
@@ -754,7 +959,7 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
                     }
                 }
                 value = generateUniformValueDesmoj(lower, upper);
-                System.out.println("  Generated new uniform value (DESMO-J) for driver " + driverId + 
+                DebugLogger.log("  Generated new uniform value (DESMO-J) for driver " + driverId + 
                     " between " + lower + " and " + upper + ": " + value);
             } else if ("erlangDistribution".equals(distributionType)) {
                 int order = 1;
@@ -767,7 +972,7 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
                     }
                 }
                 value = generateErlangValueDesmoj(order, mean);
-                System.out.println("  Generated new erlang value (DESMO-J) for driver " + driverId + " with order " + order + " and mean " + mean + ": " + value);
+                DebugLogger.log("  Generated new erlang value (DESMO-J) for driver " + driverId + " with order " + order + " and mean " + mean + ": " + value);
             } else if ("triangularDistribution".equals(distributionType)) {
                 double lower = 0.0, peak = 0.0, upper = 1.0;
                 for (Map<String, Object> val : values) {
@@ -776,7 +981,7 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
                     else if ("upper".equals(val.get("id"))) upper = ((Number) val.get("value")).doubleValue();
                 }
                 value = generateTriangularValueDesmoj(lower, peak, upper);
-                System.out.println("  Generated new triangular value (DESMO-J) for driver " + driverId + " with lower " + lower + ", peak " + peak + ", upper " + upper + ": " + value);
+                DebugLogger.log("  Generated new triangular value (DESMO-J) for driver " + driverId + " with lower " + lower + ", peak " + peak + ", upper " + upper + ": " + value);
             } else if ("binomialDistribution".equals(distributionType)) {
                 int amount = 1;
                 double probability = 0.5;
@@ -785,10 +990,10 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
                     else if ("probability".equals(val.get("id"))) probability = ((Number) val.get("value")).doubleValue();
                 }
                 value = generateBinomialValueDesmoj(amount, probability);
-                System.out.println("  Generated new binomial value (DESMO-J) for driver " + driverId + " with amount " + amount + " and probability " + probability + ": " + value);
+                DebugLogger.log("  Generated new binomial value (DESMO-J) for driver " + driverId + " with amount " + amount + " and probability " + probability + ": " + value);
             } else if ("arbitraryFiniteProbabilityDistribution".equals(distributionType)) {
                 value = generateArbitraryFiniteValueDesmoj(values);
-                System.out.println("  Generated new arbitrary finite value (DESMO-J) for driver " + driverId + ": " + value);
+                DebugLogger.log("  Generated new arbitrary finite value (DESMO-J) for driver " + driverId + ": " + value);
             } else {
                 // For other distributions, use mean value
                 for (Map<String, Object> val : values) {
@@ -799,9 +1004,6 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
                 }
             }
         }
-
-        // Cache the generated value
-        distributionValueCache.put(cacheKey, value);
         return value;
     }
 
@@ -816,21 +1018,44 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
         return sb.toString();
     }
 
-    // Helper method to calculate cost for a driver
-    private double calculateCostForDriver(
+    /**
+     * @return the costs of the driver in the process instance for every impact assessment, calculated on first use
+     */
+    private double[] costsForDriver(
             ConcreteCostDriver driver,
-            String impactMethodId,
-            String normalizationSetId,
+            List<ImpactAssessment> assessments,
             String cacheKey,
-            String processInstanceId) {
-        if (impactMethodId != null) {
+            Map<String, double[]> instanceCostCache,
+            CostVariant costVariant) {
+        double[] cachedCosts = instanceCostCache.get(cacheKey);
+        if (cachedCosts != null) {
+            return cachedCosts;
+        }
+        return calculateCostForDriver(driver, assessments, cacheKey, instanceCostCache, costVariant);
+    }
+
+    private static void addCosts(double[] sums, double[] costs) {
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] += costs[i];
+        }
+    }
+
+    // Helper method to calculate cost for a driver, sampling the amount once for all impact assessments
+    private double[] calculateCostForDriver(
+            ConcreteCostDriver driver,
+            List<ImpactAssessment> assessments,
+            String cacheKey,
+            Map<String, double[]> instanceCostCache,
+            CostVariant costVariant) {
+        double[] costs = new double[assessments.size()];
+        Arrays.fill(costs, driver.getLCAScore());
+        if (assessments.stream().anyMatch(assessment -> assessment.impactMethodId() != null)) {
             try {
                 
                 double amount = 1.0; 
+                AmountRange amountRange = null;
                 
-                // Get the cost variant for this process instance
-                CostVariant costVariant = costVariantStack.peek();
-                System.out.println("\n[CostDriverExecutionLoggingPlugin] Calculating cost for driver: " + driver.getId());
+                DebugLogger.log("[CostDriverExecutionLoggingPlugin] Calculating cost for driver: " + driver.getId());
                 
                 if (costVariant != null) {
                     Map<String, Map<String, Object>> driverDistributions = costVariant.getDriverDistributions();
@@ -841,39 +1066,107 @@ public class CostDriverExecutionLoggingPlugin extends OutputLoggerPluggable {
                         String distributionType = (String) distribution.get("distributionType");
                                                                        
                        amount = getDistributionValue(driver.getId(), distributionType, distribution);
+                       amountRange = AmountRange.of(distribution);
                     } else {
-                        System.out.println("  No distribution found, using default amount: " + amount);
+                        DebugLogger.log("  No distribution found, using default amount: " + amount);
                     }
                 } else {
-                    System.out.println("  No cost variant found, using default amount: " + amount);
+                    DebugLogger.log("  No cost variant found, using default amount: " + amount);
                 }
 
-                System.out.println("  Final amount used for calculation: " + amount);
-                double cost = driver.calculateCost(impactMethodId, normalizationSetId, amount);
-                // Cache the cost for this process instance
-                processInstanceCostCache.get(processInstanceId).put(cacheKey, cost);
-                System.out.println("  Calculated cost: " + cost);
-                return cost;
+                DebugLogger.log("  Final amount used for calculation: " + amount);
+                // The impact assessments are calculated in parallel
+                List<CompletableFuture<Double>> calculations = new ArrayList<>(assessments.size());
+                for (ImpactAssessment assessment : assessments) {
+                    calculations.add(assessment.impactMethodId() != null
+                            ? driver.calculateCostAsync(assessment.impactMethodId(), assessment.normalizationSetId(), amount, amountRange)
+                            : CompletableFuture.completedFuture(driver.getLCAScore()));
+                }
+                for (int i = 0; i < costs.length; i++) {
+                    costs[i] = calculations.get(i).join();
+                }
+                DebugLogger.log("  Calculated cost: " + costs[0]);
             } catch (Exception e) {
                 System.err.println("  Error calculating cost: " + e.getMessage());
                 e.printStackTrace();
-                return driver.getLCAScore();
+                Arrays.fill(costs, driver.getLCAScore());
+                return costs;
             }
-        } else {
-            return driver.getLCAScore();
         }
+        // Cache the costs for this process instance
+        instanceCostCache.put(cacheKey, costs);
+        return costs;
     }
 
-    private static void writeXml(Document document, OutputStream output) throws TransformerException {
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
+    /**
+     * Writes per concrete cost driver information on how its costs were obtained, e.g. the response curves
+     * of the surrogate calculation mode, the errors of amount quantization or the number of fallbacks to the static
+     * LCA score, and the statistics of the LCA score cache.
+     * Nothing is written if there is no such information.
+     */
+    private void writeCostDriverStatistics(StatisticsXmlWriter xml, GlobalConfiguration globalConfiguration) throws XMLStreamException {
+        List<AbstractCostDriver> abstractCostDrivers = (List<AbstractCostDriver>) globalConfiguration.getExtensionAttributes().get("cost_driver_costDrivers");
+        List<ConcreteCostDriver> driversWithStatistics = new ArrayList<>();
+        for (AbstractCostDriver abstractCostDriver : abstractCostDrivers) {
+            for (ConcreteCostDriver ccd : abstractCostDriver.getChildren()) {
+                if (!ccd.getSurrogates().isEmpty() || ccd.getFallbacks() > 0 || ccd.getQuantizationStatistics() != null) {
+                    driversWithStatistics.add(ccd);
+                }
+            }
+        }
+        LcaResultCache costCache = ConcreteCostDriver.getCostCache();
+        boolean cacheUsed = costCache.getHits() + costCache.getMisses() > 0;
+        if (driversWithStatistics.isEmpty() && !cacheUsed) {
+            return;
+        }
 
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        xml.start("Cost_Driver_Statistics");
+        for (ConcreteCostDriver ccd : driversWithStatistics) {
+            xml.start("Concrete_Cost_Driver").attribute("id", ccd.getId());
+            if (ccd.getFallbacks() > 0) {
+                xml.attribute("fallbacks", String.valueOf(ccd.getFallbacks()));
+            }
 
-        DOMSource source = new DOMSource(document);
-        StreamResult result = new StreamResult(output);
+            for (Map.Entry<ConcreteCostDriver.SurrogateKey, ResponseCurve> surrogate : ccd.getSurrogates().entrySet()) {
+                ConcreteCostDriver.SurrogateKey key = surrogate.getKey();
+                ResponseCurve curve = surrogate.getValue();
+                xml.start("Surrogate")
+                        .attribute("impactMethod", String.valueOf(key.impactMethodId()))
+                        .attribute("normalizationSet", String.valueOf(key.normalizationSetId()))
+                        .attribute("lower", String.valueOf(curve.getRange().lower()))
+                        .attribute("upper", String.valueOf(curve.getRange().upper()))
+                        .attribute("interpolation", curve.getInterpolation().name().toLowerCase())
+                        .attribute("gridPoints", String.valueOf(curve.getGridPoints()))
+                        .attribute("maxObservedError", String.valueOf(curve.getMaxObservedError()))
+                        .end();
+            }
 
-        transformer.transform(source, result);
+            AmountQuantization.Statistics quantizationStatistics = ccd.getQuantizationStatistics();
+            if (quantizationStatistics != null) {
+                AmountQuantization quantization = ccd.getAmountQuantization();
+                xml.start("Quantization")
+                        .attribute("grid", String.valueOf(quantization.grid()).toLowerCase())
+                        .attribute("step", String.valueOf(quantization.step()))
+                        .attribute("lookups", String.valueOf(quantizationStatistics.getLookups()))
+                        .attribute("maxRelativeError", String.valueOf(quantizationStatistics.getMaxRelativeError()))
+                        .attribute("meanRelativeError", String.valueOf(quantizationStatistics.getMeanRelativeError()))
+                        .end();
+            }
+            xml.end();
+        }
+
+        if (cacheUsed) {
+            xml.start("LCA_Cache")
+                    .attribute("size", String.valueOf(costCache.size()))
+                    .attribute("maxEntries", String.valueOf(costCache.getMaxEntries()))
+                    .attribute("hits", String.valueOf(costCache.getHits()))
+                    .attribute("misses", String.valueOf(costCache.getMisses()))
+                    .attribute("evictions", String.valueOf(costCache.getEvictions()))
+                    .attribute("loads", String.valueOf(costCache.getLoads()))
+                    .attribute("deduplicatedLoads", String.valueOf(costCache.getDeduplicatedLoads()))
+                    .attribute("totalLoadTimeMillis", String.valueOf(costCache.getTotalLoadTimeNanos() / 1_000_000))
+                    .end();
+        }
+        xml.end();
     }
 }
-
@@ -1,6 +1,10 @@
 package de.tum.insm.scylla.plugin.sopa;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,22 +30,154 @@ public class CostDriverGCParserPlugin extends GlobalConfigurationParserPluggable
 
         Namespace bsimNamespace = sim.getNamespace();
         Element costDrivers = sim.getChildren("costDriver", bsimNamespace).get(0);
+        // A new run starts, the scores may be prefetched from now on
+        ConcreteCostDriver.clearCostCache();
 
         // Read impact method info
         Element impactMethodInfo = sim.getChild("impactMethodInfo", bsimNamespace);
         String selectedImpactMethod = null;
         String selectedNormalizationSet = null;
+        CalculationMode calculationMode = null;
+        // In-process calculators the drivers can choose instead of the bridge
+        Map<CostCalculatorType, LcaCalculator> localCalculators = new EnumMap<>(CostCalculatorType.class);
+        CostCalculatorType defaultCalculatorType = null;
         
         if (impactMethodInfo != null) {
             selectedImpactMethod = impactMethodInfo.getAttributeValue("selectedImpactMethod");
             selectedNormalizationSet = impactMethodInfo.getAttributeValue("selectedNormalizationSet");
+            calculationMode = CalculationMode.fromAttribute(impactMethodInfo.getAttributeValue("calculationMode"));
                         
             // Set global settings
             CostDriverSettings settings = CostDriverSettings.getInstance();
             settings.setImpactMethod(selectedImpactMethod);
             settings.setNormalizationSet(selectedNormalizationSet);
+            // Further impact methods are assessed in the same pass over the simulated instances
+            List<ImpactAssessment> additionalImpactAssessments = new ArrayList<>();
+            for (Element additional : impactMethodInfo.getChildren("additionalImpactMethod", bsimNamespace)) {
+                String impactMethod = additional.getAttributeValue("selectedImpactMethod");
+                if (impactMethod == null) {
+                    throw new ScyllaValidationException("additionalImpactMethod needs a selectedImpactMethod");
+                }
+                additionalImpactAssessments.add(new ImpactAssessment(impactMethod, additional.getAttributeValue("selectedNormalizationSet")));
+            }
+            settings.setAdditionalImpactAssessments(additionalImpactAssessments);
+            settings.setCalculationMode(calculationMode != null ? calculationMode : CalculationMode.EXACT);
+            AmountQuantization amountQuantization = AmountQuantization.fromAttributes(
+                    impactMethodInfo.getAttributeValue("quantization"), impactMethodInfo.getAttributeValue("quantizationStep"));
+            settings.setAmountQuantization(amountQuantization != null ? amountQuantization : AmountQuantization.NONE);
+            settings.setSurrogateGridPoints(Integer.parseInt(impactMethodInfo.getAttributeValue("surrogateGridPoints",
+                    String.valueOf(CostDriverSettings.DEFAULT_SURROGATE_GRID_POINTS))));
+            settings.setSurrogateMaxGridPoints(Integer.parseInt(impactMethodInfo.getAttributeValue("surrogateMaxGridPoints",
+                    String.valueOf(CostDriverSettings.DEFAULT_SURROGATE_MAX_GRID_POINTS))));
+            settings.setSurrogateTolerance(Double.parseDouble(impactMethodInfo.getAttributeValue("surrogateTolerance",
+                    String.valueOf(CostDriverSettings.DEFAULT_SURROGATE_TOLERANCE))));
+            ResponseCurve.Interpolation interpolation = ResponseCurve.Interpolation.fromAttribute(impactMethodInfo.getAttributeValue("surrogateInterpolation"));
+            settings.setSurrogateInterpolation(interpolation != null ? interpolation : ResponseCurve.Interpolation.MONOTONE_CUBIC);
+
+            String unitScoreTable = impactMethodInfo.getAttributeValue("unitScoreTable");
+            if (unitScoreTable != null) {
+                try {
+                    localCalculators.put(CostCalculatorType.TABLE, UnitScoreTable.load(Paths.get(unitScoreTable)));
+                } catch (IOException e) {
+                    throw new ScyllaValidationException("Could not load unit score table " + unitScoreTable + ": " + e.getMessage());
+                }
+            }
+            defaultCalculatorType = parseCalculatorType(impactMethodInfo);
+            LcaPrefetcher.setEnabled(Boolean.parseBoolean(impactMethodInfo.getAttributeValue("prefetch", "true")));
         } else {
             System.err.println("  WARNING: No impactMethodInfo element found in XML!");
+            // Settings of an earlier run in the same JVM must not carry over
+            CostDriverSettings settings = CostDriverSettings.getInstance();
+            settings.setAdditionalImpactAssessments(List.of());
+            settings.setCalculationMode(CalculationMode.EXACT);
+            settings.setAmountQuantization(AmountQuantization.NONE);
+            settings.setSurrogateGridPoints(CostDriverSettings.DEFAULT_SURROGATE_GRID_POINTS);
+            settings.setSurrogateMaxGridPoints(CostDriverSettings.DEFAULT_SURROGATE_MAX_GRID_POINTS);
+            settings.setSurrogateTolerance(CostDriverSettings.DEFAULT_SURROGATE_TOLERANCE);
+            settings.setSurrogateInterpolation(ResponseCurve.Interpolation.MONOTONE_CUBIC);
+            LcaPrefetcher.setEnabled(true);
+        }
+
+        // Read optional OpenLCA bridge info, the calculator defaults to localhost otherwise
+        Element bridgeInfo = sim.getChild("openLcaBridge", bsimNamespace);
+        if (bridgeInfo != null) {
+            // Several servers are separated by commas
+            List<String> urls = Arrays.stream(bridgeInfo.getAttributeValue("url", "http://localhost:8081").split(","))
+                    .map(String::trim)
+                    .filter(url -> !url.isEmpty())
+                    .toList();
+            int maxConcurrentCalculations = Integer.parseInt(bridgeInfo.getAttributeValue("maxConcurrentCalculations",
+                    String.valueOf(OpenLcaCostCalculator.DEFAULT_MAX_CONCURRENT_CALCULATIONS)));
+            ConcreteCostDriver.setBridgeServers(urls, maxConcurrentCalculations,
+                    Long.parseLong(bridgeInfo.getAttributeValue("healthCheckInterval",
+                            String.valueOf(OpenLcaServerPool.DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS))));
+            ConcreteCostDriver.getCostCalculator().setAdaptiveConcurrency(
+                    Boolean.parseBoolean(bridgeInfo.getAttributeValue("adaptiveConcurrency", "true")), maxConcurrentCalculations);
+            ConcreteCostDriver.getCostCalculator().setPollingStrategy(parsePollingStrategy(bridgeInfo));
+            ConcreteCostDriver.getCostCalculator().setCircuitBreakers(() -> parseCircuitBreaker(bridgeInfo));
+            ConcreteCostDriver.getCostCalculator().setBatching(
+                    Boolean.parseBoolean(bridgeInfo.getAttributeValue("batchRequests", "true")),
+                    Integer.parseInt(bridgeInfo.getAttributeValue("maxBatchSize", String.valueOf(JsonRpcBatcher.DEFAULT_MAX_BATCH_SIZE))),
+                    Long.parseLong(bridgeInfo.getAttributeValue("batchLinger", String.valueOf(JsonRpcBatcher.DEFAULT_LINGER_MILLIS))));
+            ConcreteCostDriver.getCostCalculator().setLocalWeighting(
+                    Boolean.parseBoolean(bridgeInfo.getAttributeValue("localWeighting", "false")),
+                    Integer.parseInt(bridgeInfo.getAttributeValue("maxImpactVectors", String.valueOf(LcaResultCache.DEFAULT_MAX_ENTRIES))));
+            CostConfigurationValidator.setBridgeProbeTimeout(Long.parseLong(bridgeInfo.getAttributeValue("preflightTimeout",
+                    String.valueOf(CostConfigurationValidator.DEFAULT_BRIDGE_PROBE_TIMEOUT_MILLIS))));
+            ConcreteCostDriver.setNegativeCacheTtl(Long.parseLong(bridgeInfo.getAttributeValue("negativeCacheTtl",
+                    String.valueOf(ConcreteCostDriver.DEFAULT_NEGATIVE_CACHE_TTL_MILLIS))));
+        }
+
+        // Read optional matrix engine info, scores can be calculated in-process from exported matrices instead of via the bridge then
+        Element matrixEngineInfo = sim.getChild("matrixEngine", bsimNamespace);
+        if (matrixEngineInfo != null) {
+            String matrixDirectory = matrixEngineInfo.getAttributeValue("directory");
+            if (matrixDirectory == null) {
+                throw new ScyllaValidationException("matrixEngine needs the directory of the exported matrices");
+            }
+            try {
+                localCalculators.put(CostCalculatorType.ENGINE, MatrixLcaEngine.load(Paths.get(matrixDirectory)));
+            } catch (IOException e) {
+                throw new ScyllaValidationException("Could not load LCA matrices from " + matrixDirectory + ": " + e.getMessage());
+            }
+        }
+        for (CostCalculatorType type : List.of(CostCalculatorType.TABLE, CostCalculatorType.ENGINE)) {
+            ConcreteCostDriver.setLocalCalculator(type, localCalculators.get(type));
+        }
+        if (defaultCalculatorType == null) {
+            // Without an explicit choice, a single in-process calculator replaces the bridge for all drivers
+            defaultCalculatorType = localCalculators.size() == 1 ? localCalculators.keySet().iterator().next() : CostCalculatorType.BRIDGE;
+        }
+        checkCalculatorConfigured(defaultCalculatorType, localCalculators, "impactMethodInfo");
+        ConcreteCostDriver.setDefaultCalculatorType(defaultCalculatorType);
+
+        // Read optional event log info, the log is kept in memory until all traces are written otherwise
+        Element eventLogInfo = sim.getChild("eventLog", bsimNamespace);
+        CostDriverSettings.getInstance().setStreamingEventLog(eventLogInfo != null
+                && Boolean.parseBoolean(eventLogInfo.getAttributeValue("streaming", "false")));
+        int eventLogThreads = eventLogInfo != null
+                ? Integer.parseInt(eventLogInfo.getAttributeValue("threads", String.valueOf(Runtime.getRuntime().availableProcessors())))
+                : Runtime.getRuntime().availableProcessors();
+        if (eventLogThreads < 1) {
+            throw new ScyllaValidationException("eventLog needs at least one thread, got " + eventLogThreads);
+        }
+        CostDriverSettings.getInstance().setEventLogThreads(eventLogThreads);
+
+        // Read optional persistent cache info, scores are only cached in memory otherwise
+        Element cacheInfo = sim.getChild("lcaCache", bsimNamespace);
+        ConcreteCostDriver.setCostCacheSize(cacheInfo != null
+                ? Integer.parseInt(cacheInfo.getAttributeValue("maxEntries", String.valueOf(LcaResultCache.DEFAULT_MAX_ENTRIES)))
+                : LcaResultCache.DEFAULT_MAX_ENTRIES);
+        if (cacheInfo != null && cacheInfo.getAttributeValue("file") != null) {
+            String cacheFile = cacheInfo.getAttributeValue("file");
+            try {
+                ConcreteCostDriver.setPersistentCache(new PersistentLcaCache(Paths.get(cacheFile),
+                        cacheInfo.getAttributeValue("databaseFingerprint", "")));
+            } catch (IOException e) {
+                throw new ScyllaValidationException("Could not open LCA cache file " + cacheFile + ": " + e.getMessage());
+            }
+        } else {
+            ConcreteCostDriver.setPersistentCache(null);
         }
 
         List<CostDriver> abstractCostDrivers = new ArrayList<>();
@@ -49,19 +185,63 @@ public class CostDriverGCParserPlugin extends GlobalConfigurationParserPluggable
             String id = el.getAttributeValue("id");
 
             AbstractCostDriver abstractCostDriver = new AbstractCostDriver(id, new ArrayList<>());
+            abstractCostDriver.setCalculatorType(parseCalculatorType(el));
+            checkCalculatorConfigured(abstractCostDriver.getCalculatorType(), localCalculators, id);
 
             for (Element child: el.getChildren()) { //parse concrete cost drivers
                 String chileId = child.getAttributeValue("id");
                 Double LCAScore = Double.valueOf(child.getAttributeValue("cost"));
-                ConcreteCostDriver costDriver = new ConcreteCostDriver(chileId, abstractCostDriver, LCAScore);                
+                ConcreteCostDriver costDriver = new ConcreteCostDriver(chileId, abstractCostDriver, LCAScore);
+                costDriver.setCalculationMode(CalculationMode.fromAttribute(child.getAttributeValue("calculationMode")));
+                costDriver.setAmountQuantization(AmountQuantization.fromAttributes(
+                        child.getAttributeValue("quantization"), child.getAttributeValue("quantizationStep")));
+                costDriver.setCalculatorType(parseCalculatorType(child));
+                checkCalculatorConfigured(costDriver.getCalculatorType(), localCalculators, chileId);
                 abstractCostDriver.addChild(costDriver);
             }
             abstractCostDrivers.add(abstractCostDriver);
         }
+        CostDriverSettings.getInstance().setAbstractCostDrivers(abstractCostDrivers.stream()
+                .map(AbstractCostDriver.class::cast)
+                .toList());
+        LcaPrefetcher.reset(abstractCostDrivers);
         HashMap<String, Object> extensionAttributes = new HashMap<>();
         extensionAttributes.put("costDrivers", abstractCostDrivers);
         
         return extensionAttributes;
     }
 
+    private static CostCalculatorType parseCalculatorType(Element element) throws ScyllaValidationException {
+        try {
+            return CostCalculatorType.fromAttribute(element.getAttributeValue("calculator"));
+        } catch (IllegalArgumentException e) {
+            throw new ScyllaValidationException(e.getMessage());
+        }
+    }
+
+    private static void checkCalculatorConfigured(CostCalculatorType type, Map<CostCalculatorType, LcaCalculator> localCalculators,
+                                                  String configuredAt) throws ScyllaValidationException {
+        if ((type == CostCalculatorType.TABLE || type == CostCalculatorType.ENGINE) && !localCalculators.containsKey(type)) {
+            throw new ScyllaValidationException(configuredAt + " chooses the " + type.name().toLowerCase()
+                    + " calculator, but " + (type == CostCalculatorType.TABLE ? "no unitScoreTable" : "no matrixEngine") + " is configured");
+        }
+    }
+
+    private static CircuitBreaker parseCircuitBreaker(Element bridgeInfo) {
+        return new CircuitBreaker(
+                Double.parseDouble(bridgeInfo.getAttributeValue("breakerFailureRate", String.valueOf(CircuitBreaker.DEFAULT_FAILURE_RATE_THRESHOLD))),
+                Integer.parseInt(bridgeInfo.getAttributeValue("breakerMinimumCalls", String.valueOf(CircuitBreaker.DEFAULT_MINIMUM_CALLS))),
+                Integer.parseInt(bridgeInfo.getAttributeValue("breakerWindow", String.valueOf(CircuitBreaker.DEFAULT_WINDOW_SIZE))),
+                Long.parseLong(bridgeInfo.getAttributeValue("breakerOpenDuration", String.valueOf(CircuitBreaker.DEFAULT_OPEN_DURATION_MILLIS))));
+    }
+
+    private static PollingStrategy parsePollingStrategy(Element bridgeInfo) {
+        return new PollingStrategy(
+                Long.parseLong(bridgeInfo.getAttributeValue("pollInitialDelay", String.valueOf(PollingStrategy.DEFAULT_INITIAL_DELAY_MILLIS))),
+                Double.parseDouble(bridgeInfo.getAttributeValue("pollMultiplier", String.valueOf(PollingStrategy.DEFAULT_MULTIPLIER))),
+                Long.parseLong(bridgeInfo.getAttributeValue("pollMaxDelay", String.valueOf(PollingStrategy.DEFAULT_MAX_DELAY_MILLIS))),
+                Double.parseDouble(bridgeInfo.getAttributeValue("pollJitter", String.valueOf(PollingStrategy.DEFAULT_JITTER))),
+                Long.parseLong(bridgeInfo.getAttributeValue("pollDeadline", String.valueOf(PollingStrategy.DEFAULT_DEADLINE_MILLIS))));
+    }
+
 }
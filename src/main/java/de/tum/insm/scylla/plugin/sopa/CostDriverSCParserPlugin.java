@@ -253,6 +253,13 @@ public class CostDriverSCParserPlugin extends SimulationConfigurationParserPlugg
 
         extensionAttributes.put("costDrivers", costDrivers);
 
+        // Fail before simulating if the cost configuration does not fit the cost drivers or the bridge
+        List<AbstractCostDriver> abstractCostDrivers = CostDriverSettings.getInstance().getAbstractCostDrivers();
+        CostConfigurationValidator.validate(abstractCostDrivers, costVariantList, costDrivers);
+        CostConfigurationValidator.probeBridge(abstractCostDrivers, costVariantList);
+        // The scores of the cost variants' drivers are calculated while the simulation runs
+        LcaPrefetcher.start(costVariantList);
+
         return extensionAttributes;
     }
 
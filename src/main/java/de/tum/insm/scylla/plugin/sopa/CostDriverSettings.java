@@ -1,8 +1,30 @@
 package de.tum.insm.scylla.plugin.sopa;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class CostDriverSettings {
     private String impactMethod;
     private String normalizationSet;
+    // Assessed in the same run as the selected impact method, sharing its sampled amounts
+    private List<ImpactAssessment> additionalImpactAssessments = List.of();
+    // Abstract cost drivers of the global configuration, the simulation configuration refers to
+    private List<AbstractCostDriver> abstractCostDrivers = List.of();
+    // Writes every trace of the event log as soon as its costs are known instead of the whole log at the end
+    private boolean streamingEventLog = false;
+    // Threads costing the process instances of the event log, the log and statistics are the same for any number
+    private int eventLogThreads = Runtime.getRuntime().availableProcessors();
+    private CalculationMode calculationMode = CalculationMode.EXACT;
+    private AmountQuantization amountQuantization = AmountQuantization.NONE;
+
+    // Response curves of the surrogate calculation mode
+    static final int DEFAULT_SURROGATE_GRID_POINTS = 5;
+    static final int DEFAULT_SURROGATE_MAX_GRID_POINTS = 33;
+    static final double DEFAULT_SURROGATE_TOLERANCE = 0.01;
+    private int surrogateGridPoints = DEFAULT_SURROGATE_GRID_POINTS;
+    private int surrogateMaxGridPoints = DEFAULT_SURROGATE_MAX_GRID_POINTS;
+    private double surrogateTolerance = DEFAULT_SURROGATE_TOLERANCE;
+    private ResponseCurve.Interpolation surrogateInterpolation = ResponseCurve.Interpolation.MONOTONE_CUBIC;
     private static CostDriverSettings instance;
 
     private CostDriverSettings() {
@@ -31,4 +53,109 @@ public class CostDriverSettings {
     public void setNormalizationSet(String normalizationSet) {
         this.normalizationSet = normalizationSet;
     }
-} 
\ No newline at end of file
+
+    public List<ImpactAssessment> getAdditionalImpactAssessments() {
+        return additionalImpactAssessments;
+    }
+
+    public void setAdditionalImpactAssessments(List<ImpactAssessment> additionalImpactAssessments) {
+        this.additionalImpactAssessments = List.copyOf(additionalImpactAssessments);
+    }
+
+    public List<AbstractCostDriver> getAbstractCostDrivers() {
+        return abstractCostDrivers;
+    }
+
+    public void setAbstractCostDrivers(List<AbstractCostDriver> abstractCostDrivers) {
+        this.abstractCostDrivers = List.copyOf(abstractCostDrivers);
+    }
+
+    public boolean isStreamingEventLog() {
+        return streamingEventLog;
+    }
+
+    public void setStreamingEventLog(boolean streamingEventLog) {
+        this.streamingEventLog = streamingEventLog;
+    }
+
+    public int getEventLogThreads() {
+        return eventLogThreads;
+    }
+
+    public void setEventLogThreads(int eventLogThreads) {
+        this.eventLogThreads = eventLogThreads;
+    }
+
+    /**
+     * @return the selected impact method and normalization set first, followed by the additional ones
+     */
+    public List<ImpactAssessment> getImpactAssessments() {
+        List<ImpactAssessment> assessments = new ArrayList<>(1 + additionalImpactAssessments.size());
+        assessments.add(new ImpactAssessment(impactMethod, normalizationSet));
+        assessments.addAll(additionalImpactAssessments);
+        return assessments;
+    }
+
+    /**
+     * @return calculation mode of all concrete cost drivers that do not configure their own
+     */
+    public CalculationMode getCalculationMode() {
+        return calculationMode;
+    }
+
+    public void setCalculationMode(CalculationMode calculationMode) {
+        this.calculationMode = calculationMode;
+    }
+
+    /**
+     * @return quantization of all concrete cost drivers that do not configure their own
+     */
+    public AmountQuantization getAmountQuantization() {
+        return amountQuantization;
+    }
+
+    public void setAmountQuantization(AmountQuantization amountQuantization) {
+        this.amountQuantization = amountQuantization;
+    }
+
+    /**
+     * @return number of evenly spaced amounts a response curve is initially calculated at
+     */
+    public int getSurrogateGridPoints() {
+        return surrogateGridPoints;
+    }
+
+    public void setSurrogateGridPoints(int surrogateGridPoints) {
+        this.surrogateGridPoints = surrogateGridPoints;
+    }
+
+    /**
+     * @return number of amounts after which the refinement of a response curve stops
+     */
+    public int getSurrogateMaxGridPoints() {
+        return surrogateMaxGridPoints;
+    }
+
+    public void setSurrogateMaxGridPoints(int surrogateMaxGridPoints) {
+        this.surrogateMaxGridPoints = surrogateMaxGridPoints;
+    }
+
+    /**
+     * @return relative interpolation error above which a response curve is refined
+     */
+    public double getSurrogateTolerance() {
+        return surrogateTolerance;
+    }
+
+    public void setSurrogateTolerance(double surrogateTolerance) {
+        this.surrogateTolerance = surrogateTolerance;
+    }
+
+    public ResponseCurve.Interpolation getSurrogateInterpolation() {
+        return surrogateInterpolation;
+    }
+
+    public void setSurrogateInterpolation(ResponseCurve.Interpolation surrogateInterpolation) {
+        this.surrogateInterpolation = surrogateInterpolation;
+    }
+}
@@ -0,0 +1,18 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+/**
+ * Impact method and normalization set the costs of a run are assessed with.
+ *
+ * @param impactMethodId     OpenLCA id of the impact method, null to use the static costs of the concrete cost drivers
+ * @param normalizationSetId OpenLCA id of the normalization set, null to sum the impacts without weighting
+ */
+public record ImpactAssessment(String impactMethodId, String normalizationSetId) {
+
+    /**
+     * @return name of the assessment in log attributes and statistics, e.g. "EF 3.1/EU 2010"
+     */
+    public String label() {
+        if (normalizationSetId == null) return String.valueOf(impactMethodId);
+        return impactMethodId + "/" + normalizationSetId;
+    }
+}
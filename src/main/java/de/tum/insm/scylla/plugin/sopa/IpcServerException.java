@@ -0,0 +1,26 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+/**
+ * Signals that the OpenLCA IPC server answered a request with an HTTP error status
+ */
+public class IpcServerException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public IpcServerException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return whether the server failed (5xx), as opposed to rejecting the request itself (4xx)
+     */
+    public boolean isServerError() {
+        return statusCode >= 500;
+    }
+}
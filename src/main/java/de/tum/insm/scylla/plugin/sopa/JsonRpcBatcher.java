@@ -0,0 +1,319 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects JSON-RPC 2.0 calls issued concurrently by several calculations and sends them as one batch array,
+ * then hands every caller the decoded result of the response carrying its id.
+ * A batch is sent once it is full or once the first call in it waited for the linger time.
+ * If the server rejects batches, with a 4xx status or an answer that is not a well-formed batch array,
+ * all pending and later calls are sent one by one. Server errors (5xx) fail the calls of the batch instead,
+ * as the server may have executed them.
+ */
+class JsonRpcBatcher {
+    static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    static final long DEFAULT_LINGER_MILLIS = 2;
+
+    /**
+     * Sends a raw JSON-RPC payload and returns the stream of the response body, which the caller closes
+     */
+    @FunctionalInterface
+    interface Transport {
+        InputStream send(byte[] payload) throws Exception;
+
+        /**
+         * @param kind the method of a single request, or the methods and size class of a batch
+         */
+        default InputStream send(String kind, byte[] payload) throws Exception {
+            return send(payload);
+        }
+    }
+
+    private static final class PendingCall<T> {
+        private final long id;
+        private final String method;
+        private final byte[] params;
+        private final JsonRpcCodec.ResultDecoder<T> decoder;
+        private final CompletableFuture<T> response = new CompletableFuture<>();
+
+        private PendingCall(long id, String method, byte[] params, JsonRpcCodec.ResultDecoder<T> decoder) {
+            this.id = id;
+            this.method = method;
+            this.params = params;
+            this.decoder = decoder;
+        }
+
+        private void decode(JsonRpcCodec.Reader reader) throws IOException {
+            response.complete(decoder.decode(reader));
+        }
+    }
+
+    private final Transport transport;
+    private final int maxBatchSize;
+    private final long lingerMillis;
+    private final ScheduledExecutorService flushScheduler;
+    // Sends lingered batches, so that a slow batch does not hold back the flush of the next one
+    private final ExecutorService batchSender;
+    private final AtomicLong nextId = new AtomicLong();
+
+    private final Object lock = new Object();
+    private List<PendingCall<?>> pending = new ArrayList<>();
+    private volatile boolean batchingSupported = true;
+
+    // Statistics
+    private final AtomicLong sentBatches = new AtomicLong();
+    private final AtomicLong sentSingleRequests = new AtomicLong();
+    private final AtomicLong batchedCalls = new AtomicLong();
+
+    JsonRpcBatcher(Transport transport, int maxBatchSize, long lingerMillis) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.transport = transport;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMillis = lingerMillis;
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "openlca-batch-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchSender = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "openlca-batch-send");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a call for the next batch.
+     *
+     * @param method  JSON-RPC method name
+     * @param params  pre-encoded params object
+     * @param decoder decodes the result of the call
+     * @return future completing with the decoded result of this call
+     */
+    <T> CompletableFuture<T> submit(String method, byte[] params, JsonRpcCodec.ResultDecoder<T> decoder) {
+        PendingCall<T> call = new PendingCall<>(nextId.incrementAndGet(), method, params, decoder);
+
+        if (!batchingSupported) {
+            sendSingle(call);
+            return call.response;
+        }
+
+        List<PendingCall<?>> fullBatch = null;
+        boolean scheduleFlush = false;
+        synchronized (lock) {
+            pending.add(call);
+            if (pending.size() >= maxBatchSize) {
+                fullBatch = pending;
+                pending = new ArrayList<>();
+            } else if (pending.size() == 1) {
+                scheduleFlush = true;
+            }
+        }
+        if (fullBatch != null) {
+            sendBatch(fullBatch);
+        } else if (scheduleFlush) {
+            flushScheduler.schedule(() -> batchSender.execute(this::flush), lingerMillis, TimeUnit.MILLISECONDS);
+        }
+        return call.response;
+    }
+
+    /**
+     * Sends all pending calls right away
+     */
+    void flush() {
+        List<PendingCall<?>> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        sendBatch(batch);
+    }
+
+    private void sendBatch(List<PendingCall<?>> batch) {
+        if (batch.size() == 1 || !batchingSupported) {
+            batch.forEach(this::sendSingle);
+            return;
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(batch.size() * 128);
+        Map<Long, PendingCall<?>> callsById = new HashMap<>();
+        payload.write('[');
+        for (int i = 0; i < batch.size(); i++) {
+            PendingCall<?> call = batch.get(i);
+            if (i > 0) payload.write(',');
+            JsonRpcCodec.writeRequest(payload, call.method, call.params, call.id);
+            callsById.put(call.id, call);
+        }
+        payload.write(']');
+
+        InputStream response;
+        try {
+            response = transport.send(batchKind(batch), payload.toByteArray());
+        } catch (IpcServerException e) {
+            if (e.isServerError()) {
+                // The server may have executed some of the calls, sending them again could repeat calculations
+                batch.forEach(call -> call.response.completeExceptionally(e));
+            } else {
+                fallBackToSingleRequests(batch);
+            }
+            return;
+        } catch (Exception e) {
+            // The server is not reachable at all, which says nothing about its batch support
+            batch.forEach(call -> call.response.completeExceptionally(e));
+            return;
+        }
+        Set<Long> answered;
+        try (response) {
+            answered = readBatchResponse(new JsonRpcCodec.Reader(response), callsById);
+        } catch (JsonRpcCodec.MalformedJsonException e) {
+            answered = null;
+        } catch (IOException e) {
+            // The server broke off its answer
+            batch.forEach(call -> call.response.completeExceptionally(e));
+            return;
+        }
+        if (answered == null) {
+            fallBackToSingleRequests(batch);
+            return;
+        }
+        sentBatches.incrementAndGet();
+        batchedCalls.addAndGet(batch.size());
+
+        for (PendingCall<?> call : batch) {
+            if (!answered.contains(call.id)) {
+                // Servers may drop single entries of a batch, retry these alone
+                sendSingle(call);
+            }
+        }
+    }
+
+    /**
+     * @return the methods of the batch and its size rounded down to a power of two, as batches
+     * of the same methods and about the same size take about as long on the server
+     */
+    private static String batchKind(List<PendingCall<?>> batch) {
+        Set<String> methods = new TreeSet<>();
+        for (PendingCall<?> call : batch) {
+            methods.add(call.method);
+        }
+        return String.join("+", methods) + " x" + Integer.highestOneBit(batch.size());
+    }
+
+    /**
+     * Turns batching off for good and sends the calls of the batch that did not get their response yet one by one
+     */
+    private void fallBackToSingleRequests(List<PendingCall<?>> batch) {
+        System.err.println("[OpenLCA Calculator] Batch request rejected, falling back to single requests");
+        batchingSupported = false;
+        for (PendingCall<?> call : batch) {
+            if (!call.response.isDone()) {
+                sendSingle(call);
+            }
+        }
+    }
+
+    /**
+     * Decodes the responses of a batch while reading them, completing the call of every response
+     *
+     * @return ids of the calls that got a response, or null if the answer is not a batch array
+     */
+    private static Set<Long> readBatchResponse(JsonRpcCodec.Reader reader, Map<Long, PendingCall<?>> callsById) throws IOException {
+        if (reader.peek() != '[') return null;
+        Set<Long> answered = new HashSet<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            PendingCall<?> call = null;
+            // Result or error of a response whose id was not known yet when they were read
+            byte[] deferredResult = null;
+            JsonRpcCodec.RpcException error = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id" -> call = callsById.get(reader.nextLong());
+                    case "result" -> {
+                        if (call != null) {
+                            decode(call, reader);
+                        } else {
+                            deferredResult = reader.captureValue();
+                        }
+                    }
+                    case "error" -> error = JsonRpcCodec.readError(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (call == null) continue;
+            answered.add(call.id);
+            if (error != null) {
+                call.response.completeExceptionally(error);
+            } else if (deferredResult != null) {
+                decode(call, new JsonRpcCodec.Reader(deferredResult));
+            } else if (!call.response.isDone()) {
+                call.response.completeExceptionally(new IOException("Response without result"));
+            }
+        }
+        reader.endArray();
+        return answered;
+    }
+
+    private static void decode(PendingCall<?> call, JsonRpcCodec.Reader reader) throws IOException {
+        try {
+            call.decode(reader);
+        } catch (IOException e) {
+            call.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void sendSingle(PendingCall<?> call) {
+        sentSingleRequests.incrementAndGet();
+        try (InputStream response = transport.send(call.method, JsonRpcCodec.encodeRequest(call.method, call.params, call.id))) {
+            readSingle(call, response);
+        } catch (Exception e) {
+            call.response.completeExceptionally(e);
+        }
+    }
+
+    private static <T> void readSingle(PendingCall<T> call, InputStream response) throws IOException {
+        call.response.complete(JsonRpcCodec.readResponse(response, call.decoder));
+    }
+
+    boolean isBatchingSupported() {
+        return batchingSupported;
+    }
+
+    long getSentBatches() {
+        return sentBatches.get();
+    }
+
+    long getSentSingleRequests() {
+        return sentSingleRequests.get();
+    }
+
+    long getBatchedCalls() {
+        return batchedCalls.get();
+    }
+
+    void shutdown() {
+        flush();
+        flushScheduler.shutdown();
+        batchSender.shutdown();
+    }
+}
@@ -0,0 +1,674 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes the JSON-RPC 2.0 requests sent to the OpenLCA IPC server and decodes its responses.
+ *
+ * Requests are assembled from pre-encoded byte templates, so only the ids and the amount are encoded per call.
+ * Responses are decoded while they are read from the byte stream, keeping only the fields a calculation needs,
+ * so that large weighted impact results are never held as a whole.
+ */
+final class JsonRpcCodec {
+
+    /**
+     * Decodes the "result" member of a response
+     */
+    @FunctionalInterface
+    interface ResultDecoder<T> {
+        T decode(Reader reader) throws IOException;
+    }
+
+    /**
+     * Result of result/calculate and result/state
+     *
+     * @param resultId id of the result on the server
+     * @param ready    whether the calculation is finished
+     */
+    record CalculationState(String resultId, boolean ready) {
+    }
+
+    static final ResultDecoder<CalculationState> CALCULATION_STATE = reader -> {
+        String resultId = null;
+        boolean ready = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "@id" -> resultId = reader.nextString();
+                case "isReady" -> ready = reader.nextBoolean();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new CalculationState(resultId, ready);
+    };
+
+    /**
+     * Sums all "amount" members of the result, i.e. the weighted impacts of all impact categories
+     */
+    static final ResultDecoder<Double> WEIGHTED_IMPACT_SUM = reader -> sumAmounts(reader, false);
+
+    /**
+     * Decodes the characterized impact results of result/total-impacts, summed by impact category id
+     */
+    static final ResultDecoder<Map<String, Double>> IMPACT_VECTOR = reader -> {
+        Map<String, Double> impacts = new HashMap<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String impactCategoryId = null;
+            double amount = 0.0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "impactCategory" -> impactCategoryId = readRefId(reader);
+                    case "amount" -> {
+                        // A missing result counts as 0, as in the weighted sum
+                        Double value = nextNullableDouble(reader);
+                        amount = value != null ? value : 0.0;
+                    }
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (impactCategoryId != null) {
+                impacts.merge(impactCategoryId, amount, Double::sum);
+            }
+        }
+        reader.endArray();
+        return impacts;
+    };
+
+    /**
+     * Decodes the normalization sets of an impact method as returned by data/get, by normalization set id
+     */
+    static final ResultDecoder<Map<String, NormalizationWeighting>> NORMALIZATION_SETS = reader -> {
+        Map<String, NormalizationWeighting> normalizationSets = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("nwSets") && reader.peek() == '[') {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readNormalizationSet(reader, normalizationSets);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return normalizationSets;
+    };
+
+    /**
+     * Tells whether the result is a data set rather than null
+     */
+    static final ResultDecoder<Boolean> PRESENT = reader -> {
+        boolean present = reader.peek() != 'n';
+        reader.skipValue();
+        return present;
+    };
+
+    static final ResultDecoder<Void> IGNORE = reader -> {
+        reader.skipValue();
+        return null;
+    };
+
+    static final byte[] EMPTY_PARAMS = bytes("{}");
+
+    private static final byte[] REQUEST_START = bytes("{\"jsonrpc\":\"2.0\",\"method\":\"");
+    private static final byte[] PARAMS_START = bytes("\",\"params\":");
+    private static final byte[] ID_START = bytes(",\"id\":");
+    private static final byte[] TARGET_START = bytes("{\"target\":{\"@type\":\"ProductSystem\",\"@id\":\"");
+    private static final byte[] IMPACT_METHOD_START = bytes("\"},\"impactMethod\":{\"@type\":\"ImpactMethod\",\"@id\":\"");
+    private static final byte[] NW_SET_START = bytes("\"},\"nwSet\":{\"@type\":\"NwSet\",\"@id\":\"");
+    private static final byte[] AMOUNT_START = bytes("\"},\"amount\":");
+    private static final byte[] CALCULATE_END = bytes(",\"allocation\":\"USE_DEFAULT_ALLOCATION\",\"withCosts\":false,\"withRegionalization\":false}");
+    private static final byte[] RESULT_REF_START = bytes("{\"@id\":\"");
+    private static final byte[] DATA_REF_START = bytes("{\"@type\":\"");
+    private static final byte[] DATA_REF_ID = bytes("\",\"@id\":\"");
+    private static final byte[] RESULT_REF_END = bytes("\"}");
+
+    // Everything of a request up to its params, by method
+    private static final Map<String, byte[]> requestHeads = new ConcurrentHashMap<>();
+
+    private JsonRpcCodec() {
+    }
+
+    /**
+     * @param params pre-encoded params object
+     * @param id     id of the request, unique among the requests in flight
+     */
+    static byte[] encodeRequest(String method, byte[] params, long id) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + params.length);
+        writeRequest(out, method, params, id);
+        return out.toByteArray();
+    }
+
+    static void writeRequest(ByteArrayOutputStream out, String method, byte[] params, long id) {
+        out.writeBytes(requestHeads.computeIfAbsent(method, m -> concat(REQUEST_START, escape(m), PARAMS_START)));
+        out.writeBytes(params);
+        out.writeBytes(ID_START);
+        out.writeBytes(bytes(Long.toString(id)));
+        out.write('}');
+    }
+
+    /**
+     * @param normalizationSetId may be null
+     * @return params of result/calculate
+     */
+    static byte[] calculateParams(String productSystemId, String impactMethodId, String normalizationSetId, double amount) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        out.writeBytes(TARGET_START);
+        out.writeBytes(escape(productSystemId));
+        out.writeBytes(IMPACT_METHOD_START);
+        out.writeBytes(escape(impactMethodId));
+        if (normalizationSetId != null) {
+            out.writeBytes(NW_SET_START);
+            out.writeBytes(escape(normalizationSetId));
+        }
+        out.writeBytes(AMOUNT_START);
+        out.writeBytes(bytes(Double.toString(amount)));
+        out.writeBytes(CALCULATE_END);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return params referencing a calculation result, as taken by result/state, result/dispose and the result queries
+     */
+    static byte[] resultRefParams(String resultId) {
+        return concat(RESULT_REF_START, escape(resultId), RESULT_REF_END);
+    }
+
+    /**
+     * @return params of data/get, referencing the entity of the given type
+     */
+    static byte[] dataRefParams(String type, String id) {
+        return concat(DATA_REF_START, escape(type), DATA_REF_ID, escape(id), RESULT_REF_END);
+    }
+
+    /**
+     * Reads a single response object from the stream
+     *
+     * @return the decoded result
+     * @throws IOException if the response is malformed or has no result
+     * @throws RpcException if the server answered with an error
+     */
+    static <T> T readResponse(InputStream in, ResultDecoder<T> decoder) throws IOException {
+        Reader reader = new Reader(in);
+        T result = null;
+        boolean hasResult = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "result" -> {
+                    result = decoder.decode(reader);
+                    hasResult = true;
+                }
+                case "error" -> {
+                    RpcException error = readError(reader);
+                    if (error != null) throw error;
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (!hasResult) {
+            throw new IOException("Response without result");
+        }
+        return result;
+    }
+
+    /**
+     * @return the error of an "error" member, or null if it is null
+     */
+    static RpcException readError(Reader reader) throws IOException {
+        if (reader.peek() == 'n') {
+            reader.nextNull();
+            return null;
+        }
+        if (reader.peek() != '{') {
+            return new RpcException("IPC-Server Fehler: " + new String(reader.captureValue(), StandardCharsets.UTF_8));
+        }
+        String code = null;
+        String message = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "code" -> code = reader.peek() == '"' ? reader.nextString() : String.valueOf((long) reader.nextDouble());
+                case "message" -> message = reader.peek() == 'n' ? reader.nextNull() : reader.nextString();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new RpcException("IPC-Server Fehler " + code + ": " + message);
+    }
+
+    private static void readNormalizationSet(Reader reader, Map<String, NormalizationWeighting> normalizationSets) throws IOException {
+        String normalizationSetId = null;
+        NormalizationWeighting.Builder factors = NormalizationWeighting.builder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "@id" -> normalizationSetId = reader.nextString();
+                case "factors" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        String impactCategoryId = null;
+                        Double normalizationFactor = null;
+                        Double weightingFactor = null;
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            switch (reader.nextName()) {
+                                case "impactCategory" -> impactCategoryId = readRefId(reader);
+                                case "normalisationFactor" -> normalizationFactor = nextNullableDouble(reader);
+                                case "weightingFactor" -> weightingFactor = nextNullableDouble(reader);
+                                default -> reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                        if (impactCategoryId != null) {
+                            factors.add(impactCategoryId, normalizationFactor, weightingFactor);
+                        }
+                    }
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (normalizationSetId != null) {
+            normalizationSets.put(normalizationSetId, factors.build());
+        }
+    }
+
+    /**
+     * @return the "@id" of a reference object, or null if the reference is null
+     */
+    private static String readRefId(Reader reader) throws IOException {
+        if (reader.peek() != '{') {
+            reader.skipValue();
+            return null;
+        }
+        String id = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("@id")) {
+                id = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return id;
+    }
+
+    private static Double nextNullableDouble(Reader reader) throws IOException {
+        if (reader.peek() == 'n') {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextDouble();
+    }
+
+    private static double sumAmounts(Reader reader, boolean isAmount) throws IOException {
+        switch (reader.peek()) {
+            case '{': {
+                double sum = 0.0;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    sum += sumAmounts(reader, reader.nextName().equals("amount"));
+                }
+                reader.endObject();
+                return sum;
+            }
+            case '[': {
+                double sum = 0.0;
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    sum += sumAmounts(reader, false);
+                }
+                reader.endArray();
+                return sum;
+            }
+            default:
+                if (isAmount && reader.peek() != '"' && reader.peek() != 'n') {
+                    return reader.nextDouble();
+                }
+                reader.skipValue();
+                return 0.0;
+        }
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) out.writeBytes(part);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the UTF-8 bytes of the string as content of a JSON string literal, without the quotes
+     */
+    static byte[] escape(String string) {
+        String value = String.valueOf(string);
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                default -> c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            };
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) escaped.append(replacement);
+                else escaped.append(c);
+            }
+        }
+        return bytes(escaped != null ? escaped.toString() : value);
+    }
+
+    /**
+     * Error answered by the server for a single call
+     */
+    static class RpcException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        RpcException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Signals that the JSON read is not well-formed or ends early, as opposed to a failure of the stream itself
+     */
+    static class MalformedJsonException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        MalformedJsonException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Pull parser reading JSON tokens directly from a byte stream.
+     * Commas and colons are consumed implicitly by {@link #hasNext()} and {@link #nextName()}.
+     */
+    static final class Reader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+        private int limit;
+        // Receives every consumed byte while a value is captured
+        private ByteArrayOutputStream capture;
+        private final ByteArrayOutputStream stringBytes = new ByteArrayOutputStream(64);
+        private final StringBuilder number = new StringBuilder(32);
+
+        Reader(InputStream in) {
+            this.in = in;
+        }
+
+        Reader(byte[] json) {
+            this(new ByteArrayInputStream(json));
+        }
+
+        private boolean fill() throws IOException {
+            if (position < limit) return true;
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return false;
+            }
+            return true;
+        }
+
+        private int read() throws IOException {
+            if (!fill()) throw new MalformedJsonException("Unexpected end of JSON");
+            byte b = buffer[position++];
+            if (capture != null) capture.write(b);
+            return b & 0xFF;
+        }
+
+        /**
+         * @return the first byte of the next token without consuming it, or -1 at the end of the stream
+         */
+        int peek() throws IOException {
+            while (fill()) {
+                byte b = buffer[position];
+                if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                    position++;
+                    if (capture != null) capture.write(b);
+                } else {
+                    return b & 0xFF;
+                }
+            }
+            return -1;
+        }
+
+        private void expect(char expected) throws IOException {
+            int actual = peek();
+            if (actual != expected) {
+                throw new MalformedJsonException("Expected '" + expected + "' but found " + (actual < 0 ? "end of JSON" : "'" + (char) actual + "'"));
+            }
+            read();
+        }
+
+        void beginObject() throws IOException {
+            expect('{');
+        }
+
+        void endObject() throws IOException {
+            expect('}');
+        }
+
+        void beginArray() throws IOException {
+            expect('[');
+        }
+
+        void endArray() throws IOException {
+            expect(']');
+        }
+
+        /**
+         * @return true if the current object or array has another member, consuming the separating comma
+         */
+        boolean hasNext() throws IOException {
+            int next = peek();
+            if (next == ',') {
+                read();
+                return true;
+            }
+            return next != '}' && next != ']' && next != -1;
+        }
+
+        String nextName() throws IOException {
+            String name = nextString();
+            expect(':');
+            return name;
+        }
+
+        String nextString() throws IOException {
+            expect('"');
+            stringBytes.reset();
+            while (true) {
+                int b = read();
+                if (b == '"') break;
+                if (b != '\\') {
+                    stringBytes.write(b);
+                    continue;
+                }
+                unescape(read());
+            }
+            return stringBytes.toString(StandardCharsets.UTF_8);
+        }
+
+        private void unescape(int escaped) throws IOException {
+            switch (escaped) {
+                case 'b' -> stringBytes.write('\b');
+                case 'f' -> stringBytes.write('\f');
+                case 'n' -> stringBytes.write('\n');
+                case 'r' -> stringBytes.write('\r');
+                case 't' -> stringBytes.write('\t');
+                case 'u' -> unescapeCodeUnit(readCodeUnit());
+                default -> stringBytes.write(escaped);
+            }
+        }
+
+        private void unescapeCodeUnit(char codeUnit) throws IOException {
+            // Characters outside the BMP are escaped as surrogate pair, look at the next byte without consuming it
+            if (Character.isHighSurrogate(codeUnit) && fill() && buffer[position] == '\\') {
+                read();
+                int escaped = read();
+                if (escaped != 'u') {
+                    writeCodeUnit(codeUnit);
+                    unescape(escaped);
+                    return;
+                }
+                char next = readCodeUnit();
+                if (Character.isLowSurrogate(next)) {
+                    stringBytes.writeBytes(new String(new char[]{codeUnit, next}).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    writeCodeUnit(codeUnit);
+                    unescapeCodeUnit(next);
+                }
+                return;
+            }
+            writeCodeUnit(codeUnit);
+        }
+
+        private void writeCodeUnit(char codeUnit) {
+            stringBytes.writeBytes(String.valueOf(codeUnit).getBytes(StandardCharsets.UTF_8));
+        }
+
+        private char readCodeUnit() throws IOException {
+            int codeUnit = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(read(), 16);
+                if (digit < 0) throw new MalformedJsonException("Malformed unicode escape");
+                codeUnit = codeUnit * 16 + digit;
+            }
+            return (char) codeUnit;
+        }
+
+        double nextDouble() throws IOException {
+            peek();
+            number.setLength(0);
+            while (fill()) {
+                byte b = buffer[position];
+                if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+                    number.append((char) read());
+                } else {
+                    break;
+                }
+            }
+            try {
+                return Double.parseDouble(number.toString());
+            } catch (NumberFormatException e) {
+                throw new MalformedJsonException("Malformed number '" + number + "'");
+            }
+        }
+
+        /**
+         * @return the id as a number, also if the server echoes it as a string, or -1 if it is null or no number
+         */
+        long nextLong() throws IOException {
+            int next = peek();
+            if (next == 'n') {
+                // Servers answer with a null id if they could not read the id of the request
+                nextNull();
+                return -1;
+            }
+            if (next == '"') {
+                String value = nextString();
+                try {
+                    return Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+            return (long) nextDouble();
+        }
+
+        boolean nextBoolean() throws IOException {
+            int next = peek();
+            if (next == 't') {
+                literal("true");
+                return true;
+            }
+            literal("false");
+            return false;
+        }
+
+        /**
+         * @return null, for use in expressions
+         */
+        String nextNull() throws IOException {
+            literal("null");
+            return null;
+        }
+
+        private void literal(String literal) throws IOException {
+            peek();
+            for (int i = 0; i < literal.length(); i++) {
+                if (read() != literal.charAt(i)) {
+                    throw new MalformedJsonException("Expected " + literal);
+                }
+            }
+        }
+
+        void skipValue() throws IOException {
+            switch (peek()) {
+                case '{' -> {
+                    beginObject();
+                    while (hasNext()) {
+                        nextName();
+                        skipValue();
+                    }
+                    endObject();
+                }
+                case '[' -> {
+                    beginArray();
+                    while (hasNext()) {
+                        skipValue();
+                    }
+                    endArray();
+                }
+                case '"' -> nextString();
+                case 't', 'f' -> nextBoolean();
+                case 'n' -> nextNull();
+                case -1 -> throw new MalformedJsonException("Unexpected end of JSON");
+                default -> nextDouble();
+            }
+        }
+
+        /**
+         * Consumes the next value and returns its raw bytes, for values that can only be decoded later
+         */
+        byte[] captureValue() throws IOException {
+            peek();
+            capture = new ByteArrayOutputStream();
+            try {
+                skipValue();
+                return capture.toByteArray();
+            } finally {
+                capture = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+/**
+ * Identifies one LCA score. The amount is kept as its raw bits, so different amounts never share a score.
+ *
+ * @param normalizationSetId may be null if no normalization set is used
+ */
+public record LcaCacheKey(String productSystemId, String impactMethodId, String normalizationSetId, long amountBits) {
+
+    public static LcaCacheKey of(String productSystemId, String impactMethodId, String normalizationSetId, double amount) {
+        return new LcaCacheKey(productSystemId, impactMethodId, normalizationSetId, Double.doubleToLongBits(amount));
+    }
+
+    public double amount() {
+        return Double.longBitsToDouble(amountBits);
+    }
+}
@@ -0,0 +1,21 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Calculates weighted single scores of product systems, either over the OpenLCA bridge or in-process.
+ */
+public interface LcaCalculator {
+
+    /**
+     * @return future completing with the weighted single score of the amount of the product system,
+     * or exceptionally if it cannot be calculated
+     */
+    CompletableFuture<Double> calculateCostAsync(String productSystemId, String impactMethodId, String normalizationSetId, double amount);
+
+    /**
+     * Releases threads and connections of the calculator
+     */
+    default void shutdown() {
+    }
+}
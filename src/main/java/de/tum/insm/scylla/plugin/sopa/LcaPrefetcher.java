@@ -0,0 +1,155 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms the cost cache while the simulation is still running. The cost drivers, their cost variants and distributions
+ * are known once the configurations are parsed, so the scores they will need can be calculated before the log is written.
+ * Scores that are not known in advance, e.g. exact scores of continuously distributed amounts, are not prefetched.
+ *
+ * The cost calculation joins prefetches that are still in flight instead of calculating the same score again,
+ * so writing the log only waits for what is still outstanding.
+ */
+public final class LcaPrefetcher {
+
+    // Discrete distributions with more amounts than this are not prefetched amount by amount
+    static final int MAX_DISCRETE_AMOUNTS = 64;
+
+    private static volatile boolean enabled = true;
+    private static volatile List<AbstractCostDriver> abstractCostDrivers = List.of();
+    private static volatile CompletableFuture<Void> prefetch = CompletableFuture.completedFuture(null);
+    private static final AtomicInteger scheduled = new AtomicInteger();
+    private static final AtomicInteger completed = new AtomicInteger();
+
+    private LcaPrefetcher() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        LcaPrefetcher.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Forgets the prefetches of the previous run and sets the cost drivers of the new one
+     *
+     * @param costDrivers abstract cost drivers of the global configuration, whose concrete cost drivers are prefetched
+     */
+    public static synchronized void reset(List<? extends CostDriver> costDrivers) {
+        abstractCostDrivers = costDrivers.stream()
+                .filter(AbstractCostDriver.class::isInstance)
+                .map(AbstractCostDriver.class::cast)
+                .toList();
+        prefetch = CompletableFuture.completedFuture(null);
+        scheduled.set(0);
+        completed.set(0);
+    }
+
+    /**
+     * Starts prefetching the scores of all concrete cost drivers of the cost variants for all impact assessments of the run
+     *
+     * @return future completing once all prefetches of the run completed or failed
+     */
+    public static synchronized CompletableFuture<Void> start(List<CostVariant> costVariants) {
+        List<ImpactAssessment> assessments = CostDriverSettings.getInstance().getImpactAssessments().stream()
+                .filter(assessment -> assessment.impactMethodId() != null)
+                .toList();
+        if (!enabled || assessments.isEmpty()) {
+            return prefetch;
+        }
+        List<CompletableFuture<Void>> prefetches = new ArrayList<>();
+        for (CostVariant costVariant : costVariants) {
+            costVariant.getConcretisedACD().forEach((abstractId, concreteId) -> {
+                ConcreteCostDriver driver = findConcreteCostDriver(abstractId, concreteId);
+                if (driver == null) return;
+                Map<String, Object> distribution = costVariant.getDriverDistributions().get(concreteId);
+                // Drivers without distribution always have the amount 1
+                List<Double> amounts = distribution != null ? discreteAmounts(distribution) : List.of(1.0);
+                AmountRange amountRange = AmountRange.of(distribution);
+                for (ImpactAssessment assessment : assessments) {
+                    scheduled.incrementAndGet();
+                    prefetches.add(driver.prefetchAsync(assessment.impactMethodId(), assessment.normalizationSetId(), amounts, amountRange)
+                            .thenRun(completed::incrementAndGet));
+                }
+            });
+        }
+        prefetches.add(prefetch);
+        prefetch = CompletableFuture.allOf(prefetches.toArray(CompletableFuture[]::new));
+        System.out.println("[LcaPrefetcher] Prefetching the scores of " + (prefetches.size() - 1) + " cost drivers and impact assessments");
+        return prefetch;
+    }
+
+    private static ConcreteCostDriver findConcreteCostDriver(String abstractId, String concreteId) {
+        for (AbstractCostDriver abstractCostDriver : abstractCostDrivers) {
+            if (!abstractCostDriver.getId().equals(abstractId)) continue;
+            for (ConcreteCostDriver concreteCostDriver : abstractCostDriver.getChildren()) {
+                if (concreteCostDriver.getId().equals(concreteId)) return concreteCostDriver;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param distribution distribution as parsed by {@link CostDriverSCParserPlugin}
+     * @return all amounts the distribution can produce, or null if they are too many or not countable
+     */
+    static List<Double> discreteAmounts(Map<String, Object> distribution) {
+        String distributionType = (String) distribution.get("distributionType");
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> values = (List<Map<String, Object>>) distribution.get("values");
+        if (distributionType == null || values == null || values.isEmpty()) return null;
+        switch (distributionType) {
+            case "constantDistribution":
+            case "arbitraryFiniteProbabilityDistribution": {
+                List<Double> amounts = new ArrayList<>();
+                for (Map<String, Object> value : values) {
+                    if (("constantValue".equals(value.get("id")) || "value".equals(value.get("id"))) && !amounts.contains(number(value))) {
+                        amounts.add(number(value));
+                    }
+                }
+                return amounts.size() <= MAX_DISCRETE_AMOUNTS ? amounts : null;
+            }
+            case "binomialDistribution": {
+                for (Map<String, Object> value : values) {
+                    if ("amount".equals(value.get("id"))) {
+                        int trials = ((Number) value.get("value")).intValue();
+                        if (trials + 1 > MAX_DISCRETE_AMOUNTS) return null;
+                        List<Double> amounts = new ArrayList<>(trials + 1);
+                        for (int k = 0; k <= trials; k++) {
+                            amounts.add((double) k);
+                        }
+                        return amounts;
+                    }
+                }
+                return null;
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static Double number(Map<String, Object> value) {
+        return ((Number) value.get("value")).doubleValue();
+    }
+
+    /**
+     * @return future of the prefetch started last, completing once all its scores are cached or failed
+     */
+    public static CompletableFuture<Void> getPrefetch() {
+        return prefetch;
+    }
+
+    public static int getScheduled() {
+        return scheduled.get();
+    }
+
+    public static int getCompleted() {
+        return completed.get();
+    }
+}
@@ -0,0 +1,189 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory cache of LCA scores.
+ * The entries are spread over independently locked segments, each evicting its least recently used entry
+ * once it holds more than its share of the size bound, so concurrent lookups rarely wait for each other.
+ */
+public class LcaResultCache {
+    static final int DEFAULT_MAX_ENTRIES = 100_000;
+    private static final int SEGMENTS = 16;
+
+    private final int maxEntries;
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+    private final LongAdder deduplicatedLoads = new LongAdder();
+
+    private final class Segment extends LinkedHashMap<LcaCacheKey, Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LcaCacheKey, Double> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param maxEntries number of scores the cache holds at most
+     */
+    public LcaResultCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache must hold at least one entry");
+        }
+        this.maxEntries = maxEntries;
+        // Round up so that the segments together hold at least maxEntries
+        int segmentCapacity = (maxEntries + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    private Segment segmentFor(LcaCacheKey key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * @return the cached score, or null on a miss
+     */
+    public Double get(LcaCacheKey key) {
+        Segment segment = segmentFor(key);
+        Double score;
+        synchronized (segment) {
+            score = segment.get(key);
+        }
+        if (score != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return score;
+    }
+
+    /**
+     * @return the cached score, or null; unlike {@link #get(LcaCacheKey)} neither counted as hit nor as miss
+     */
+    public Double peek(LcaCacheKey key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    public void put(LcaCacheKey key, double score) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, score);
+        }
+    }
+
+    /**
+     * Records how long it took to obtain a score that was not cached
+     */
+    public void recordLoad(long loadTimeNanos) {
+        loads.increment();
+        totalLoadTimeNanos.add(loadTimeNanos);
+    }
+
+    /**
+     * Records a miss that joined a load of the same score already in flight instead of starting its own
+     */
+    public void recordDeduplicatedLoad() {
+        deduplicatedLoads.increment();
+    }
+
+    /**
+     * Removes all entries and resets the statistics
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        loads.reset();
+        totalLoadTimeNanos.reset();
+        deduplicatedLoads.reset();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getTotalLoadTimeNanos() {
+        return totalLoadTimeNanos.sum();
+    }
+
+    public long getDeduplicatedLoads() {
+        return deduplicatedLoads.sum();
+    }
+
+    public double getHitRate() {
+        long requests = hits.sum() + misses.sum();
+        return requests == 0 ? 0.0 : (double) hits.sum() / requests;
+    }
+
+    @Override
+    public String toString() {
+        long loadCount = loads.sum();
+        return "LcaResultCache{" +
+                "size=" + size() +
+                ", maxEntries=" + maxEntries +
+                ", hits=" + hits.sum() +
+                ", misses=" + misses.sum() +
+                ", evictions=" + evictions.sum() +
+                ", loads=" + loadCount +
+                ", deduplicatedLoads=" + deduplicatedLoads.sum() +
+                ", averageLoadTimeMillis=" + (loadCount == 0 ? 0.0 : totalLoadTimeNanos.sum() / 1e6 / loadCount) +
+                '}';
+    }
+}
@@ -0,0 +1,269 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Calculates weighted single scores in-process from matrices exported from OpenLCA, without any server.
+ *
+ * The score of an amount a of a product system whose reference product is column j of the technology matrix A is
+ * a * w^T C B A^-1 e_j, with the intervention matrix B, the characterization matrix C and the weights w of the
+ * impact categories (weighting factor divided by normalization factor). As this is linear in the demand, the unit
+ * scores of all product systems are the solution of the single transposed system A^T s = B^T C^T w; A is
+ * factorized once when the matrices are loaded, and s is solved once per normalization set.
+ *
+ * The directory holds comma separated files, whose lines may start with a header or be comments starting with '#':
+ * <ul>
+ *     <li>A.csv, B.csv and C.csv: entries of the matrices as row,column,value with zero based indices</li>
+ *     <li>index_A.csv: index,productSystemId of the columns of A that are reference products of product systems</li>
+ *     <li>NW.csv (optional): impactIndex,normalizationFactor,weightingFactor of the rows of C;
+ *     without it, or without normalization set, the score is the plain sum of the impact results</li>
+ *     <li>matrix.properties (optional): impactMethod and normalizationSet the matrices were exported for,
+ *     calculations for other ones are rejected</li>
+ * </ul>
+ */
+public class MatrixLcaEngine implements LcaCalculator {
+
+    private final Path directory;
+    private final SparseLu technology;
+    private final SparseMatrix interventions;
+    private final SparseMatrix characterization;
+    private final double[] impactWeights;
+    private final Map<String, Integer> productSystemColumns;
+    private final String impactMethodId;
+    private final String normalizationSetId;
+    private final long factorizationNanos;
+    // Unit scores of all product systems, by normalization set ("" for none)
+    private final Map<String, double[]> unitScores = new ConcurrentHashMap<>();
+
+    private MatrixLcaEngine(Path directory, SparseMatrix technologyMatrix, SparseMatrix interventions, SparseMatrix characterization,
+                            double[] impactWeights, Map<String, Integer> productSystemColumns,
+                            String impactMethodId, String normalizationSetId) {
+        this.directory = directory;
+        this.interventions = interventions;
+        this.characterization = characterization;
+        this.impactWeights = impactWeights;
+        this.productSystemColumns = productSystemColumns;
+        this.impactMethodId = impactMethodId;
+        this.normalizationSetId = normalizationSetId;
+        long start = System.nanoTime();
+        this.technology = SparseLu.factorize(technologyMatrix);
+        this.factorizationNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Loads the matrices exported to the directory and factorizes the technology matrix
+     *
+     * @throws IOException if a file cannot be read, is malformed or the technology matrix is singular
+     */
+    public static MatrixLcaEngine load(Path directory) throws IOException {
+        Properties manifest = new Properties();
+        Path manifestFile = directory.resolve("matrix.properties");
+        if (Files.exists(manifestFile)) {
+            try (Reader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+                manifest.load(reader);
+            }
+        }
+
+        Map<String, Integer> productSystemColumns = new HashMap<>();
+        int processes = 0;
+        for (String[] fields : readCsv(directory.resolve("index_A.csv"))) {
+            int index = parseIndex(fields[0], "index_A.csv");
+            processes = Math.max(processes, index + 1);
+            if (fields.length > 1 && !fields[1].isBlank()) {
+                productSystemColumns.put(fields[1].trim(), index);
+            }
+        }
+
+        SparseMatrix.Builder a = readTriplets(directory.resolve("A.csv"));
+        SparseMatrix.Builder b = readTriplets(directory.resolve("B.csv"));
+        SparseMatrix.Builder c = readTriplets(directory.resolve("C.csv"));
+        processes = Math.max(processes, Math.max(a.getMaxRow(), a.getMaxColumn()) + 1);
+        int flows = Math.max(b.getMaxRow(), c.getMaxColumn()) + 1;
+        int impacts = c.getMaxRow() + 1;
+
+        double[] impactWeights = null;
+        Path nwFile = directory.resolve("NW.csv");
+        if (Files.exists(nwFile)) {
+            Map<Integer, Double> weights = new HashMap<>();
+            for (String[] fields : readCsv(nwFile)) {
+                if (fields.length < 3) {
+                    throw new IOException("NW.csv needs impactIndex,normalizationFactor,weightingFactor, got " + String.join(",", fields));
+                }
+                int impact = parseIndex(fields[0], "NW.csv");
+                double normalization = parseValue(fields[1], "NW.csv");
+                double weighting = parseValue(fields[2], "NW.csv");
+                weights.put(impact, normalization == 0.0 ? 0.0 : weighting / normalization);
+                impacts = Math.max(impacts, impact + 1);
+            }
+            impactWeights = new double[impacts];
+            for (Map.Entry<Integer, Double> weight : weights.entrySet()) {
+                impactWeights[weight.getKey()] = weight.getValue();
+            }
+        }
+
+        try {
+            return new MatrixLcaEngine(directory, a.build(processes, processes), b.build(flows, processes), c.build(impacts, flows),
+                    impactWeights, productSystemColumns,
+                    blankToNull(manifest.getProperty("impactMethod")), blankToNull(manifest.getProperty("normalizationSet")));
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            throw new IOException("Invalid matrices in " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Double> calculateCostAsync(String productSystemId, String impactMethodId, String normalizationSetId, double amount) {
+        try {
+            return CompletableFuture.completedFuture(calculate(productSystemId, impactMethodId, normalizationSetId, amount));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * @return the weighted single score of the amount of the product system
+     * @throws IllegalArgumentException if the product system or impact method is not part of the exported matrices
+     */
+    public double calculate(String productSystemId, String impactMethodId, String normalizationSetId, double amount) {
+        if (this.impactMethodId != null && impactMethodId != null && !this.impactMethodId.equals(impactMethodId)) {
+            throw new IllegalArgumentException("Matrices in " + directory + " were exported for impact method "
+                    + this.impactMethodId + ", not " + impactMethodId);
+        }
+        Integer column = productSystemColumns.get(productSystemId);
+        if (column == null) {
+            throw new IllegalArgumentException("Product system " + productSystemId + " is not part of the matrices in " + directory);
+        }
+        return amount * unitScores(normalizationSetId)[column];
+    }
+
+    /**
+     * @return the inventory, i.e. the elementary flows, of the amount of the product system
+     */
+    public double[] inventory(String productSystemId, double amount) {
+        Integer column = productSystemColumns.get(productSystemId);
+        if (column == null) {
+            throw new IllegalArgumentException("Product system " + productSystemId + " is not part of the matrices in " + directory);
+        }
+        double[] demand = new double[technology.order()];
+        demand[column] = amount;
+        return interventions.multiply(technology.solve(demand));
+    }
+
+    private double[] unitScores(String normalizationSetId) {
+        boolean weighted = impactWeights != null && normalizationSetId != null
+                && (this.normalizationSetId == null || this.normalizationSetId.equals(normalizationSetId));
+        if (impactWeights != null && normalizationSetId != null && !weighted) {
+            throw new IllegalArgumentException("Matrices in " + directory + " were exported for normalization set "
+                    + this.normalizationSetId + ", not " + normalizationSetId);
+        }
+        return unitScores.computeIfAbsent(weighted ? normalizationSetId : "", key -> {
+            double[] weights = new double[characterization.rows];
+            for (int impact = 0; impact < weights.length; impact++) {
+                weights[impact] = weighted ? impactWeights[impact] : 1.0;
+            }
+            double[] flowWeights = characterization.multiplyTransposed(weights);
+            return technology.solveTransposed(interventions.multiplyTransposed(flowWeights));
+        });
+    }
+
+    private static SparseMatrix.Builder readTriplets(Path file) throws IOException {
+        SparseMatrix.Builder builder = SparseMatrix.builder();
+        String name = file.getFileName().toString();
+        for (String[] fields : readCsv(file)) {
+            if (fields.length < 3) {
+                throw new IOException(name + " needs row,column,value, got " + String.join(",", fields));
+            }
+            builder.add(parseIndex(fields[0], name), parseIndex(fields[1], name), parseValue(fields[2], name));
+        }
+        return builder;
+    }
+
+    /**
+     * @return the fields of all lines but comments, blank lines and a header line
+     */
+    private static List<String[]> readCsv(Path file) throws IOException {
+        List<String[]> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split(",");
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = fields[i].trim();
+                }
+                if (first && !isNumber(fields[0])) {
+                    first = false;
+                    continue;
+                }
+                first = false;
+                lines.add(fields);
+            }
+        }
+        return lines;
+    }
+
+    private static boolean isNumber(String field) {
+        try {
+            Double.parseDouble(field);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static int parseIndex(String field, String file) throws IOException {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid index " + field + " in " + file);
+        }
+    }
+
+    private static double parseValue(String field, String file) throws IOException {
+        try {
+            return Double.parseDouble(field);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid value " + field + " in " + file);
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    public int getProcesses() {
+        return technology.order();
+    }
+
+    public int getProductSystems() {
+        return productSystemColumns.size();
+    }
+
+    @Override
+    public String toString() {
+        return "MatrixLcaEngine{" +
+                "directory=" + directory +
+                ", processes=" + technology.order() +
+                ", flows=" + interventions.rows +
+                ", impacts=" + characterization.rows +
+                ", productSystems=" + productSystemColumns.size() +
+                ", luNonZeros=" + technology.nonZeros() +
+                ", factorizationMillis=" + factorizationNanos / 1e6 +
+                ", impactMethod=" + Objects.toString(impactMethodId, "any") +
+                '}';
+    }
+}
@@ -0,0 +1,60 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Normalization and weighting factors of one normalization set, combined per impact category.
+ * As in OpenLCA, the weighted result of a category is its characterized result divided by the normalization
+ * factor and multiplied by the weighting factor; categories without factors, or with a normalization factor
+ * of zero, do not contribute to the single score.
+ *
+ * @param factors weighting factor divided by normalization factor, by impact category id
+ */
+public record NormalizationWeighting(Map<String, Double> factors) {
+
+    public NormalizationWeighting {
+        factors = Map.copyOf(factors);
+    }
+
+    /**
+     * Collects the factors of a normalization set
+     */
+    static final class Builder {
+        private final Map<String, Double> factors = new HashMap<>();
+
+        /**
+         * @param normalizationFactor null if the set does not normalize the category
+         * @param weightingFactor     null if the set does not weight the category
+         */
+        Builder add(String impactCategoryId, Double normalizationFactor, Double weightingFactor) {
+            double normalization = normalizationFactor != null ? normalizationFactor : 1.0;
+            double weighting = weightingFactor != null ? weightingFactor : 1.0;
+            factors.put(impactCategoryId, normalization == 0.0 ? 0.0 : weighting / normalization);
+            return this;
+        }
+
+        NormalizationWeighting build() {
+            return new NormalizationWeighting(factors);
+        }
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param impacts characterized results by impact category id
+     * @return the weighted single score
+     */
+    public double singleScore(Map<String, Double> impacts) {
+        double score = 0.0;
+        for (Map.Entry<String, Double> impact : impacts.entrySet()) {
+            Double factor = factors.get(impact.getKey());
+            if (factor != null) {
+                score += impact.getValue() * factor;
+            }
+        }
+        return score;
+    }
+}
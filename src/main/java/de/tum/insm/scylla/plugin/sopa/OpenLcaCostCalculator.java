@@ -1,22 +1,220 @@
 package de.tum.insm.scylla.plugin.sopa;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class OpenLcaCostCalculator {
+    // Upper bound only, the adaptive limiter finds the concurrency the server copes with below it
+    static final int DEFAULT_MAX_CONCURRENT_CALCULATIONS = 32;
+
     private final HttpClient httpClient;
     private final String ipcServerUrl;
+    private final ExecutorService calculationExecutor;
+    private volatile PollingStrategy pollingStrategy = PollingStrategy.defaults();
+    private volatile AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private volatile CircuitBreaker circuitBreaker = CircuitBreaker.defaults();
+    // Passes the kind of every request on to the concurrency limiter
+    private final JsonRpcBatcher.Transport transport = new JsonRpcBatcher.Transport() {
+        @Override
+        public InputStream send(byte[] payload) throws Exception {
+            return sendRpcRequest(null, payload);
+        }
+
+        @Override
+        public InputStream send(String kind, byte[] payload) throws Exception {
+            return sendRpcRequest(kind, payload);
+        }
+    };
+    private volatile JsonRpcBatcher batcher = new JsonRpcBatcher(transport,
+            JsonRpcBatcher.DEFAULT_MAX_BATCH_SIZE, JsonRpcBatcher.DEFAULT_LINGER_MILLIS);
+
+    private final AtomicLong nextRequestId = new AtomicLong();
+
+    // Polling statistics, used to tune the polling strategy
+    private final LongAdder polledCalculations = new LongAdder();
+    private final LongAdder totalPolls = new LongAdder();
+    private final AtomicInteger maxPolls = new AtomicInteger();
 
     public OpenLcaCostCalculator(String ipcServerBaseUrl) {
+        this(ipcServerBaseUrl, DEFAULT_MAX_CONCURRENT_CALCULATIONS);
+    }
+
+    /**
+     * @param ipcServerBaseUrl          base url of the OpenLCA IPC server, "json-rpc" is appended
+     * @param maxConcurrentCalculations upper bound of calculations that are in flight against the server at the same time,
+     *                                  requests are additionally bounded by an adaptive limit below it
+     */
+    public OpenLcaCostCalculator(String ipcServerBaseUrl, int maxConcurrentCalculations) {
+        if (maxConcurrentCalculations < 1) {
+            throw new IllegalArgumentException("At least one concurrent calculation must be allowed");
+        }
         this.httpClient = HttpClient.newBuilder()
                 .version(HttpClient.Version.HTTP_1_1)
                 .connectTimeout(Duration.ofSeconds(20))
                 .build();
+        this.concurrencyLimiter = AdaptiveConcurrencyLimiter.upTo(maxConcurrentCalculations);
         this.ipcServerUrl = ipcServerBaseUrl + (ipcServerBaseUrl.endsWith("/") ? "" : "/") + "json-rpc";
+        // Java 17 has no virtual threads, so a bounded pool of daemon threads limits the load on the server instead
+        AtomicInteger threadCount = new AtomicInteger();
+        this.calculationExecutor = Executors.newFixedThreadPool(maxConcurrentCalculations, runnable -> {
+            Thread thread = new Thread(runnable, "openlca-calculation-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the calculation of the weighted single score without blocking the caller.
+     * Independent calculations run in parallel, bounded by the configured number of concurrent calculations.
+     * While the circuit breaker is open, calculations fail immediately with a {@link CalculationRejectedException}.
+     *
+     * @return future completing with the single score, or exceptionally if the calculation failed
+     */
+    public CompletableFuture<Double> calculateCostAsync(
+            String productSystemId,
+            String impactMethodId,
+            String normalizationSetId,
+            double amount) {
+        return calculateAsync(productSystemId, () -> calculateResult(productSystemId, impactMethodId, normalizationSetId, amount,
+                "result/total-impacts/weighted", JsonRpcCodec.WEIGHTED_IMPACT_SUM));
+    }
+
+    /**
+     * Starts the calculation of the characterized, neither normalized nor weighted, impact results without blocking the caller.
+     * Like {@link #calculateCostAsync}, it is bounded by the concurrent calculations and guarded by the circuit breaker.
+     *
+     * @return future completing with the result of every impact category by impact category id, or exceptionally if the calculation failed
+     */
+    public CompletableFuture<Map<String, Double>> calculateImpactsAsync(String productSystemId, String impactMethodId, double amount) {
+        return calculateAsync(productSystemId, () -> calculateResult(productSystemId, impactMethodId, null, amount,
+                "result/total-impacts", JsonRpcCodec.IMPACT_VECTOR));
+    }
+
+    private <T> CompletableFuture<T> calculateAsync(String dataSetId, Callable<T> calculation) {
+        CircuitBreaker breaker = this.circuitBreaker;
+        if (!breaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new CalculationRejectedException(
+                    "Circuit breaker of " + ipcServerUrl + " is open, calculation of " + dataSetId + " skipped"));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return calculation.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, calculationExecutor).whenComplete((result, error) -> {
+            if (error != null && isServerFailure(error)) {
+                breaker.recordFailure();
+            } else {
+                // Also an error answered for this one calculation shows that the server works
+                breaker.recordSuccess();
+            }
+        });
+    }
+
+    /**
+     * @return true if the server could not be reached, failed itself or did not finish in time,
+     * false if it rejected only the calculation at hand, e.g. for an unknown product system
+     */
+    static boolean isServerFailure(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof IpcServerException serverException) {
+            return serverException.isServerError();
+        }
+        return error instanceof IOException || error instanceof TimeoutException;
+    }
+
+    /**
+     * Reads the normalization and weighting factors of the impact method from the server
+     *
+     * @return the normalization sets of the impact method by normalization set id
+     */
+    public Map<String, NormalizationWeighting> loadNormalizationSets(String impactMethodId) throws Exception {
+        return callRpc("data/get", JsonRpcCodec.dataRefParams("ImpactMethod", impactMethodId), JsonRpcCodec.NORMALIZATION_SETS);
+    }
+
+    /**
+     * Reads the normalization and weighting factors without blocking the caller.
+     * Like {@link #calculateCostAsync}, it is bounded by the concurrent calculations and guarded by the circuit breaker.
+     *
+     * @return future completing with the normalization sets of the impact method by normalization set id
+     */
+    public CompletableFuture<Map<String, NormalizationWeighting>> loadNormalizationSetsAsync(String impactMethodId) {
+        return calculateAsync(impactMethodId, () -> loadNormalizationSets(impactMethodId));
+    }
+
+    /**
+     * Checks which of the data sets the server knows. With batching enabled, the lookups of all of them
+     * travel in as few batch requests as the batch size allows.
+     *
+     * @param type          data set type, e.g. ProductSystem
+     * @param timeoutMillis time to wait for all answers
+     * @return ids of the data sets the server has none for
+     * @throws Exception if the server cannot be reached or does not answer in time
+     */
+    public List<String> findMissingDataSets(String type, Collection<String> ids, long timeoutMillis) throws Exception {
+        Map<String, CompletableFuture<Boolean>> lookups = new LinkedHashMap<>();
+        JsonRpcBatcher batcher = this.batcher;
+        for (String id : ids) {
+            byte[] params = JsonRpcCodec.dataRefParams(type, id);
+            lookups.put(id, batcher != null
+                    ? batcher.submit("data/get", params, JsonRpcCodec.PRESENT)
+                    : CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return callRpc("data/get", params, JsonRpcCodec.PRESENT);
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                    }, calculationExecutor));
+        }
+        if (batcher != null) {
+            batcher.flush();
+        }
+        CompletableFuture.allOf(lookups.values().stream()
+                        .map(lookup -> lookup.handle((present, error) -> null))
+                        .toArray(CompletableFuture[]::new))
+                .get(timeoutMillis, TimeUnit.MILLISECONDS);
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<Boolean>> lookup : lookups.entrySet()) {
+            try {
+                if (!lookup.getValue().join()) {
+                    missing.add(lookup.getKey());
+                }
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof JsonRpcCodec.RpcException) {
+                    // The server answered, but has no such data set
+                    missing.add(lookup.getKey());
+                } else {
+                    throw cause instanceof Exception exception ? exception : e;
+                }
+            }
+        }
+        return missing;
     }
 
     public String calculateCostViaBridge(
@@ -25,22 +223,119 @@ public class OpenLcaCostCalculator {
             String normalizationSetId,
             double amount) throws Exception {
         try {
-            double totalScore = calculateSingleScore(productSystemId, impactMethodId, normalizationSetId, amount);
+            double totalScore = calculateCostAsync(productSystemId, impactMethodId, normalizationSetId, amount).join();
             String responseJson = String.format("{\"success\":true,\"cost\":%.6f}", totalScore);
             return responseJson;
-        } catch (Exception e) {
+        } catch (CompletionException completionException) {
+            Throwable e = completionException.getCause() != null ? completionException.getCause() : completionException;
             System.err.println("[ERROR] Exception in calculateCost: " + e.getMessage());
             e.printStackTrace();
-            String errorJson = String.format("{\"success\":false,\"error\":\"%s\"}", e.getMessage().replace("\"", "\\\""));
+            String errorJson = String.format("{\"success\":false,\"error\":\"%s\"}", String.valueOf(e.getMessage()).replace("\"", "\\\""));
             return errorJson;
         }
     }
 
-    private double calculateSingleScore(
+    public PollingStrategy getPollingStrategy() {
+        return pollingStrategy;
+    }
+
+    public void setPollingStrategy(PollingStrategy pollingStrategy) {
+        this.pollingStrategy = pollingStrategy;
+    }
+
+    /**
+     * @return the limiter of requests in flight, or null if only the number of calculation threads limits them
+     */
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Enables or disables grouping of concurrent calls into JSON-RPC batch requests
+     *
+     * @param maxBatchSize maximum number of calls in one batch
+     * @param lingerMillis time a call waits for further calls before its batch is sent
+     */
+    public void setBatching(boolean enabled, int maxBatchSize, long lingerMillis) {
+        JsonRpcBatcher previous = this.batcher;
+        this.batcher = enabled ? new JsonRpcBatcher(transport, maxBatchSize, lingerMillis) : null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * @return number of batch requests sent, 0 if batching is disabled
+     */
+    public long getSentBatches() {
+        JsonRpcBatcher batcher = this.batcher;
+        return batcher == null ? 0 : batcher.getSentBatches();
+    }
+
+    /**
+     * @return number of calls that were sent as part of a batch, 0 if batching is disabled
+     */
+    public long getBatchedCalls() {
+        JsonRpcBatcher batcher = this.batcher;
+        return batcher == null ? 0 : batcher.getBatchedCalls();
+    }
+
+    /**
+     * @return number of calculations that waited for their result, including the ones that ran into the deadline
+     */
+    public long getPolledCalculations() {
+        return polledCalculations.sum();
+    }
+
+    public long getTotalPolls() {
+        return totalPolls.sum();
+    }
+
+    public int getMaxPolls() {
+        return maxPolls.get();
+    }
+
+    public double getAveragePollsPerCalculation() {
+        long calculations = polledCalculations.sum();
+        return calculations == 0 ? 0.0 : (double) totalPolls.sum() / calculations;
+    }
+
+    /**
+     * Stops accepting new calculations, calculations already in flight are completed.
+     */
+    public void shutdown() {
+        calculationExecutor.shutdown();
+        JsonRpcBatcher batcher = this.batcher;
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+    }
+
+    /**
+     * Calculates the product system, waits for the result, queries it and disposes it
+     *
+     * @param query   result query method, e.g. result/total-impacts/weighted
+     * @param decoder decodes the answer of the query
+     */
+    private <T> T calculateResult(
             String productSystemId,
             String impactMethodId,
             String normalizationSetId,
-            double amount) throws Exception {
+            double amount,
+            String query,
+            JsonRpcCodec.ResultDecoder<T> decoder) throws Exception {
         if (productSystemId == null) {
             System.err.println("[ERROR] productSystemId is null!");
         }
@@ -51,103 +346,148 @@ public class OpenLcaCostCalculator {
             System.err.println("[WARN] amount is 0.0!");
         }
         // Schritt 1: Berechnung starten
-        StringBuilder params = new StringBuilder();
-        params.append("\"target\":{\"@type\":\"ProductSystem\",\"@id\":\"").append(productSystemId).append("\"},");
-        params.append("\"impactMethod\":{\"@type\":\"ImpactMethod\",\"@id\":\"").append(impactMethodId).append("\"},");
-        if (normalizationSetId != null) {
-            params.append("\"nwSet\":{\"@type\":\"NwSet\",\"@id\":\"").append(normalizationSetId).append("\"},");
-        }
-        params.append("\"amount\":").append(amount).append(",");
-        params.append("\"allocation\":\"USE_DEFAULT_ALLOCATION\",");
-        params.append("\"withCosts\":false,");
-        params.append("\"withRegionalization\":false");
-        String paramStr = params.toString();
-        if (paramStr.endsWith(",")) paramStr = paramStr.substring(0, paramStr.length()-1);
-        String calculateRequest = String.format("{\"jsonrpc\":\"2.0\",\"method\":\"result/calculate\",\"params\":{%s},\"id\":\"%s\"}", paramStr, UUID.randomUUID());
-        String calcResponse = sendRpcRequest(calculateRequest);
-        String resultId = extractJsonField(calcResponse, "@id");
+        JsonRpcCodec.CalculationState state = callRpc("result/calculate",
+                JsonRpcCodec.calculateParams(productSystemId, impactMethodId, normalizationSetId, amount),
+                JsonRpcCodec.CALCULATION_STATE);
+        if (state.resultId() == null) {
+            throw new RuntimeException("Keine Ergebnis-ID für " + productSystemId + " erhalten");
+        }
+        byte[] resultRef = JsonRpcCodec.resultRefParams(state.resultId());
 
         // Schritt 1b: Warte auf Ergebnis
-        boolean isReady = Boolean.parseBoolean(extractJsonField(calcResponse, "isReady"));
-        int maxAttempts = 30;
-        int attempt = 0;
-        while (!isReady && attempt < maxAttempts) {
-            Thread.sleep(1000);
-            String statusRequest = String.format("{\"jsonrpc\":\"2.0\",\"method\":\"result/state\",\"params\":{\"@id\":\"%s\"},\"id\":\"%s\"}", resultId, UUID.randomUUID());
-            String statusResponse = sendRpcRequest(statusRequest);
-            isReady = Boolean.parseBoolean(extractJsonField(statusResponse, "isReady"));
-            attempt++;
-        }
-        if (!isReady) {
-            throw new RuntimeException("Berechnung nicht innerhalb der Timeout-Zeit abgeschlossen");
+        boolean isReady = state.ready();
+        PollingStrategy strategy = this.pollingStrategy;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(strategy.getDeadlineMillis());
+        int polls = 0;
+        while (!isReady) {
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                recordPolls(polls);
+                throw new TimeoutException("Berechnung nicht innerhalb der Timeout-Zeit abgeschlossen (" + polls + " Abfragen)");
+            }
+            // The last delay is cut short, so that the result is polled once more right at the deadline
+            Thread.sleep(Math.min(strategy.delayBeforePoll(polls), TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+            isReady = callRpc("result/state", resultRef, JsonRpcCodec.CALCULATION_STATE).ready();
+            polls++;
         }
+        recordPolls(polls);
 
         // Schritt 2: Ergebnisse abrufen
-        String getImpactsRequest = String.format("{\"jsonrpc\":\"2.0\",\"method\":\"result/total-impacts/weighted\",\"params\":{\"@id\":\"%s\"},\"id\":\"%s\"}", resultId, UUID.randomUUID());
-        String impactsResponse = sendRpcRequest(getImpactsRequest);
-        double totalScore = sumAmountsFromWeightedImpacts(impactsResponse);
+        T result = callRpc(query, resultRef, decoder);
 
         // Schritt 4: Aufräumen
-        String disposeRequest = String.format("{\"jsonrpc\":\"2.0\",\"method\":\"result/dispose\",\"params\":{\"@id\":\"%s\"},\"id\":\"%s\"}", resultId, UUID.randomUUID());
-        sendRpcRequest(disposeRequest);
+        JsonRpcBatcher batcher = this.batcher;
+        if (batcher != null) {
+            // Nobody waits for the dispose, it travels with the next batch
+            batcher.submit("result/dispose", resultRef, JsonRpcCodec.IGNORE);
+        } else {
+            callRpc("result/dispose", resultRef, JsonRpcCodec.IGNORE);
+        }
+
+        return result;
+    }
+
+    private void recordPolls(int polls) {
+        polledCalculations.increment();
+        totalPolls.add(polls);
+        maxPolls.accumulateAndGet(polls, Math::max);
+    }
+
+    /**
+     * Sends a single JSON-RPC call, as part of a batch if batching is enabled
+     *
+     * @param params pre-encoded params object
+     * @return the decoded result of the call
+     */
+    private <T> T callRpc(String method, byte[] params, JsonRpcCodec.ResultDecoder<T> decoder) throws Exception {
+        JsonRpcBatcher batcher = this.batcher;
+        if (batcher != null) {
+            try {
+                return batcher.submit(method, params, decoder).get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        try (InputStream response = sendRpcRequest(method, JsonRpcCodec.encodeRequest(method, params, nextRequestId.incrementAndGet()))) {
+            return JsonRpcCodec.readResponse(response, decoder);
+        }
+    }
 
-        return totalScore;
+    /**
+     * Checks whether the server answers at all. Any answer counts, also an error for the unknown probe method.
+     *
+     * @param timeoutMillis time to wait for the answer
+     */
+    public boolean isReachable(long timeoutMillis) {
+        byte[] probe = JsonRpcCodec.encodeRequest("ping", JsonRpcCodec.EMPTY_PARAMS, nextRequestId.incrementAndGet());
+        try (InputStream response = sendRpcRequest(probe, Duration.ofMillis(timeoutMillis))) {
+            response.readAllBytes();
+            return true;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            // The server answered with an error status
+            return true;
+        }
     }
 
-    private String sendRpcRequest(String jsonPayload) throws Exception {
-        HttpRequest request = HttpRequest.newBuilder()
+    /**
+     * @return url of the JSON-RPC endpoint of the server
+     */
+    public String getUrl() {
+        return ipcServerUrl;
+    }
+
+    /**
+     * Sends a request once the concurrency limiter lets it through, and feeds its latency and outcome back to the limiter
+     *
+     * @param kind kind of the request, whose latencies the limiter compares with each other
+     */
+    private InputStream sendRpcRequest(String kind, byte[] jsonPayload) throws Exception {
+        AdaptiveConcurrencyLimiter limiter = this.concurrencyLimiter;
+        if (limiter == null) {
+            return sendRpcRequest(jsonPayload, null);
+        }
+        limiter.acquire();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            InputStream response = sendRpcRequest(jsonPayload, null);
+            failed = false;
+            return response;
+        } finally {
+            limiter.release(kind, System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * @param timeout time to wait for the response, null to wait as long as the server needs
+     * @return stream of the response body, to be closed by the caller
+     */
+    private InputStream sendRpcRequest(byte[] jsonPayload, Duration timeout) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
                 .uri(URI.create(this.ipcServerUrl))
                 .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                .build();
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                .POST(HttpRequest.BodyPublishers.ofByteArray(jsonPayload));
+        if (timeout != null) {
+            builder.timeout(timeout);
+        }
+        HttpRequest request = builder.build();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
         if (response.statusCode() >= 200 && response.statusCode() < 300) {
             return response.body();
         } else {
-            String errorMsg = String.format("IPC-Server Fehler %d: %s", response.statusCode(), response.body());
+            String body;
+            try (InputStream errorBody = response.body()) {
+                body = new String(errorBody.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            String errorMsg = String.format("IPC-Server Fehler %d: %s", response.statusCode(), body);
             System.err.println("[OpenLCA Calculator] " + errorMsg);
-            throw new RuntimeException(errorMsg);
-        }
-    }
-
-    private String extractJsonField(String json, String field) {
-        String search = "\"" + field + "\":";
-        int idx = json.indexOf(search);
-        if (idx == -1) return null;
-        int start = idx + search.length();
-        // Überspringe evtl. Leerzeichen
-        while (start < json.length() && Character.isWhitespace(json.charAt(start))) start++;
-        char c = json.charAt(start);
-        if (c == '"') {
-            int end = json.indexOf('"', start + 1);
-            return json.substring(start + 1, end);
-        } else if (c == 't' && json.startsWith("true", start)) {
-            return "true";
-        } else if (c == 'f' && json.startsWith("false", start)) {
-            return "false";
-        } else {
-            int end = json.indexOf(',', start);
-            if (end == -1) end = json.indexOf('}', start);
-            if (end == -1) end = json.length();
-            return json.substring(start, end).replaceAll("[^0-9.eE-]", "").trim();
-        }
-    }
-
-    private double sumAmountsFromWeightedImpacts(String json) {
-        double sum = 0.0;
-        int idx = 0;
-        while ((idx = json.indexOf("\"amount\":", idx)) != -1) {
-            int start = idx + "\"amount\":".length();
-            int end = json.indexOf(',', start);
-            if (end == -1) end = json.indexOf('}', start);
-            if (end == -1) end = json.length();
-            String value = json.substring(start, end).replaceAll("[^0-9.eE-]", "").trim();
-            try {
-                sum += Double.parseDouble(value);
-            } catch (Exception ignored) {}
-            idx = end;
+            throw new IpcServerException(response.statusCode(), errorMsg);
         }
-        return sum;
     }
 
-} 
\ No newline at end of file
+}
@@ -0,0 +1,343 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Spreads calculations over several OpenLCA IPC servers, e.g. several local OpenLCA processes on different ports.
+ *
+ * Calculations are routed by consistent hashing on the product system id, so that every server keeps calculating
+ * the same product systems and keeps their matrices warm. A server drops out of the routing while it fails
+ * health checks, cannot be connected to or has its circuit breaker open; only its product systems move to the
+ * other servers, and they move back once it recovers.
+ */
+public class OpenLcaServerPool implements LcaCalculator {
+    static final long DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS = 5_000;
+
+    private static final class Server {
+        private final OpenLcaCostCalculator calculator;
+        private volatile boolean healthy = true;
+        private final LongAdder routedCalculations = new LongAdder();
+
+        private Server(OpenLcaCostCalculator calculator) {
+            this.calculator = calculator;
+        }
+
+        private boolean isAvailable() {
+            return healthy && calculator.getCircuitBreaker().getState() != CircuitBreaker.State.OPEN;
+        }
+
+        @Override
+        public String toString() {
+            return calculator.getUrl();
+        }
+    }
+
+    private final List<Server> servers = new ArrayList<>();
+    private final ConsistentHashRing<Server> ring;
+    private final long healthCheckIntervalMillis;
+    private final ScheduledExecutorService healthChecker;
+
+    // Local weighting: characterized impact results by product system, impact method and amount, least recently used evicted first
+    private volatile boolean localWeighting;
+    private volatile int maxImpactVectors = LcaResultCache.DEFAULT_MAX_ENTRIES;
+    private final Map<LcaCacheKey, CompletableFuture<Map<String, Double>>> impactVectors = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LcaCacheKey, CompletableFuture<Map<String, Double>>> eldest) {
+            return size() > maxImpactVectors;
+        }
+    };
+    private final Map<String, CompletableFuture<Map<String, NormalizationWeighting>>> normalizationSets = new ConcurrentHashMap<>();
+    private final LongAdder impactVectorHits = new LongAdder();
+    private final LongAdder impactVectorMisses = new LongAdder();
+
+    public OpenLcaServerPool(String url, int maxConcurrentCalculations) {
+        this(List.of(url), maxConcurrentCalculations, DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param urls                      base urls of the OpenLCA IPC servers
+     * @param maxConcurrentCalculations upper bound of calculations in flight against each server
+     * @param healthCheckIntervalMillis time between two health checks of every server, 0 for no health checks
+     */
+    public OpenLcaServerPool(List<String> urls, int maxConcurrentCalculations, long healthCheckIntervalMillis) {
+        for (String url : urls) {
+            servers.add(new Server(new OpenLcaCostCalculator(url, maxConcurrentCalculations)));
+        }
+        this.ring = new ConsistentHashRing<>(servers, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+        // A single server is used in any case, so it needs no health checks
+        if (servers.size() > 1 && healthCheckIntervalMillis > 0) {
+            this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "openlca-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckIntervalMillis, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.healthChecker = null;
+        }
+    }
+
+    /**
+     * Calculates the weighted single score on the server owning the product system.
+     * If that server cannot be connected to, it is taken out of the routing and the next server is tried.
+     * With local weighting, the score is weighted here from the cached impact results of the product system instead.
+     *
+     * @return future completing with the single score, or exceptionally if the calculation failed
+     */
+    @Override
+    public CompletableFuture<Double> calculateCostAsync(String productSystemId, String impactMethodId, String normalizationSetId, double amount) {
+        if (localWeighting && normalizationSetId != null) {
+            return impactsAsync(productSystemId, impactMethodId, amount)
+                    .thenCombine(normalizationSetAsync(impactMethodId, normalizationSetId),
+                            (impacts, normalizationWeighting) -> normalizationWeighting.singleScore(impacts));
+        }
+        return calculateOn(new HashSet<>(), productSystemId,
+                calculator -> calculator.calculateCostAsync(productSystemId, impactMethodId, normalizationSetId, amount));
+    }
+
+    /**
+     * @return future completing with the characterized impact results of the amount, calculated at most once while cached
+     */
+    private CompletableFuture<Map<String, Double>> impactsAsync(String productSystemId, String impactMethodId, double amount) {
+        LcaCacheKey key = LcaCacheKey.of(productSystemId, impactMethodId, null, amount);
+        CompletableFuture<Map<String, Double>> impacts;
+        boolean calculate = false;
+        synchronized (impactVectors) {
+            impacts = impactVectors.get(key);
+            if (impacts == null) {
+                impacts = new CompletableFuture<>();
+                impactVectors.put(key, impacts);
+                calculate = true;
+            }
+        }
+        if (calculate) {
+            impactVectorMisses.increment();
+            CompletableFuture<Map<String, Double>> calculation = impacts;
+            calculateOn(new HashSet<>(), productSystemId,
+                    calculator -> calculator.calculateImpactsAsync(productSystemId, impactMethodId, amount))
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            // Failures are not cached here, the cost drivers decide when to try again
+                            synchronized (impactVectors) {
+                                impactVectors.remove(key, calculation);
+                            }
+                            calculation.completeExceptionally(error);
+                        } else {
+                            calculation.complete(Map.copyOf(result));
+                        }
+                    });
+        } else {
+            impactVectorHits.increment();
+        }
+        return impacts;
+    }
+
+    /**
+     * @return future completing with the factors of the normalization set, read once per impact method
+     */
+    private CompletableFuture<NormalizationWeighting> normalizationSetAsync(String impactMethodId, String normalizationSetId) {
+        CompletableFuture<Map<String, NormalizationWeighting>> sets = normalizationSets.computeIfAbsent(impactMethodId,
+                method -> calculateOn(new HashSet<>(), method, calculator -> calculator.loadNormalizationSetsAsync(method)));
+        return sets.handle((byId, error) -> {
+            if (error != null) {
+                normalizationSets.remove(impactMethodId, sets);
+                throw error instanceof CompletionException completionException ? completionException : new CompletionException(error);
+            }
+            NormalizationWeighting normalizationWeighting = byId.get(normalizationSetId);
+            if (normalizationWeighting == null) {
+                throw new IllegalArgumentException("Impact method " + impactMethodId + " has no normalization set " + normalizationSetId);
+            }
+            return normalizationWeighting;
+        });
+    }
+
+    /**
+     * Checks which of the data sets the servers know, asking every server for the ids it owns
+     *
+     * @return ids of the data sets their servers have none for
+     * @throws Exception if a server cannot be reached or does not answer in time
+     * @see OpenLcaCostCalculator#findMissingDataSets(String, Collection, long)
+     */
+    public List<String> findMissingDataSets(String type, Collection<String> ids, long timeoutMillis) throws Exception {
+        Map<Server, List<String>> idsByServer = new LinkedHashMap<>();
+        for (String id : ids) {
+            Server server = ring.nodeFor(id, Server::isAvailable);
+            idsByServer.computeIfAbsent(server != null ? server : ring.nodeFor(id), owner -> new ArrayList<>()).add(id);
+        }
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<Server, List<String>> serverIds : idsByServer.entrySet()) {
+            missing.addAll(serverIds.getKey().calculator.findMissingDataSets(type, serverIds.getValue(), timeoutMillis));
+        }
+        return missing;
+    }
+
+    private <T> CompletableFuture<T> calculateOn(Set<Server> tried, String productSystemId,
+                                                 Function<OpenLcaCostCalculator, CompletableFuture<T>> calculation) {
+        Server server = ring.nodeFor(productSystemId, candidate -> candidate.isAvailable() && !tried.contains(candidate));
+        if (server == null && tried.isEmpty()) {
+            // No server is available, let the owner's circuit breaker decide instead of failing right here
+            server = ring.nodeFor(productSystemId);
+        }
+        if (server == null) {
+            return CompletableFuture.failedFuture(new CalculationRejectedException(
+                    "No OpenLCA server reachable for " + productSystemId));
+        }
+        Server target = server;
+        target.routedCalculations.increment();
+        return calculation.apply(target.calculator)
+                .handle((result, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(result);
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if ((cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) && servers.size() > 1) {
+                        // Without health checks nothing would take the server back in, so it is only skipped for this calculation
+                        if (healthChecker != null) {
+                            markUnhealthy(target, cause);
+                        }
+                        tried.add(target);
+                        return calculateOn(tried, productSystemId, calculation);
+                    }
+                    return CompletableFuture.<T>failedFuture(cause);
+                })
+                .thenCompose(result -> result);
+    }
+
+    private void markUnhealthy(Server server, Throwable cause) {
+        if (server.healthy) {
+            server.healthy = false;
+            System.err.println("[OpenLcaServerPool] " + server + " dropped out (" + cause.getMessage()
+                    + "), its product systems move to the other servers");
+        }
+    }
+
+    /**
+     * Probes every server, taking unreachable ones out of the routing and recovered ones back in
+     */
+    void checkHealth() {
+        for (Server server : servers) {
+            boolean reachable = server.calculator.isReachable(Math.max(1, Math.min(healthCheckIntervalMillis, 2_000)));
+            if (reachable && !server.healthy) {
+                server.healthy = true;
+                System.out.println("[OpenLcaServerPool] " + server + " is reachable again and takes back its product systems");
+            } else if (!reachable) {
+                markUnhealthy(server, new IOException("health check failed"));
+            }
+        }
+    }
+
+    public void setPollingStrategy(PollingStrategy pollingStrategy) {
+        servers.forEach(server -> server.calculator.setPollingStrategy(pollingStrategy));
+    }
+
+    /**
+     * @param circuitBreakers creates the circuit breaker of every server
+     */
+    public void setCircuitBreakers(Supplier<CircuitBreaker> circuitBreakers) {
+        servers.forEach(server -> server.calculator.setCircuitBreaker(circuitBreakers.get()));
+    }
+
+    /**
+     * Enables or disables the adaptive limit of requests in flight against every server
+     *
+     * @param maxConcurrentCalculations upper bound of the adaptive limit
+     */
+    public void setAdaptiveConcurrency(boolean enabled, int maxConcurrentCalculations) {
+        servers.forEach(server -> server.calculator.setConcurrencyLimiter(
+                enabled ? AdaptiveConcurrencyLimiter.upTo(maxConcurrentCalculations) : null));
+    }
+
+    /**
+     * Enables or disables weighting the scores here instead of on the server. The characterized impact results are then
+     * calculated once per product system, impact method and amount, and every normalization set is applied to them locally.
+     *
+     * @param maxImpactVectors upper bound of impact results kept
+     */
+    public void setLocalWeighting(boolean enabled, int maxImpactVectors) {
+        this.localWeighting = enabled;
+        this.maxImpactVectors = maxImpactVectors;
+        synchronized (impactVectors) {
+            impactVectors.clear();
+        }
+        normalizationSets.clear();
+    }
+
+    public boolean isLocalWeighting() {
+        return localWeighting;
+    }
+
+    public long getImpactVectorHits() {
+        return impactVectorHits.sum();
+    }
+
+    public long getImpactVectorMisses() {
+        return impactVectorMisses.sum();
+    }
+
+    public void setBatching(boolean enabled, int maxBatchSize, long lingerMillis) {
+        servers.forEach(server -> server.calculator.setBatching(enabled, maxBatchSize, lingerMillis));
+    }
+
+    public List<OpenLcaCostCalculator> getCalculators() {
+        return servers.stream().map(server -> server.calculator).toList();
+    }
+
+    /**
+     * @return urls of the servers currently taking calculations
+     */
+    public List<String> getAvailableUrls() {
+        return servers.stream().filter(Server::isAvailable).map(Server::toString).toList();
+    }
+
+    /**
+     * @return number of calculations routed to the server with the given JSON-RPC url
+     */
+    public long getRoutedCalculations(String url) {
+        return servers.stream().filter(server -> server.toString().equals(url))
+                .mapToLong(server -> server.routedCalculations.sum()).sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder("OpenLcaServerPool{");
+        for (Server server : servers) {
+            description.append("\n  ").append(server).append(server.isAvailable() ? "" : " (unavailable)")
+                    .append(": routed=").append(server.routedCalculations.sum())
+                    .append(", ").append(server.calculator.getConcurrencyLimiter());
+        }
+        if (localWeighting) {
+            synchronized (impactVectors) {
+                description.append("\n  impactVectors=").append(impactVectors.size());
+            }
+            description.append(", hits=").append(impactVectorHits.sum()).append(", misses=").append(impactVectorMisses.sum());
+        }
+        return description.append("\n}").toString();
+    }
+
+    @Override
+    public void shutdown() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        servers.forEach(server -> server.calculator.shutdown());
+    }
+}
@@ -0,0 +1,231 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LCA scores persisted in an append-only, memory-mapped file, so that they survive the run and can be shared by
+ * several simulation processes on the same host.
+ * Entries are keyed by product system, impact method, normalization set and the exact amount; scores of a different
+ * OpenLCA database, identified by its fingerprint, are kept in the file but never returned.
+ *
+ * File layout: a header of magic number, version and the end of the committed records, followed by the records.
+ * Writers append under an exclusive file lock and move the committed end only once a record is complete,
+ * readers only ever look at records before the committed end.
+ * Only the header is memory-mapped; new records are read into a reused buffer, so that the number of mappings
+ * does not grow with the number of records. Lookups of indexed scores take no lock.
+ */
+public class PersistentLcaCache implements Closeable {
+    private static final int MAGIC = 0x4C434143; // "LCAC"
+    private static final int VERSION = 1;
+    private static final int COMMITTED_END_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // File locks are held per JVM, so instances of the same file in one JVM additionally exclude each other here
+    private static final Map<Path, Object> jvmLocks = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final String databaseFingerprint;
+    private final FileChannel channel;
+    private final Object jvmLock;
+    private final MappedByteBuffer header;
+    private final Map<LcaCacheKey, Double> index = new ConcurrentHashMap<>();
+    // Guards indexedEnd and readBuffer
+    private final Object refreshLock = new Object();
+    private long indexedEnd = HEADER_SIZE;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    /**
+     * Opens the cache file, creating it if it does not exist yet
+     *
+     * @param databaseFingerprint identifies the OpenLCA database the scores were calculated with
+     */
+    public PersistentLcaCache(Path file, String databaseFingerprint) throws IOException {
+        this.file = file;
+        this.databaseFingerprint = databaseFingerprint != null ? databaseFingerprint : "";
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.jvmLock = jvmLocks.computeIfAbsent(file.toAbsolutePath().normalize(), path -> new Object());
+        synchronized (jvmLock) {
+            FileLock lock = channel.lock();
+            try {
+                if (channel.size() < HEADER_SIZE) {
+                    ByteBuffer newHeader = ByteBuffer.allocate(HEADER_SIZE);
+                    newHeader.putInt(MAGIC).putInt(VERSION).putLong(HEADER_SIZE).flip();
+                    channel.write(newHeader, 0);
+                }
+                this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            } finally {
+                lock.release();
+            }
+        }
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException(file + " is not an LCA cache file of version " + VERSION);
+        }
+        refresh();
+    }
+
+    /**
+     * @return the cached score, or null if no score of this database is cached for the exact amount
+     */
+    public Double get(LcaCacheKey key) {
+        Double score = index.get(key);
+        if (score == null && refresh()) {
+            // Another process may have appended the score in the meantime
+            score = index.get(key);
+        }
+        return score;
+    }
+
+    /**
+     * Appends the score to the file, unless it is already cached
+     */
+    public void put(LcaCacheKey key, double score) throws IOException {
+        if (index.containsKey(key)) return;
+        ByteBuffer record = encode(key, score);
+        synchronized (jvmLock) {
+            FileLock lock = channel.lock();
+            try {
+                refresh();
+                if (index.containsKey(key)) return;
+                long end = header.getLong(COMMITTED_END_OFFSET);
+                while (record.hasRemaining()) {
+                    end += channel.write(record, end);
+                }
+                // The record becomes visible to readers only now that it is complete
+                header.putLong(COMMITTED_END_OFFSET, end);
+            } finally {
+                lock.release();
+            }
+        }
+        refresh();
+    }
+
+    public int size() {
+        refresh();
+        return index.size();
+    }
+
+    /**
+     * Indexes the records committed since the last refresh
+     *
+     * @return true if new records were found
+     */
+    private boolean refresh() {
+        synchronized (refreshLock) {
+            long committedEnd = header.getLong(COMMITTED_END_OFFSET);
+            if (committedEnd <= indexedEnd) return false;
+            try {
+                ByteBuffer buffer = readBuffer;
+                buffer.clear();
+                long readPosition = indexedEnd;
+                while (indexedEnd < committedEnd) {
+                    buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + (committedEnd - readPosition)));
+                    while (buffer.hasRemaining()) {
+                        int read = channel.read(buffer, readPosition);
+                        if (read < 0) throw new IOException("Unexpected end of file at " + readPosition);
+                        readPosition += read;
+                    }
+                    buffer.flip();
+                    indexRecords(buffer, committedEnd);
+                    buffer.compact();
+                    if (!buffer.hasRemaining()) {
+                        // A single record is larger than the buffer
+                        ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity());
+                        buffer.flip();
+                        buffer = readBuffer = larger.put(buffer);
+                    }
+                }
+                return true;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[PersistentLcaCache] Could not read " + file + ": " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Indexes the complete records at the start of the buffer and leaves the buffer at the first incomplete one
+     */
+    private void indexRecords(ByteBuffer records, long committedEnd) throws IOException {
+        while (records.remaining() >= Integer.BYTES) {
+            int recordLength = records.getInt(records.position());
+            if (recordLength < 0 || indexedEnd + Integer.BYTES + recordLength > committedEnd) {
+                throw new IOException("Corrupt record at " + indexedEnd);
+            }
+            if (records.remaining() < Integer.BYTES + recordLength) return;
+            records.getInt();
+            int recordStart = records.position();
+            String fingerprint = readString(records);
+            String productSystemId = readString(records);
+            String impactMethodId = readString(records);
+            String normalizationSetId = readString(records);
+            long amountBits = records.getLong();
+            double score = records.getDouble();
+            if (records.position() - recordStart != recordLength) {
+                throw new IOException("Corrupt record at " + indexedEnd);
+            }
+            if (databaseFingerprint.equals(fingerprint)) {
+                index.put(new LcaCacheKey(productSystemId, impactMethodId, normalizationSetId, amountBits), score);
+            }
+            indexedEnd += Integer.BYTES + recordLength;
+        }
+    }
+
+    private ByteBuffer encode(LcaCacheKey key, double score) {
+        byte[][] strings = {
+                databaseFingerprint.getBytes(StandardCharsets.UTF_8),
+                bytesOf(key.productSystemId()),
+                bytesOf(key.impactMethodId()),
+                bytesOf(key.normalizationSetId())
+        };
+        int recordLength = 2 * Long.BYTES;
+        for (byte[] string : strings) {
+            recordLength += Integer.BYTES + (string != null ? string.length : 0);
+        }
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + recordLength);
+        record.putInt(recordLength);
+        for (byte[] string : strings) {
+            // Length -1 encodes null
+            record.putInt(string != null ? string.length : -1);
+            if (string != null) record.put(string);
+        }
+        record.putLong(key.amountBits()).putDouble(score);
+        return record.flip();
+    }
+
+    private static byte[] bytesOf(String string) {
+        return string != null ? string.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public String getDatabaseFingerprint() {
+        return databaseFingerprint;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,98 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how long to wait between two result/state requests of the same calculation.
+ * Starts with a short delay so that small product systems return within milliseconds,
+ * then backs off exponentially (with jitter) so that large ones do not flood the server,
+ * until the total deadline of the calculation is reached.
+ */
+public class PollingStrategy {
+    static final long DEFAULT_INITIAL_DELAY_MILLIS = 20;
+    static final double DEFAULT_MULTIPLIER = 2.0;
+    static final long DEFAULT_MAX_DELAY_MILLIS = 1000;
+    static final double DEFAULT_JITTER = 0.2;
+    static final long DEFAULT_DEADLINE_MILLIS = 30000;
+
+    private final long initialDelayMillis;
+    private final double multiplier;
+    private final long maxDelayMillis;
+    private final double jitter;
+    private final long deadlineMillis;
+
+    /**
+     * @param initialDelayMillis delay before the first poll
+     * @param multiplier         factor the delay grows by after each poll, at least 1
+     * @param maxDelayMillis     upper bound of a single delay
+     * @param jitter             relative random deviation of each delay, between 0 and 1
+     * @param deadlineMillis     total time a calculation may take before it is given up
+     */
+    public PollingStrategy(long initialDelayMillis, double multiplier, long maxDelayMillis, double jitter, long deadlineMillis) {
+        if (initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis) {
+            throw new IllegalArgumentException("Polling delays must satisfy 0 <= initial delay <= max delay");
+        }
+        if (multiplier < 1.0) {
+            throw new IllegalArgumentException("Polling multiplier must be at least 1");
+        }
+        if (jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException("Polling jitter must be between 0 and 1");
+        }
+        if (deadlineMillis <= 0) {
+            throw new IllegalArgumentException("Polling deadline must be positive");
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        this.multiplier = multiplier;
+        this.maxDelayMillis = maxDelayMillis;
+        this.jitter = jitter;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    public static PollingStrategy defaults() {
+        return new PollingStrategy(DEFAULT_INITIAL_DELAY_MILLIS, DEFAULT_MULTIPLIER, DEFAULT_MAX_DELAY_MILLIS,
+                DEFAULT_JITTER, DEFAULT_DEADLINE_MILLIS);
+    }
+
+    /**
+     * @param poll number of polls already sent for the calculation, starting at 0
+     * @return delay in milliseconds before the next poll, jittered around the exponential backoff
+     */
+    public long delayBeforePoll(int poll) {
+        double delay = Math.min(maxDelayMillis, initialDelayMillis * Math.pow(multiplier, poll));
+        if (jitter > 0.0) {
+            delay *= 1.0 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        }
+        return Math.max(0, Math.round(delay));
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "PollingStrategy{" +
+                "initialDelayMillis=" + initialDelayMillis +
+                ", multiplier=" + multiplier +
+                ", maxDelayMillis=" + maxDelayMillis +
+                ", jitter=" + jitter +
+                ", deadlineMillis=" + deadlineMillis +
+                '}';
+    }
+}
@@ -0,0 +1,205 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.DoubleFunction;
+
+/**
+ * Interpolating surrogate of a cost driver's score as a function of its amount.
+ * It is built from real calculations on a grid of amounts, which is refined until the interpolation
+ * reproduces check calculations between grid points within a relative tolerance.
+ */
+public class ResponseCurve {
+
+    public enum Interpolation {
+        LINEAR,
+        /**
+         * Fritsch-Carlson monotone cubic Hermite interpolation, does not overshoot between grid points
+         */
+        MONOTONE_CUBIC;
+
+        public static Interpolation fromAttribute(String value) {
+            if (value == null || value.isBlank()) return null;
+            return switch (value.trim().toLowerCase()) {
+                case "linear" -> LINEAR;
+                case "cubic", "monotone_cubic" -> MONOTONE_CUBIC;
+                default -> throw new IllegalArgumentException("Unknown interpolation: " + value);
+            };
+        }
+    }
+
+    private final AmountRange range;
+    private final Interpolation interpolation;
+    private final double[] amounts;
+    private final double[] scores;
+    private final double[] slopes;
+    private double maxObservedError;
+
+    ResponseCurve(AmountRange range, Interpolation interpolation, double[] amounts, double[] scores) {
+        this.range = range;
+        this.interpolation = interpolation;
+        this.amounts = amounts;
+        this.scores = scores;
+        this.slopes = interpolation == Interpolation.MONOTONE_CUBIC ? monotoneSlopes(amounts, scores) : null;
+    }
+
+    /**
+     * Builds a curve over the given range by calculating the exact score at gridPoints evenly spaced amounts,
+     * then checking one amount inside every interval and inserting it into the grid where the relative error
+     * exceeds the tolerance, until all checks pass or maxGridPoints is reached.
+     * The check sits at a third of the interval: the midpoint would miss cubic errors caused by equal slope errors
+     * at both ends, which cancel out there.
+     *
+     * @param exactScore calculates the real score of an amount
+     */
+    static ResponseCurve build(DoubleFunction<CompletableFuture<Double>> exactScore, AmountRange range,
+                               Interpolation interpolation, int gridPoints, int maxGridPoints, double tolerance) {
+        if (range.isPoint()) {
+            double score = exactScore.apply(range.lower()).join();
+            return new ResponseCurve(range, interpolation, new double[]{range.lower()}, new double[]{score});
+        }
+
+        TreeMap<Double, Double> grid = new TreeMap<>();
+        int initialPoints = Math.max(2, Math.min(gridPoints, maxGridPoints));
+        double[] initialAmounts = new double[initialPoints];
+        for (int i = 0; i < initialPoints; i++) {
+            initialAmounts[i] = range.lower() + (range.upper() - range.lower()) * i / (initialPoints - 1);
+        }
+        grid.putAll(calculateAll(exactScore, initialAmounts));
+
+        // Intervals, identified by their lower amount, whose check passed
+        Set<Double> verified = new HashSet<>();
+        double maxObservedError = 0.0;
+        while (true) {
+            ResponseCurve curve = fromGrid(range, interpolation, grid);
+            double[] checkAmounts = grid.keySet().stream()
+                    .filter(lower -> !verified.contains(lower) && grid.higherKey(lower) != null)
+                    .mapToDouble(lower -> lower + (grid.higherKey(lower) - lower) / 3.0)
+                    .toArray();
+            if (checkAmounts.length == 0 || grid.size() >= maxGridPoints) {
+                curve.maxObservedError = maxObservedError;
+                return curve;
+            }
+
+            TreeMap<Double, Double> checks = calculateAll(exactScore, checkAmounts);
+            List<double[]> failed = new ArrayList<>();
+            for (var check : checks.entrySet()) {
+                double error = relativeError(curve.valueAt(check.getKey()), check.getValue());
+                maxObservedError = Math.max(maxObservedError, error);
+                if (error > tolerance) {
+                    failed.add(new double[]{check.getKey(), check.getValue(), error});
+                } else {
+                    verified.add(grid.lowerKey(check.getKey()));
+                }
+            }
+            if (failed.isEmpty()) {
+                curve.maxObservedError = maxObservedError;
+                return curve;
+            }
+            // Refine where the interpolation is worst first
+            failed.sort((a, b) -> Double.compare(b[2], a[2]));
+            for (double[] point : failed) {
+                if (grid.size() >= maxGridPoints) break;
+                grid.put(point[0], point[1]);
+            }
+        }
+    }
+
+    private static TreeMap<Double, Double> calculateAll(DoubleFunction<CompletableFuture<Double>> exactScore, double[] amounts) {
+        // Start all calculations before waiting for any of them
+        List<CompletableFuture<Double>> futures = Arrays.stream(amounts).mapToObj(exactScore).toList();
+        TreeMap<Double, Double> results = new TreeMap<>();
+        for (int i = 0; i < amounts.length; i++) {
+            results.put(amounts[i], futures.get(i).join());
+        }
+        return results;
+    }
+
+    private static ResponseCurve fromGrid(AmountRange range, Interpolation interpolation, TreeMap<Double, Double> grid) {
+        double[] amounts = grid.keySet().stream().mapToDouble(Double::doubleValue).toArray();
+        double[] scores = grid.values().stream().mapToDouble(Double::doubleValue).toArray();
+        return new ResponseCurve(range, interpolation, amounts, scores);
+    }
+
+    static double relativeError(double approximation, double exact) {
+        double scale = Math.abs(exact);
+        return scale == 0.0 ? Math.abs(approximation) : Math.abs(approximation - exact) / scale;
+    }
+
+    /**
+     * @return interpolated score of the amount; only meaningful if the amount lies in {@link #getRange()}
+     */
+    public double valueAt(double amount) {
+        if (amounts.length == 1) return scores[0];
+        int i = Arrays.binarySearch(amounts, amount);
+        if (i >= 0) return scores[i];
+        // index of the interval [amounts[k], amounts[k+1]] containing the amount
+        int k = Math.min(Math.max(-i - 2, 0), amounts.length - 2);
+        double h = amounts[k + 1] - amounts[k];
+        double t = (amount - amounts[k]) / h;
+        if (interpolation == Interpolation.LINEAR) {
+            return scores[k] + t * (scores[k + 1] - scores[k]);
+        }
+        double t2 = t * t;
+        double t3 = t2 * t;
+        return (2 * t3 - 3 * t2 + 1) * scores[k]
+                + (t3 - 2 * t2 + t) * h * slopes[k]
+                + (-2 * t3 + 3 * t2) * scores[k + 1]
+                + (t3 - t2) * h * slopes[k + 1];
+    }
+
+    private static double[] monotoneSlopes(double[] x, double[] y) {
+        int n = x.length;
+        double[] slopes = new double[n];
+        if (n < 2) return slopes;
+        double[] secants = new double[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            secants[i] = (y[i + 1] - y[i]) / (x[i + 1] - x[i]);
+        }
+        slopes[0] = secants[0];
+        slopes[n - 1] = secants[n - 2];
+        for (int i = 1; i < n - 1; i++) {
+            slopes[i] = secants[i - 1] * secants[i] <= 0 ? 0.0 : (secants[i - 1] + secants[i]) / 2.0;
+        }
+        for (int i = 0; i < n - 1; i++) {
+            if (secants[i] == 0.0) {
+                slopes[i] = 0.0;
+                slopes[i + 1] = 0.0;
+                continue;
+            }
+            double alpha = slopes[i] / secants[i];
+            double beta = slopes[i + 1] / secants[i];
+            double sum = alpha * alpha + beta * beta;
+            if (sum > 9.0) {
+                double tau = 3.0 / Math.sqrt(sum);
+                slopes[i] = tau * alpha * secants[i];
+                slopes[i + 1] = tau * beta * secants[i];
+            }
+        }
+        return slopes;
+    }
+
+    public AmountRange getRange() {
+        return range;
+    }
+
+    public Interpolation getInterpolation() {
+        return interpolation;
+    }
+
+    public int getGridPoints() {
+        return amounts.length;
+    }
+
+    /**
+     * @return largest relative error between the curve and a real calculation seen while building the curve
+     */
+    public double getMaxObservedError() {
+        return maxObservedError;
+    }
+}
@@ -0,0 +1,265 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.util.Arrays;
+
+/**
+ * LU factorization P A = L U of a sparse square matrix with partial pivoting, computed column by column
+ * (left-looking, after Gilbert and Peierls): every column of A is solved against the columns of L found so far,
+ * visiting only the entries its sparsity pattern reaches.
+ *
+ * The diagonal is kept as pivot while it is not much smaller than the largest candidate, which suits
+ * technology matrices, whose diagonal holds the reference outputs of the processes, and keeps the fill-in low.
+ * Once factorized, A x = b and its transpose are solved in time proportional to the entries of L and U.
+ */
+final class SparseLu {
+    // A diagonal pivot is kept if it is at least this fraction of the largest candidate of its column
+    private static final double DIAGONAL_PIVOT_TOLERANCE = 0.1;
+
+    /**
+     * Columns of a triangular factor, appended one after the other
+     */
+    private static final class Factor {
+        private final int[] columnPointers;
+        private int[] rowIndices;
+        private double[] values;
+        private int size;
+
+        private Factor(int columns, int capacity) {
+            this.columnPointers = new int[columns + 1];
+            this.rowIndices = new int[Math.max(16, capacity)];
+            this.values = new double[rowIndices.length];
+        }
+
+        private void startColumn(int column) {
+            columnPointers[column] = size;
+        }
+
+        private void add(int row, double value) {
+            if (size == rowIndices.length) {
+                rowIndices = Arrays.copyOf(rowIndices, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            rowIndices[size] = row;
+            values[size] = value;
+            size++;
+        }
+
+        private void finish(int columns) {
+            columnPointers[columns] = size;
+        }
+    }
+
+    private final int n;
+    // Unit lower triangular, the diagonal 1 first in every column, rows in pivot order
+    private final Factor lower;
+    // Upper triangular, the diagonal last in every column
+    private final Factor upper;
+    // Position in pivot order of every row of A
+    private final int[] pivotOfRow;
+
+    private SparseLu(int n, Factor lower, Factor upper, int[] pivotOfRow) {
+        this.n = n;
+        this.lower = lower;
+        this.upper = upper;
+        this.pivotOfRow = pivotOfRow;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the matrix is not square
+     * @throws ArithmeticException      if the matrix is singular
+     */
+    static SparseLu factorize(SparseMatrix a) {
+        if (a.rows != a.columns) {
+            throw new IllegalArgumentException("Only square matrices can be factorized, not " + a.rows + "x" + a.columns);
+        }
+        int n = a.columns;
+        Factor lower = new Factor(n, 2 * a.nonZeros() + n);
+        Factor upper = new Factor(n, 2 * a.nonZeros() + n);
+        int[] pivotOfRow = new int[n];
+        Arrays.fill(pivotOfRow, -1);
+
+        double[] x = new double[n];
+        int[] pattern = new int[n];
+        int[] stack = new int[n];
+        int[] stackPositions = new int[n];
+        int[] visitedInColumn = new int[n];
+        Arrays.fill(visitedInColumn, -1);
+
+        for (int k = 0; k < n; k++) {
+            lower.startColumn(k);
+            upper.startColumn(k);
+
+            // Solve L x = A(:, k) on the rows reachable from the pattern of the column
+            int top = reach(a, k, lower, pivotOfRow, pattern, stack, stackPositions, visitedInColumn);
+            for (int p = a.columnPointers[k]; p < a.columnPointers[k + 1]; p++) {
+                x[a.rowIndices[p]] = a.values[p];
+            }
+            for (int px = top; px < n; px++) {
+                int row = pattern[px];
+                int column = pivotOfRow[row];
+                if (column < 0) continue;
+                double xRow = x[row];
+                for (int p = lower.columnPointers[column] + 1; p < lower.columnPointers[column + 1]; p++) {
+                    x[lower.rowIndices[p]] -= lower.values[p] * xRow;
+                }
+            }
+
+            // Entries of already pivotal rows belong to U, the largest of the others becomes the pivot
+            int pivotRow = -1;
+            double largest = -1.0;
+            for (int px = top; px < n; px++) {
+                int row = pattern[px];
+                if (pivotOfRow[row] < 0) {
+                    double magnitude = Math.abs(x[row]);
+                    if (magnitude > largest) {
+                        largest = magnitude;
+                        pivotRow = row;
+                    }
+                } else {
+                    upper.add(pivotOfRow[row], x[row]);
+                }
+            }
+            if (pivotRow < 0 || largest <= 0.0) {
+                throw new ArithmeticException("Matrix is singular, column " + k + " has no pivot");
+            }
+            if (pivotOfRow[k] < 0 && Math.abs(x[k]) >= largest * DIAGONAL_PIVOT_TOLERANCE) {
+                pivotRow = k;
+            }
+            double pivot = x[pivotRow];
+            upper.add(k, pivot);
+            pivotOfRow[pivotRow] = k;
+            lower.add(pivotRow, 1.0);
+            for (int px = top; px < n; px++) {
+                int row = pattern[px];
+                if (pivotOfRow[row] < 0) {
+                    lower.add(row, x[row] / pivot);
+                }
+                x[row] = 0.0;
+            }
+        }
+        lower.finish(n);
+        upper.finish(n);
+        // Rows of L were kept in the numbering of A while pivots were still being chosen
+        for (int p = 0; p < lower.size; p++) {
+            lower.rowIndices[p] = pivotOfRow[lower.rowIndices[p]];
+        }
+        return new SparseLu(n, lower, upper, pivotOfRow);
+    }
+
+    /**
+     * Finds the rows that become nonzero when solving L x = A(:, k), in topological order
+     *
+     * @return start of the rows in the pattern array, which ends at n
+     */
+    private static int reach(SparseMatrix a, int k, Factor lower, int[] pivotOfRow,
+                             int[] pattern, int[] stack, int[] stackPositions, int[] visitedInColumn) {
+        int n = a.columns;
+        int top = n;
+        for (int p = a.columnPointers[k]; p < a.columnPointers[k + 1]; p++) {
+            int start = a.rowIndices[p];
+            if (visitedInColumn[start] == k) continue;
+            // Iterative depth-first search along the columns of L, appending rows once all their successors are done
+            int head = 0;
+            stack[0] = start;
+            while (head >= 0) {
+                int row = stack[head];
+                int column = pivotOfRow[row];
+                if (visitedInColumn[row] != k) {
+                    visitedInColumn[row] = k;
+                    // Skips the unit diagonal
+                    stackPositions[head] = column < 0 ? 0 : lower.columnPointers[column] + 1;
+                }
+                int end = column < 0 ? 0 : lower.columnPointers[column + 1];
+                boolean done = true;
+                for (int q = stackPositions[head]; q < end; q++) {
+                    int next = lower.rowIndices[q];
+                    if (visitedInColumn[next] == k) continue;
+                    stackPositions[head] = q + 1;
+                    stack[++head] = next;
+                    done = false;
+                    break;
+                }
+                if (done) {
+                    head--;
+                    pattern[--top] = row;
+                }
+            }
+        }
+        return top;
+    }
+
+    /**
+     * @return x with A x = b
+     */
+    double[] solve(double[] b) {
+        checkLength(b);
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[pivotOfRow[i]] = b[i];
+        }
+        for (int j = 0; j < n; j++) {
+            double xj = x[j];
+            if (xj == 0.0) continue;
+            for (int p = lower.columnPointers[j] + 1; p < lower.columnPointers[j + 1]; p++) {
+                x[lower.rowIndices[p]] -= lower.values[p] * xj;
+            }
+        }
+        for (int j = n - 1; j >= 0; j--) {
+            int diagonal = upper.columnPointers[j + 1] - 1;
+            x[j] /= upper.values[diagonal];
+            double xj = x[j];
+            if (xj == 0.0) continue;
+            for (int p = upper.columnPointers[j]; p < diagonal; p++) {
+                x[upper.rowIndices[p]] -= upper.values[p] * xj;
+            }
+        }
+        return x;
+    }
+
+    /**
+     * @return y with A^T y = c
+     */
+    double[] solveTransposed(double[] c) {
+        checkLength(c);
+        double[] x = c.clone();
+        // U^T is lower triangular
+        for (int j = 0; j < n; j++) {
+            int diagonal = upper.columnPointers[j + 1] - 1;
+            double sum = x[j];
+            for (int p = upper.columnPointers[j]; p < diagonal; p++) {
+                sum -= upper.values[p] * x[upper.rowIndices[p]];
+            }
+            x[j] = sum / upper.values[diagonal];
+        }
+        // L^T is unit upper triangular
+        for (int j = n - 1; j >= 0; j--) {
+            double sum = x[j];
+            for (int p = lower.columnPointers[j] + 1; p < lower.columnPointers[j + 1]; p++) {
+                sum -= lower.values[p] * x[lower.rowIndices[p]];
+            }
+            x[j] = sum;
+        }
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            y[i] = x[pivotOfRow[i]];
+        }
+        return y;
+    }
+
+    private void checkLength(double[] vector) {
+        if (vector.length != n) {
+            throw new IllegalArgumentException("Vector of length " + vector.length + " does not fit a matrix of order " + n);
+        }
+    }
+
+    int order() {
+        return n;
+    }
+
+    /**
+     * @return entries of L and U together, a measure of the fill-in
+     */
+    int nonZeros() {
+        return lower.size + upper.size;
+    }
+}
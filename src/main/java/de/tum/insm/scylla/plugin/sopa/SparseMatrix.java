@@ -0,0 +1,186 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.util.Arrays;
+
+/**
+ * Immutable sparse matrix in compressed sparse column form: the entries of column j are at positions
+ * columnPointers[j] until columnPointers[j + 1] of rowIndices and values, sorted by row.
+ */
+final class SparseMatrix {
+
+    /**
+     * Collects entries in any order; entries at the same position are summed
+     */
+    static final class Builder {
+        private int[] rows = new int[16];
+        private int[] columns = new int[16];
+        private double[] values = new double[16];
+        private int size;
+        private int maxRow = -1;
+        private int maxColumn = -1;
+
+        Builder add(int row, int column, double value) {
+            if (row < 0 || column < 0) {
+                throw new IllegalArgumentException("Negative matrix index " + row + ", " + column);
+            }
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                columns = Arrays.copyOf(columns, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            rows[size] = row;
+            columns[size] = column;
+            values[size] = value;
+            size++;
+            maxRow = Math.max(maxRow, row);
+            maxColumn = Math.max(maxColumn, column);
+            return this;
+        }
+
+        int getMaxRow() {
+            return maxRow;
+        }
+
+        int getMaxColumn() {
+            return maxColumn;
+        }
+
+        SparseMatrix build(int rowCount, int columnCount) {
+            if (maxRow >= rowCount || maxColumn >= columnCount) {
+                throw new IllegalArgumentException("Entry at " + maxRow + ", " + maxColumn + " outside of a "
+                        + rowCount + "x" + columnCount + " matrix");
+            }
+            // Counting sort by column, then by row within every column
+            int[] columnPointers = new int[columnCount + 1];
+            for (int i = 0; i < size; i++) {
+                columnPointers[columns[i] + 1]++;
+            }
+            for (int j = 0; j < columnCount; j++) {
+                columnPointers[j + 1] += columnPointers[j];
+            }
+            int[] next = Arrays.copyOf(columnPointers, columnCount);
+            int[] rowIndices = new int[size];
+            double[] entries = new double[size];
+            for (int i = 0; i < size; i++) {
+                int position = next[columns[i]]++;
+                rowIndices[position] = rows[i];
+                entries[position] = values[i];
+            }
+            // Sum duplicates and drop zeros while compacting
+            int[] compactPointers = new int[columnCount + 1];
+            int[] positionOfRow = new int[rowCount];
+            int[] columnOfRow = new int[rowCount];
+            Arrays.fill(columnOfRow, -1);
+            int compactSize = 0;
+            for (int j = 0; j < columnCount; j++) {
+                int columnStart = compactSize;
+                for (int p = columnPointers[j]; p < columnPointers[j + 1]; p++) {
+                    int row = rowIndices[p];
+                    if (columnOfRow[row] == j) {
+                        entries[positionOfRow[row]] += entries[p];
+                    } else {
+                        columnOfRow[row] = j;
+                        positionOfRow[row] = compactSize;
+                        rowIndices[compactSize] = row;
+                        entries[compactSize] = entries[p];
+                        compactSize++;
+                    }
+                }
+                int kept = columnStart;
+                for (int p = columnStart; p < compactSize; p++) {
+                    if (entries[p] != 0.0) {
+                        rowIndices[kept] = rowIndices[p];
+                        entries[kept] = entries[p];
+                        kept++;
+                    }
+                }
+                compactSize = kept;
+                sortColumn(rowIndices, entries, columnStart, compactSize);
+                compactPointers[j + 1] = compactSize;
+            }
+            return new SparseMatrix(rowCount, columnCount, compactPointers,
+                    Arrays.copyOf(rowIndices, compactSize), Arrays.copyOf(entries, compactSize));
+        }
+
+        private static void sortColumn(int[] rowIndices, double[] entries, int from, int to) {
+            // Columns are short, insertion sort keeps rows and values together without boxing
+            for (int i = from + 1; i < to; i++) {
+                int row = rowIndices[i];
+                double value = entries[i];
+                int j = i - 1;
+                while (j >= from && rowIndices[j] > row) {
+                    rowIndices[j + 1] = rowIndices[j];
+                    entries[j + 1] = entries[j];
+                    j--;
+                }
+                rowIndices[j + 1] = row;
+                entries[j + 1] = value;
+            }
+        }
+    }
+
+    final int rows;
+    final int columns;
+    final int[] columnPointers;
+    final int[] rowIndices;
+    final double[] values;
+
+    private SparseMatrix(int rows, int columns, int[] columnPointers, int[] rowIndices, double[] values) {
+        this.rows = rows;
+        this.columns = columns;
+        this.columnPointers = columnPointers;
+        this.rowIndices = rowIndices;
+        this.values = values;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    int nonZeros() {
+        return columnPointers[columns];
+    }
+
+    double get(int row, int column) {
+        for (int p = columnPointers[column]; p < columnPointers[column + 1]; p++) {
+            if (rowIndices[p] == row) return values[p];
+        }
+        return 0.0;
+    }
+
+    /**
+     * @return this matrix times x
+     */
+    double[] multiply(double[] x) {
+        if (x.length != columns) {
+            throw new IllegalArgumentException("Vector of length " + x.length + " does not fit " + columns + " columns");
+        }
+        double[] result = new double[rows];
+        for (int j = 0; j < columns; j++) {
+            double xj = x[j];
+            if (xj == 0.0) continue;
+            for (int p = columnPointers[j]; p < columnPointers[j + 1]; p++) {
+                result[rowIndices[p]] += values[p] * xj;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the transpose of this matrix times y
+     */
+    double[] multiplyTransposed(double[] y) {
+        if (y.length != rows) {
+            throw new IllegalArgumentException("Vector of length " + y.length + " does not fit " + rows + " rows");
+        }
+        double[] result = new double[columns];
+        for (int j = 0; j < columns; j++) {
+            double sum = 0.0;
+            for (int p = columnPointers[j]; p < columnPointers[j + 1]; p++) {
+                sum += values[p] * y[rowIndices[p]];
+            }
+            result[j] = sum;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,165 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes the statistics file element by element with an {@link XMLStreamWriter} instead of building a DOM document.
+ * The output is laid out like that of an indenting {@link javax.xml.transform.Transformer} writing the equivalent
+ * document: a line per element, four spaces per level, attributes sorted by name, elements without content
+ * closed as empty elements and elements with text only on one line.
+ *
+ * A start tag is held back until the first child or text of its element, or its end, so that attributes can be
+ * added until then and empty elements are recognized.
+ */
+final class StatisticsXmlWriter implements Closeable {
+
+    private static final String INDENT = "    ";
+    // The transformer breaks lines with the platform's line separator
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    // An element whose start tag is held back until its content is known
+    private static final class OpenElement {
+        final String name;
+        final Map<String, String> attributes = new TreeMap<>();
+        boolean started;
+        boolean hasChildren;
+
+        OpenElement(String name) {
+            this.name = name;
+        }
+    }
+
+    private final Writer out;
+    private final XMLStreamWriter xml;
+    private final Deque<OpenElement> openElements = new ArrayDeque<>();
+
+    /**
+     * Writes the XML declaration and holds back the root element
+     *
+     * @param out stream to write to, closed with this writer
+     */
+    StatisticsXmlWriter(OutputStream out, String rootElement) throws IOException, XMLStreamException {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // XMLStreamWriter cannot declare standalone="no", as the DOM serialization does
+        this.out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+        xml = XMLOutputFactory.newInstance().createXMLStreamWriter(this.out);
+        start(rootElement);
+    }
+
+    /**
+     * Opens a child element of the current element
+     */
+    StatisticsXmlWriter start(String name) throws XMLStreamException {
+        OpenElement parent = openElements.peek();
+        if (parent != null) {
+            writeStartTag(parent);
+            parent.hasChildren = true;
+        }
+        openElements.push(new OpenElement(name));
+        return this;
+    }
+
+    /**
+     * Sets an attribute of the current element, which must not have children or text yet
+     */
+    StatisticsXmlWriter attribute(String name, String value) {
+        OpenElement element = openElements.getFirst();
+        if (element.started) {
+            throw new IllegalStateException("Attribute " + name + " of " + element.name + " after its content");
+        }
+        element.attributes.put(name, value);
+        return this;
+    }
+
+    /**
+     * Writes text content of the current element
+     */
+    StatisticsXmlWriter text(String text) throws XMLStreamException {
+        if (text.isEmpty()) return this;
+        writeStartTag(openElements.getFirst());
+        xml.writeCharacters(text);
+        return this;
+    }
+
+    /**
+     * Closes the current element
+     */
+    StatisticsXmlWriter end() throws XMLStreamException {
+        OpenElement element = openElements.pop();
+        if (!element.started) {
+            indent(openElements.size());
+            xml.writeEmptyElement(element.name);
+            writeAttributes(element);
+        } else {
+            if (element.hasChildren) {
+                indent(openElements.size());
+            }
+            xml.writeEndElement();
+        }
+        return this;
+    }
+
+    /**
+     * Writes an element with text only
+     */
+    StatisticsXmlWriter element(String name, String text) throws XMLStreamException {
+        return start(name).text(text).end();
+    }
+
+    /**
+     * Writes an element with one attribute and text only
+     */
+    StatisticsXmlWriter element(String name, String attribute, String value, String text) throws XMLStreamException {
+        return start(name).attribute(attribute, value).text(text).end();
+    }
+
+    private void writeStartTag(OpenElement element) throws XMLStreamException {
+        if (element.started) return;
+        indent(openElements.size() - 1);
+        xml.writeStartElement(element.name);
+        writeAttributes(element);
+        element.started = true;
+    }
+
+    private void writeAttributes(OpenElement element) throws XMLStreamException {
+        for (Map.Entry<String, String> attribute : element.attributes.entrySet()) {
+            xml.writeAttribute(attribute.getKey(), attribute.getValue());
+        }
+    }
+
+    private void indent(int depth) throws XMLStreamException {
+        xml.writeCharacters(LINE_SEPARATOR + INDENT.repeat(depth));
+    }
+
+    /**
+     * Closes all open elements, including the root element, and the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            while (!openElements.isEmpty()) {
+                end();
+            }
+            xml.writeCharacters(LINE_SEPARATOR);
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            out.close();
+        }
+    }
+}
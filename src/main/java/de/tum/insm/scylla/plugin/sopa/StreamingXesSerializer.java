@@ -0,0 +1,94 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.deckfour.spex.SXDocument;
+import org.deckfour.spex.SXTag;
+import org.deckfour.xes.classification.XEventAttributeClassifier;
+import org.deckfour.xes.classification.XEventClassifier;
+import org.deckfour.xes.extension.XExtension;
+import org.deckfour.xes.model.XEvent;
+import org.deckfour.xes.model.XLog;
+import org.deckfour.xes.model.XTrace;
+import org.deckfour.xes.out.XesXmlSerializer;
+import org.deckfour.xes.util.XTokenHelper;
+
+/**
+ * Writes an XES log trace by trace instead of serializing a complete {@link XLog}, so that a trace can be dropped
+ * as soon as it is written. The output is the same as that of {@link XesXmlSerializer}:
+ * the header is written on construction, every trace on {@link #write(XTrace)} and the closing tag on {@link #close()}.
+ */
+final class StreamingXesSerializer extends XesXmlSerializer implements Closeable {
+
+    private final OutputStream out;
+    private final SXDocument document;
+    private final SXTag logTag;
+    private int traces;
+
+    /**
+     * @param header log whose extensions, global attributes, classifiers and attributes are written; its traces are ignored
+     * @param out    stream to write to, best buffered, closed with this serializer
+     */
+    StreamingXesSerializer(XLog header, OutputStream out) throws IOException {
+        this.out = out;
+        document = new SXDocument(out);
+        document.addComment("This file has been generated with the OpenXES library. It conforms");
+        document.addComment("to the XML serialization of the XES standard for log storage and");
+        document.addComment("management.");
+        document.addComment("XES standard version: 1.0");
+        document.addComment("OpenXES library version: 1.0RC7");
+        document.addComment("OpenXES is available from http://www.openxes.org/");
+        logTag = document.addNode("log");
+        logTag.addAttribute("xes.version", "1.0");
+        logTag.addAttribute("xes.features", "nested-attributes");
+        logTag.addAttribute("openxes.version", "1.0RC7");
+        for (XExtension extension : header.getExtensions()) {
+            SXTag extensionTag = logTag.addChildNode("extension");
+            extensionTag.addAttribute("name", extension.getName());
+            extensionTag.addAttribute("prefix", extension.getPrefix());
+            extensionTag.addAttribute("uri", extension.getUri().toString());
+        }
+        addGlobalAttributes(logTag, "trace", header.getGlobalTraceAttributes());
+        addGlobalAttributes(logTag, "event", header.getGlobalEventAttributes());
+        for (XEventClassifier classifier : header.getClassifiers()) {
+            if (classifier instanceof XEventAttributeClassifier attributeClassifier) {
+                SXTag classifierTag = logTag.addChildNode("classifier");
+                classifierTag.addAttribute("name", attributeClassifier.name());
+                classifierTag.addAttribute("keys", XTokenHelper.formatTokenString(Arrays.asList(attributeClassifier.getDefiningAttributeKeys())));
+            }
+        }
+        addAttributes(logTag, header.getAttributes().values());
+    }
+
+    /**
+     * Appends the trace to the log. The trace is not referenced afterwards.
+     */
+    void write(XTrace trace) throws IOException {
+        SXTag traceTag = logTag.addChildNode("trace");
+        addAttributes(traceTag, trace.getAttributes().values());
+        for (XEvent event : trace) {
+            SXTag eventTag = traceTag.addChildNode("event");
+            addAttributes(eventTag, event.getAttributes().values());
+        }
+        traces++;
+    }
+
+    /**
+     * @return number of traces written so far
+     */
+    int getTraces() {
+        return traces;
+    }
+
+    /**
+     * Closes the log and the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        document.close();
+        out.close();
+    }
+}
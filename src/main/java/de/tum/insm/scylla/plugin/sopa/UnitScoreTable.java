@@ -0,0 +1,176 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Precomputed weighted single scores per unit of product system, impact method and normalization set.
+ * A cost is the unit score times the amount, so runs need neither a server nor matrices and are deterministic.
+ *
+ * The table is read from a CSV file with lines productSystemId,impactMethodId,normalizationSetId,unitScore,
+ * an empty normalization set standing for none, or from the compact binary form written by {@link #writeBinary(Path)}.
+ */
+public class UnitScoreTable implements LcaCalculator {
+    private static final int MAGIC = 0x4C434155; // "LCAU"
+    private static final int VERSION = 1;
+
+    record Key(String productSystemId, String impactMethodId, String normalizationSetId) {
+    }
+
+    private final Path file;
+    private final Map<Key, Double> unitScores;
+
+    UnitScoreTable(Path file, Map<Key, Double> unitScores) {
+        this.file = file;
+        this.unitScores = unitScores;
+    }
+
+    /**
+     * Reads the table from a CSV or binary file, telling them apart by the magic number of the binary form
+     */
+    public static UnitScoreTable load(Path file) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        Map<Key, Double> unitScores = content.length >= Integer.BYTES && buffer.getInt(0) == MAGIC
+                ? readBinary(file, buffer)
+                : readCsv(file, new String(content, StandardCharsets.UTF_8));
+        return new UnitScoreTable(file, unitScores);
+    }
+
+    private static Map<Key, Double> readCsv(Path file, String content) throws IOException {
+        Map<Key, Double> unitScores = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+            String line;
+            int lineNumber = 0;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split(",", -1);
+                if (fields.length != 4) {
+                    throw new IOException(file + ":" + lineNumber + " needs productSystemId,impactMethodId,normalizationSetId,unitScore");
+                }
+                double unitScore;
+                try {
+                    unitScore = Double.parseDouble(fields[3].trim());
+                } catch (NumberFormatException e) {
+                    if (first) {
+                        // Header line
+                        first = false;
+                        continue;
+                    }
+                    throw new IOException(file + ":" + lineNumber + " has no valid unit score: " + fields[3]);
+                }
+                first = false;
+                unitScores.put(new Key(fields[0].trim(), blankToNull(fields[1]), blankToNull(fields[2])), unitScore);
+            }
+        }
+        return unitScores;
+    }
+
+    private static Map<Key, Double> readBinary(Path file, ByteBuffer buffer) throws IOException {
+        try {
+            buffer.getInt();
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " is a unit score table of version " + version + ", not " + VERSION);
+            }
+            int entries = buffer.getInt();
+            Map<Key, Double> unitScores = new HashMap<>(entries * 4 / 3 + 1);
+            for (int i = 0; i < entries; i++) {
+                Key key = new Key(readString(buffer), readString(buffer), readString(buffer));
+                unitScores.put(key, buffer.getDouble());
+            }
+            return unitScores;
+        } catch (BufferUnderflowException e) {
+            throw new IOException(file + " is truncated");
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the table in the binary form, which loads without parsing text
+     */
+    public void writeBinary(Path target) throws IOException {
+        List<byte[][]> keys = new ArrayList<>(unitScores.size());
+        List<Double> scores = new ArrayList<>(unitScores.size());
+        int size = 3 * Integer.BYTES;
+        for (Map.Entry<Key, Double> entry : unitScores.entrySet()) {
+            Key key = entry.getKey();
+            byte[][] strings = {bytesOf(key.productSystemId()), bytesOf(key.impactMethodId()), bytesOf(key.normalizationSetId())};
+            for (byte[] string : strings) {
+                size += Integer.BYTES + (string != null ? string.length : 0);
+            }
+            size += Double.BYTES;
+            keys.add(strings);
+            scores.add(entry.getValue());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            for (byte[] string : keys.get(i)) {
+                // Length -1 encodes null
+                buffer.putInt(string != null ? string.length : -1);
+                if (string != null) buffer.put(string);
+            }
+            buffer.putDouble(scores.get(i));
+        }
+        Files.write(target, buffer.array());
+    }
+
+    private static byte[] bytesOf(String string) {
+        return string != null ? string.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    /**
+     * @return the unit score, or null if the table has none for the combination
+     */
+    public Double getUnitScore(String productSystemId, String impactMethodId, String normalizationSetId) {
+        return unitScores.get(new Key(productSystemId, impactMethodId, normalizationSetId));
+    }
+
+    @Override
+    public CompletableFuture<Double> calculateCostAsync(String productSystemId, String impactMethodId, String normalizationSetId, double amount) {
+        Double unitScore = getUnitScore(productSystemId, impactMethodId, normalizationSetId);
+        if (unitScore == null) {
+            return CompletableFuture.failedFuture(new CalculationRejectedException("No unit score for " + productSystemId
+                    + " with impact method " + impactMethodId + " and normalization set " + normalizationSetId + " in " + file));
+        }
+        return CompletableFuture.completedFuture(unitScore * amount);
+    }
+
+    public int size() {
+        return unitScores.size();
+    }
+
+    @Override
+    public String toString() {
+        return "UnitScoreTable{" +
+                "file=" + file +
+                ", unitScores=" + unitScores.size() +
+                '}';
+    }
+}
@@ -0,0 +1,108 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+
+    // Keeps the limit used up, as a busy simulation would
+    private static void runAtLimit(AdaptiveConcurrencyLimiter limiter, int rounds, long rttNanos, boolean failed) throws InterruptedException {
+        for (int round = 0; round < rounds; round++) {
+            int requests = limiter.getLimit();
+            for (int i = 0; i < requests; i++) limiter.acquire();
+            for (int i = 0; i < requests; i++) limiter.release(rttNanos, failed);
+        }
+    }
+
+    @Test
+    @DisplayName("The limit grows while latency stays at its baseline")
+    void testGrowsUpToMaximum() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 32, 2.0);
+        runAtLimit(limiter, 10, FAST, false);
+        assertTrue(limiter.getLimit() > 4, "Limit did not grow: " + limiter);
+
+        runAtLimit(limiter, 200, FAST, false);
+        assertEquals(32, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    @DisplayName("The limit shrinks once latency rises above the tolerance")
+    void testShrinksOnHighLatency() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(16, 1, 32, 2.0);
+        runAtLimit(limiter, 1, FAST, false);
+        int before = limiter.getLimit();
+        runAtLimit(limiter, 3, SLOW, false);
+
+        assertTrue(limiter.getLimit() < before, "Limit did not shrink: " + limiter);
+    }
+
+    @Test
+    @DisplayName("Slow calculations are compared with other calculations, not with fast state polls")
+    void testMixedRequestKinds() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 32, 2.0);
+        for (int round = 0; round < 50; round++) {
+            int requests = limiter.getLimit();
+            for (int i = 0; i < requests; i++) limiter.acquire();
+            for (int i = 0; i < requests; i++) {
+                if (i % 2 == 0) {
+                    limiter.release("result/state", FAST, false);
+                } else {
+                    limiter.release("result/calculate", SLOW, false);
+                }
+            }
+        }
+        assertTrue(limiter.getLimit() > 8, "Limit did not grow: " + limiter);
+
+        // The same latencies without their kinds look like an overloaded server
+        AdaptiveConcurrencyLimiter unaware = new AdaptiveConcurrencyLimiter(8, 1, 32, 2.0);
+        for (int round = 0; round < 50; round++) {
+            int requests = unaware.getLimit();
+            for (int i = 0; i < requests; i++) unaware.acquire();
+            for (int i = 0; i < requests; i++) unaware.release(i % 2 == 0 ? FAST : SLOW, false);
+        }
+        assertTrue(unaware.getLimit() < 8, "Limit did not shrink: " + unaware);
+    }
+
+    @Test
+    void testShrinksOnErrorsDownToMinimum() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(16, 2, 32, 2.0);
+        runAtLimit(limiter, 20, FAST, true);
+
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    @DisplayName("Requests above the limit wait and are counted as queue depth")
+    void testRequestsAboveLimitWait() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 2.0);
+        limiter.acquire();
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiter.start();
+
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS), "Limit was exceeded");
+        assertEquals(1, limiter.getQueueDepth());
+        limiter.release(FAST, false);
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+        assertEquals(0, limiter.getQueueDepth());
+        assertEquals(1, limiter.getMaxQueueDepth());
+        waiter.join();
+    }
+}
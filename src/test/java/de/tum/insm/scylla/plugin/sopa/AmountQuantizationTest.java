@@ -0,0 +1,57 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AmountQuantizationTest {
+
+    @Test
+    void testAbsoluteGrid() {
+        AmountQuantization quantization = AmountQuantization.fromAttributes("absolute", "0.5");
+
+        assertEquals(2.5, quantization.quantize(2.6), 1e-12);
+        assertEquals(3.0, quantization.quantize(2.8), 1e-12);
+        assertEquals(-1.0, quantization.quantize(-1.1), 1e-12);
+    }
+
+    @Test
+    @DisplayName("A relative grid bounds the relative error over orders of magnitude")
+    void testRelativeGridBoundsError() {
+        AmountQuantization quantization = AmountQuantization.fromAttributes("relative", "0.01");
+        AmountQuantization.Statistics statistics = new AmountQuantization.Statistics();
+        double bound = Math.sqrt(1.01) - 1.0;
+        for (double amount = 0.001; amount < 1e6; amount *= 1.0037) {
+            double quantized = quantization.quantize(amount);
+            statistics.record(amount, quantized);
+            assertTrue(ResponseCurve.relativeError(quantized, amount) <= bound + 1e-12, "Error too large at " + amount);
+        }
+
+        assertTrue(statistics.getMaxRelativeError() <= bound + 1e-12);
+        assertTrue(statistics.getMeanRelativeError() > 0.0);
+        assertTrue(statistics.getMeanRelativeError() < statistics.getMaxRelativeError());
+    }
+
+    @Test
+    @DisplayName("Close amounts share one grid amount")
+    void testCloseAmountsShareGridAmount() {
+        AmountQuantization quantization = AmountQuantization.fromAttributes("relative", "0.05");
+
+        assertEquals(quantization.quantize(10.0), quantization.quantize(10.1));
+        assertEquals(0.0, quantization.quantize(0.0));
+    }
+
+    @Test
+    void testParsing() {
+        assertNull(AmountQuantization.fromAttributes(null, null));
+        assertEquals(AmountQuantization.NONE, AmountQuantization.fromAttributes("none", null));
+        assertEquals(4.2, AmountQuantization.NONE.quantize(4.2));
+        assertThrows(IllegalArgumentException.class, () -> AmountQuantization.fromAttributes("logarithmic", "0.1"));
+        assertThrows(IllegalArgumentException.class, () -> AmountQuantization.fromAttributes("absolute", null));
+        assertThrows(IllegalArgumentException.class, () -> AmountQuantization.fromAttributes("absolute", "0"));
+    }
+}
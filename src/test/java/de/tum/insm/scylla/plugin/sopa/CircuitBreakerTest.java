@@ -0,0 +1,91 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(0.5, 4, 8, 1_000, now::get);
+
+    private void call(boolean fails) {
+        assertTrue(breaker.tryAcquire());
+        if (fails) {
+            breaker.recordFailure();
+        } else {
+            breaker.recordSuccess();
+        }
+    }
+
+    @Test
+    @DisplayName("Failures below the minimum number of calls do not open the breaker")
+    void testStaysClosedBelowMinimumCalls() {
+        call(true);
+        call(true);
+        call(true);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testOpensAtFailureRate() {
+        call(false);
+        call(true);
+        call(false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        call(true);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(2, breaker.getRejectedCalls());
+        assertEquals(1, breaker.getOpenings());
+    }
+
+    @Test
+    @DisplayName("Old outcomes leave the window")
+    void testWindowSlides() {
+        for (int i = 0; i < 3; i++) {
+            call(true);
+        }
+        for (int i = 0; i < 8; i++) {
+            call(false);
+        }
+        call(true);
+        call(true);
+        call(true);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    @DisplayName("After the open duration one trial call decides on closing")
+    void testHalfOpenTrialCall() {
+        for (int i = 0; i < 4; i++) {
+            call(true);
+        }
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(), "Only one trial call at a time");
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        call(false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // The window starts over after closing
+        call(true);
+        call(true);
+        call(true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
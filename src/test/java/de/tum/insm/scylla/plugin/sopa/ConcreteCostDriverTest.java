@@ -0,0 +1,173 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcreteCostDriverTest {
+
+    private static ConcreteCostDriver driver(String id, CalculationMode calculationMode) throws Exception {
+        AbstractCostDriver parent = new AbstractCostDriver("Transport", new ArrayList<>());
+        ConcreteCostDriver driver = new ConcreteCostDriver(id, parent, 0.0);
+        parent.addChild(driver);
+        driver.setCalculationMode(calculationMode);
+        driver.setCalculatorType(CostCalculatorType.BRIDGE);
+        return driver;
+    }
+
+    @AfterEach
+    void clearCaches() {
+        ConcreteCostDriver.clearCostCache();
+        ConcreteCostDriver.setNegativeCacheTtl(ConcreteCostDriver.DEFAULT_NEGATIVE_CACHE_TTL_MILLIS);
+    }
+
+    @Test
+    @DisplayName("Concurrent lookups of the same score share one calculation")
+    void testConcurrentLookupsShareOneCalculation() throws Exception {
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            // Slow enough that all lookups arrive while the first calculation is still running
+            server.setScore("Receipt", amount -> 3 * amount).setLatency(200, 0);
+            ConcreteCostDriver.setBridgeServer(server.getUrl(), threads);
+            ConcreteCostDriver.clearCostCache();
+            ConcreteCostDriver receipt = driver("Receipt", CalculationMode.EXACT);
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Double>> costs = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                costs.add(executor.submit(() -> {
+                    start.await();
+                    return receipt.calculateCost("EF 3.1", FakeOpenLcaServer.NW_SET, 2.0);
+                }));
+            }
+            start.countDown();
+            for (Future<Double> cost : costs) {
+                assertEquals(6.0, cost.get(), 1e-9);
+            }
+
+            assertEquals(1, server.getCalculations("Receipt"));
+            assertEquals(0, receipt.getFallbacks());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Asynchronous lookups of different drivers are calculated concurrently")
+    void testAsyncLookupsOfDifferentDriversOverlap() throws Exception {
+        int drivers = 8;
+        long latencyMillis = 200;
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setDefaultScore(amount -> 3 * amount).setLatency(latencyMillis, 0);
+            ConcreteCostDriver.setBridgeServer(server.getUrl(), drivers);
+            ConcreteCostDriver.clearCostCache();
+
+            long start = System.nanoTime();
+            List<CompletableFuture<Double>> costs = new ArrayList<>();
+            for (int i = 0; i < drivers; i++) {
+                costs.add(driver("Shipment_" + i, CalculationMode.EXACT).calculateCostAsync("EF 3.1", FakeOpenLcaServer.NW_SET, i + 1));
+            }
+            for (int i = 0; i < drivers; i++) {
+                assertEquals(3.0 * (i + 1), costs.get(i).join(), 1e-9);
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertEquals(drivers, server.getCalculations());
+            // One after another, every calculation would take at least one latency
+            assertTrue(elapsedMillis < drivers * latencyMillis, "took " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test
+    @DisplayName("Linear mode calculates the unit score once per impact method and normalization set and scales it locally")
+    void testLinearModeScalesUnitScore() throws Exception {
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            // Not linear in the amount, so that scores calculated per amount would differ from the scaled unit score
+            server.setScore("Receipt", amount -> 10 + amount);
+            ConcreteCostDriver.setBridgeServer(server.getUrl(), 4);
+            ConcreteCostDriver.clearCostCache();
+            ConcreteCostDriver receipt = driver("Receipt", CalculationMode.LINEAR);
+
+            for (double amount : new double[]{1.0, 2.5, 4.0, 7.25}) {
+                assertEquals(11.0 * amount, receipt.calculateCost("EF 3.1", FakeOpenLcaServer.NW_SET, amount), 1e-9);
+                assertEquals(22.0 * amount, receipt.calculateCost("EF 3.1", FakeOpenLcaServer.NW_SET_DOUBLED, amount), 1e-9);
+                assertEquals(11.0 * amount, receipt.calculateCost("ReCiPe 2016", FakeOpenLcaServer.NW_SET, amount), 1e-9);
+            }
+
+            assertEquals(3, server.getCalculations("Receipt"));
+            assertEquals(0, receipt.getFallbacks());
+        }
+    }
+
+    @Test
+    @DisplayName("A response curve whose build failed is built again on the next lookup")
+    void testFailedSurrogateIsBuiltAgain() throws Exception {
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setScore("Shipment_A_Lorry", amount -> 2 * amount).setHttpErrorRate(1.0);
+            ConcreteCostDriver.setBridgeServer(server.getUrl(), 4);
+            ConcreteCostDriver.clearCostCache();
+            ConcreteCostDriver.setNegativeCacheTtl(0);
+            ConcreteCostDriver lorry = driver("Shipment_A_Lorry", CalculationMode.SURROGATE);
+            // A single grid point, so that no grid calculation of the failed build is still in flight on the retry
+            AmountRange range = new AmountRange(1.5, 1.5);
+
+            // The build fails, the cost falls back to the static LCA score
+            assertEquals(0.0, lorry.calculateCostAsync("EF 3.1", FakeOpenLcaServer.NW_SET, 1.5, range).join(), 1e-9);
+            assertEquals(1, lorry.getFallbacks());
+            assertTrue(lorry.getSurrogates().isEmpty());
+
+            server.setHttpErrorRate(0.0);
+            assertEquals(3.0, lorry.calculateCostAsync("EF 3.1", FakeOpenLcaServer.NW_SET, 1.5, range).join(), 1e-9);
+            assertEquals(1, lorry.getFallbacks());
+            assertEquals(1, lorry.getSurrogates().size());
+        }
+    }
+
+    @Test
+    @DisplayName("Only bridge scores are persisted, so that a driver switched to another calculator never gets old scores")
+    void testPersistsOnlyBridgeScores() throws Exception {
+        Path cacheFile = Files.createTempFile("lca-cache", ".bin");
+        Files.delete(cacheFile);
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setScore("Receipt", amount -> 3 * amount);
+            ConcreteCostDriver.setBridgeServer(server.getUrl(), 4);
+            ConcreteCostDriver.clearCostCache();
+            ConcreteCostDriver.setPersistentCache(new PersistentLcaCache(cacheFile, "db-1"));
+            ConcreteCostDriver receipt = driver("Receipt", CalculationMode.EXACT);
+            assertEquals(6.0, receipt.calculateCost("EF 3.1", FakeOpenLcaServer.NW_SET, 2.0), 1e-9);
+            assertEquals(1, ConcreteCostDriver.getPersistentCache().size());
+
+            // The next run scores the driver from a table instead
+            ConcreteCostDriver.clearCostCache();
+            ConcreteCostDriver.setLocalCalculator(CostCalculatorType.TABLE,
+                    (productSystemId, impactMethodId, normalizationSetId, amount) -> CompletableFuture.completedFuture(5 * amount));
+            receipt.setCalculatorType(CostCalculatorType.TABLE);
+            assertEquals(10.0, receipt.calculateCost("EF 3.1", FakeOpenLcaServer.NW_SET, 2.0), 1e-9);
+            assertEquals(1, ConcreteCostDriver.getPersistentCache().size());
+
+            // And the one after that from the bridge again, which finds its persisted score
+            ConcreteCostDriver.clearCostCache();
+            receipt.setCalculatorType(CostCalculatorType.BRIDGE);
+            assertEquals(6.0, receipt.calculateCost("EF 3.1", FakeOpenLcaServer.NW_SET, 2.0), 1e-9);
+            assertEquals(1, server.getCalculations("Receipt"));
+        } finally {
+            ConcreteCostDriver.setPersistentCache(null);
+            ConcreteCostDriver.setLocalCalculator(CostCalculatorType.TABLE, null);
+            Files.deleteIfExists(cacheFile);
+        }
+    }
+}
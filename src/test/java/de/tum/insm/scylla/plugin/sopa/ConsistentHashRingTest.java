@@ -0,0 +1,61 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final List<String> SERVERS = List.of("http://localhost:8081", "http://localhost:8082",
+            "http://localhost:8083", "http://localhost:8084");
+
+    private final ConsistentHashRing<String> ring = new ConsistentHashRing<>(SERVERS, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+
+    @Test
+    @DisplayName("Product systems are spread roughly evenly")
+    void testKeysAreBalanced() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            counts.merge(ring.nodeFor("product-system-" + i), 1, Integer::sum);
+        }
+
+        assertEquals(SERVERS.size(), counts.size());
+        counts.values().forEach(count -> assertTrue(count > 1_500 && count < 3_500, "Unbalanced: " + counts));
+    }
+
+    @Test
+    @DisplayName("Only the product systems of a dropped server move")
+    void testOnlyKeysOfDroppedNodeMove() {
+        String dropped = SERVERS.get(1);
+        int moved = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String key = "product-system-" + i;
+            String owner = ring.nodeFor(key);
+            String newOwner = ring.nodeFor(key, server -> !server.equals(dropped));
+            if (owner.equals(dropped)) {
+                assertNotEquals(dropped, newOwner);
+                moved++;
+            } else {
+                assertEquals(owner, newOwner);
+            }
+        }
+        assertTrue(moved > 0);
+    }
+
+    @Test
+    void testRoutingIsStable() {
+        ConsistentHashRing<String> other = new ConsistentHashRing<>(SERVERS, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(ring.nodeFor("ps-" + i), other.nodeFor("ps-" + i));
+        }
+        assertNull(ring.nodeFor("ps-1", server -> false));
+    }
+}
@@ -0,0 +1,122 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import de.hpi.bpt.scylla.exception.ScyllaValidationException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CostConfigurationValidatorTest {
+
+    private static Map<String, Object> distribution(String distributionType, Map<String, Object>... values) {
+        return Map.of("distributionType", distributionType, "values", List.of(values));
+    }
+
+    private static List<AbstractCostDriver> transport() throws ScyllaValidationException {
+        AbstractCostDriver transport = new AbstractCostDriver("Transport", new ArrayList<>());
+        transport.addChild(new ConcreteCostDriver("Shipment_A_Lorry", transport, 0.0));
+        transport.addChild(new ConcreteCostDriver("Shipment_B_Train", transport, 0.0));
+        return List.of(transport);
+    }
+
+    @Test
+    @DisplayName("All mistakes of the cost variants and tasks are reported at once")
+    void testReportsAllMistakes() throws ScyllaValidationException {
+        CostVariant valid = new CostVariant("Valid", 0.5, Map.of("Transport", "Shipment_A_Lorry"));
+        valid.setDriverDistributions(Map.of("Shipment_A_Lorry",
+                distribution("uniformDistribution", Map.of("id", "lower", "value", 1.0), Map.of("id", "upper", "value", 2.0))));
+        assertDoesNotThrow(() -> CostConfigurationValidator.validate(transport(), List.of(valid), Map.of(1, List.of("Transport"))));
+
+        CostVariant invalid = new CostVariant("Invalid", 0.5, Map.of("Transport", "Shipment_C_Ship", "Packaging", "Box"));
+        invalid.setDriverDistributions(Map.of("Shipment_C_Ship",
+                distribution("uniformDistribution", Map.of("id", "lower", "value", 2.0), Map.of("id", "upper", "value", 1.0))));
+        ScyllaValidationException e = assertThrows(ScyllaValidationException.class,
+                () -> CostConfigurationValidator.validate(transport(), List.of(valid, invalid), Map.of(1, List.of("Transprot"))));
+
+        assertTrue(e.getMessage().contains("Shipment_C_Ship, which is not one of its concrete cost drivers"), e.getMessage());
+        assertTrue(e.getMessage().contains("unknown abstract cost driver Packaging"), e.getMessage());
+        assertTrue(e.getMessage().contains("lower bound above its upper bound"), e.getMessage());
+        assertTrue(e.getMessage().contains("Task 1 refers to the unknown abstract cost driver Transprot"), e.getMessage());
+        assertEquals(5, e.getMessage().split("\n").length);
+    }
+
+    @Test
+    @DisplayName("Distribution parameters are checked against what the distributions accept")
+    void testChecksDistributions() {
+        assertNull(CostConfigurationValidator.checkDistribution(distribution("triangularDistribution",
+                Map.of("id", "lower", "value", 1.0), Map.of("id", "peak", "value", 2.0), Map.of("id", "upper", "value", 3.0))));
+        assertNull(CostConfigurationValidator.checkDistribution(distribution("binomialDistribution",
+                Map.of("id", "probability", "value", 0.3), Map.of("id", "amount", "value", 4))));
+        assertEquals("needs a positive mean", CostConfigurationValidator.checkDistribution(distribution("exponentialDistribution",
+                Map.of("id", "mean", "value", 0.0))));
+        assertEquals("has its peak outside its bounds", CostConfigurationValidator.checkDistribution(distribution("triangularDistribution",
+                Map.of("id", "lower", "value", 1.0), Map.of("id", "peak", "value", 5.0), Map.of("id", "upper", "value", 3.0))));
+        assertEquals("needs a probability between 0 and 1", CostConfigurationValidator.checkDistribution(distribution("binomialDistribution",
+                Map.of("id", "probability", "value", 1.5), Map.of("id", "amount", "value", 4))));
+        assertEquals("needs a positive order", CostConfigurationValidator.checkDistribution(distribution("erlangDistribution",
+                Map.of("id", "mean", "value", 1.0))));
+        assertEquals("has an entry without non-negative frequency", CostConfigurationValidator.checkDistribution(
+                distribution("arbitraryFiniteProbabilityDistribution", Map.of("id", "value", "value", 1.0, "frequency", -0.5))));
+        assertEquals("has an unsupported type", CostConfigurationValidator.checkDistribution(Map.of()));
+    }
+
+    @Test
+    @DisplayName("The bridge is asked for all product systems in one batch before simulating")
+    void testProbesBridge() throws Exception {
+        CostDriverSettings settings = CostDriverSettings.getInstance();
+        String impactMethod = settings.getImpactMethod();
+        List<CostVariant> costVariants = List.of(
+                new CostVariant("By lorry", 0.5, Map.of("Transport", "Shipment_A_Lorry")),
+                new CostVariant("By train", 0.5, Map.of("Transport", "Shipment_B_Train")));
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setScoreTable(Map.of("Shipment_A_Lorry", 0.5));
+            ConcreteCostDriver.setBridgeServer(server.getUrl(), 8);
+            ConcreteCostDriver.getCostCalculator().setBatching(true, JsonRpcBatcher.DEFAULT_MAX_BATCH_SIZE, 50);
+            settings.setImpactMethod("EF 3.1");
+
+            ScyllaValidationException e = assertThrows(ScyllaValidationException.class,
+                    () -> CostConfigurationValidator.probeBridge(transport(), costVariants));
+            assertTrue(e.getMessage().contains("no product system Shipment_B_Train"), e.getMessage());
+            assertTrue(!e.getMessage().contains("Shipment_A_Lorry"), e.getMessage());
+            // One batch for the product systems, one for the impact method
+            assertEquals(2, server.getRequests());
+            assertEquals(1, server.getBatchRequests());
+
+            server.setScoreTable(Map.of("Shipment_A_Lorry", 0.5, "Shipment_B_Train", 0.25));
+            assertDoesNotThrow(() -> CostConfigurationValidator.probeBridge(transport(), costVariants));
+        } finally {
+            settings.setImpactMethod(impactMethod);
+        }
+    }
+
+    @Test
+    @DisplayName("An unreachable bridge fails the run before simulating")
+    void testFailsIfBridgeUnreachable() throws Exception {
+        CostDriverSettings settings = CostDriverSettings.getInstance();
+        String impactMethod = settings.getImpactMethod();
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try {
+            ConcreteCostDriver.setBridgeServer("http://localhost:" + port, 8);
+            settings.setImpactMethod("EF 3.1");
+
+            ScyllaValidationException e = assertThrows(ScyllaValidationException.class, () -> CostConfigurationValidator.probeBridge(transport(),
+                    List.of(new CostVariant("By lorry", 1.0, Map.of("Transport", "Shipment_A_Lorry")))));
+            assertTrue(e.getMessage().contains("http://localhost:" + port), e.getMessage());
+            assertTrue(e.getMessage().contains("preflightTimeout"), e.getMessage());
+        } finally {
+            settings.setImpactMethod(impactMethod);
+        }
+    }
+}
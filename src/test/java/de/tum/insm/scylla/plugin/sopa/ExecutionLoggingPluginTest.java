@@ -2,6 +2,10 @@ package de.tum.insm.scylla.plugin.sopa;
 
 import de.hpi.bpt.scylla.SimulationTest;
 import de.hpi.bpt.scylla.plugin_loader.PluginLoader;
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+import org.jdom2.input.SAXBuilder;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.xmlunit.builder.DiffBuilder;
@@ -11,8 +15,15 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static de.hpi.bpt.scylla.Scylla.normalizePath;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -21,6 +32,64 @@ class ExecutionLoggingPluginTest extends SimulationTest {
 
     private final CostDriverExecutionLoggingPlugin EXECUTION_LOGGING_PLUGIN = new CostDriverExecutionLoggingPlugin();
 
+    private static final String ADDITIONAL_LABEL = "ReCiPe 2016/World";
+
+    @AfterEach
+    void resetImpactAssessments() {
+        CostDriverSettings settings = CostDriverSettings.getInstance();
+        settings.setImpactMethod(null);
+        settings.setNormalizationSet(null);
+        settings.setAdditionalImpactAssessments(List.of());
+    }
+
+    // String attributes of an XES trace or event by key
+    private static Map<String, String> stringAttributes(Element element) {
+        Map<String, String> attributes = new HashMap<>();
+        for (Element attribute : element.getChildren()) {
+            if (attribute.getName().equals("string")) {
+                attributes.put(attribute.getAttributeValue("key"), attribute.getAttributeValue("value"));
+            }
+        }
+        return attributes;
+    }
+
+    // Unit scores of every concrete cost driver, twice as high with ReCiPe 2016/World as with EF 3.1/EU 2010
+    private static Path writeUnitScores() throws Exception {
+        Path unitScores = Files.createTempFile("unit-scores", ".csv");
+        List<String> lines = new ArrayList<>();
+        for (AbstractCostDriver abstractCostDriver : Utils.parseGC()) {
+            for (ConcreteCostDriver concreteCostDriver : abstractCostDriver.getChildren()) {
+                lines.add(concreteCostDriver.getId() + ",EF 3.1,EU 2010,1.0");
+                lines.add(concreteCostDriver.getId() + ",ReCiPe 2016,World,2.0");
+            }
+        }
+        return Files.write(unitScores, lines);
+    }
+
+    private static Element impactMethodInfo(Namespace bsim, Path unitScores) {
+        return new Element("impactMethodInfo", bsim)
+                .setAttribute("selectedImpactMethod", "EF 3.1")
+                .setAttribute("selectedNormalizationSet", "EU 2010")
+                .setAttribute("unitScoreTable", unitScores.toString());
+    }
+
+    // Process instance cost followed by the activity costs of every trace, by trace name
+    private Map<String, List<String>> costsByTrace() throws Exception {
+        Map<String, List<String>> costs = new HashMap<>();
+        for (Element trace : getEventLog().getChildren()) {
+            if (!trace.getName().equals("trace")) continue;
+            Map<String, String> attributes = stringAttributes(trace);
+            List<String> traceCosts = new ArrayList<>();
+            traceCosts.add(attributes.get("cost:Process_Instance"));
+            for (Element event : trace.getChildren()) {
+                String cost = event.getName().equals("event") ? stringAttributes(event).get("cost:activity") : null;
+                if (cost != null) traceCosts.add(cost);
+            }
+            costs.put(attributes.get("concept:name"), traceCosts);
+        }
+        return costs;
+    }
+
     @Test
     void testWriteToLog() throws IOException {
         PluginLoader.getDefaultPluginLoader().activateNone().loadPackage(Main.class.getPackageName());
@@ -85,6 +154,98 @@ class ExecutionLoggingPluginTest extends SimulationTest {
 
 
 
+    @Test
+    @DisplayName("Every impact assessment writes its own cost attributes and statistics section")
+    void testSeveralImpactAssessments() throws Exception {
+        PluginLoader.getDefaultPluginLoader().activateNone().loadPackage(Main.class.getPackageName());
+        // Unit scores of the additional assessment are twice those of the selected one, so are all of its costs
+        Path unitScores = writeUnitScores();
+        beforeParsingGlobal.add(() -> {
+            Namespace bsim = globalConfigRoot.getNamespace();
+            Element impactMethodInfo = impactMethodInfo(bsim, unitScores);
+            impactMethodInfo.addContent(new Element("additionalImpactMethod", bsim)
+                    .setAttribute("selectedImpactMethod", "ReCiPe 2016")
+                    .setAttribute("selectedNormalizationSet", "World"));
+            globalConfigRoot.addContent(impactMethodInfo);
+        });
+        try {
+            runSimpleSimulation(
+                    Utils.GLOBAL_CONFIGURATION_FILE,
+                    Utils.SIMULATION_MODEL_FILE,
+                    Utils.SIMULATION_CONFIGURATION_FILE);
+        } finally {
+            Files.deleteIfExists(unitScores);
+        }
+
+        int activityCosts = 0;
+        for (Element event : getEventLogEvents().toList()) {
+            Map<String, String> attributes = stringAttributes(event);
+            if (attributes.containsKey("cost:activity")) {
+                activityCosts++;
+                double cost = Double.parseDouble(attributes.get("cost:activity"));
+                assertEquals(2 * cost, Double.parseDouble(attributes.get("cost:activity:" + ADDITIONAL_LABEL)), 1e-12);
+            }
+        }
+        assertTrue(activityCosts > 0, "No activity costs logged");
+        for (Element trace : getEventLog().getChildren()) {
+            if (!trace.getName().equals("trace")) continue;
+            Map<String, String> attributes = stringAttributes(trace);
+            double cost = Double.parseDouble(attributes.get("cost:Process_Instance"));
+            assertEquals(2 * cost, Double.parseDouble(attributes.get("cost:Process_Instance:" + ADDITIONAL_LABEL)), 1e-12);
+        }
+
+        Element statistics = new SAXBuilder().build(Paths.get(normalizePath("./" + outputPath + "sustainability_global_information_statistic.xml")).toFile())
+                .getRootElement();
+        Element additional = statistics.getChildren("Impact_Assessment").stream()
+                .filter(section -> "ReCiPe 2016".equals(section.getAttributeValue("impactMethod"))
+                        && "World".equals(section.getAttributeValue("normalizationSet")))
+                .findFirst()
+                .orElse(null);
+        assertNotNull(additional, "No statistics section of the additional impact assessment");
+        assertEquals(1, statistics.getChildren("Impact_Assessment").size());
+        assertEquals(2 * Double.parseDouble(statistics.getChildText("Average_Process_Instance_Cost")),
+                Double.parseDouble(additional.getChildText("Average_Process_Instance_Cost")), 1e-12);
+        assertEquals(statistics.getChildren("Average_Cost_Variant_Cost").size(),
+                additional.getChildren("Average_Cost_Variant_Cost").size());
+        assertEquals(statistics.getChild("Activity_Cost").getChildren("Activity").size(),
+                additional.getChild("Activity_Cost").getChildren("Activity").size());
+    }
+
+    @Test
+    @DisplayName("Costing the process instances in parallel gives the same costs as costing them one after another")
+    void testParallelCostingMatchesSequential() throws Exception {
+        PluginLoader.getDefaultPluginLoader().activateNone().loadPackage(Main.class.getPackageName());
+        Path unitScores = writeUnitScores();
+        int[] threads = {1};
+        beforeParsingGlobal.add(() -> {
+            Namespace bsim = globalConfigRoot.getNamespace();
+            globalConfigRoot.addContent(impactMethodInfo(bsim, unitScores));
+            globalConfigRoot.addContent(new Element("eventLog", bsim).setAttribute("threads", String.valueOf(threads[0])));
+        });
+        setGlobalSeed(-7870005462812540457L);
+        Map<String, List<String>> sequential;
+        Map<String, List<String>> parallel;
+        try {
+            runSimpleSimulation(
+                    Utils.GLOBAL_CONFIGURATION_FILE,
+                    Utils.SIMULATION_MODEL_FILE,
+                    Utils.SIMULATION_CONFIGURATION_FILE);
+            sequential = costsByTrace();
+
+            threads[0] = 4;
+            runSimpleSimulation(
+                    Utils.GLOBAL_CONFIGURATION_FILE,
+                    Utils.SIMULATION_MODEL_FILE,
+                    Utils.SIMULATION_CONFIGURATION_FILE);
+            parallel = costsByTrace();
+        } finally {
+            Files.deleteIfExists(unitScores);
+        }
+
+        assertFalse(sequential.isEmpty(), "No traces logged");
+        assertEquals(sequential, parallel);
+    }
+
     @Override
     protected String getFolderName() {
         return "Shipping";
@@ -0,0 +1,431 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * In-process stand-in for the JSON-RPC endpoint of an OpenLCA IPC server, answering the calls the plugin makes:
+ * result/calculate, result/state, result/total-impacts/weighted, result/total-impacts, result/dispose and data/get
+ * of an impact method or product system, single or as batch.
+ *
+ * Scores come from per product system score functions of the amount. Latency, the number of polls until
+ * a result is ready, HTTP failures and JSON-RPC errors can be configured to mimic a real server.
+ * Every impact method has the normalization sets {@link #NW_SET}, under which the weighted impacts sum up to the score,
+ * and {@link #NW_SET_DOUBLED}, under which they sum up to twice the score.
+ *
+ * <pre>
+ * try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+ *     server.setScore("Shipment_A_Lorry", amount -> 0.2 * amount);
+ *     OpenLcaCostCalculator calculator = new OpenLcaCostCalculator(server.getUrl());
+ *     ...
+ * }
+ * </pre>
+ */
+class FakeOpenLcaServer implements AutoCloseable {
+
+    static final String NW_SET = "fake-nw-set";
+    static final String NW_SET_DOUBLED = "fake-nw-set-doubled";
+
+    private record OpenResult(String productSystemId, String normalizationSetId, double score, AtomicInteger remainingNotReadyPolls) {
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final Map<String, DoubleUnaryOperator> scores = new ConcurrentHashMap<>();
+    private volatile DoubleUnaryOperator defaultScore;
+    private final Set<String> failingProductSystems = ConcurrentHashMap.newKeySet();
+    private final Map<String, OpenResult> openResults = new ConcurrentHashMap<>();
+    private final AtomicLong nextResultId = new AtomicLong();
+
+    private volatile long latencyMillis;
+    private volatile long latencyJitterMillis;
+    private volatile int notReadyPolls;
+    private volatile int impactCategories = 3;
+    private volatile double httpErrorRate;
+    private volatile boolean batchSupported = true;
+
+    // Statistics
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong batchRequests = new AtomicLong();
+    private final AtomicLong calculations = new AtomicLong();
+    private final AtomicLong statePolls = new AtomicLong();
+    private final AtomicLong disposals = new AtomicLong();
+    private final AtomicLong impactMethodReads = new AtomicLong();
+    private final AtomicLong httpErrors = new AtomicLong();
+    private final AtomicInteger concurrentRequests = new AtomicInteger();
+    private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+    private final Map<String, AtomicLong> calculationsByProductSystem = new ConcurrentHashMap<>();
+
+    private FakeOpenLcaServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a server on a free port of the loopback interface
+     */
+    static FakeOpenLcaServer start() throws IOException {
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-openlca");
+            thread.setDaemon(true);
+            return thread;
+        });
+        FakeOpenLcaServer fake = new FakeOpenLcaServer(httpServer, executor);
+        httpServer.createContext("/json-rpc", fake::handle);
+        httpServer.setExecutor(executor);
+        httpServer.start();
+        return fake;
+    }
+
+    /**
+     * @return base url as configured for the plugin, without "json-rpc"
+     */
+    String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * @param score weighted single score of the product system as a function of the amount
+     */
+    FakeOpenLcaServer setScore(String productSystemId, DoubleUnaryOperator score) {
+        scores.put(productSystemId, score);
+        return this;
+    }
+
+    /**
+     * @param unitScores weighted single score per unit of amount, by product system
+     */
+    FakeOpenLcaServer setScoreTable(Map<String, Double> unitScores) {
+        unitScores.forEach((productSystemId, unitScore) -> setScore(productSystemId, amount -> unitScore * amount));
+        return this;
+    }
+
+    /**
+     * @param score score of product systems without their own score function, null to answer them with an error
+     */
+    FakeOpenLcaServer setDefaultScore(DoubleUnaryOperator score) {
+        this.defaultScore = score;
+        return this;
+    }
+
+    /**
+     * Answers calculations of the product system with a JSON-RPC error
+     */
+    FakeOpenLcaServer failProductSystem(String productSystemId) {
+        failingProductSystems.add(productSystemId);
+        return this;
+    }
+
+    /**
+     * @param latencyMillis time every request takes before it is answered
+     * @param jitterMillis  uniformly distributed extra time of every request
+     */
+    FakeOpenLcaServer setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = jitterMillis;
+        return this;
+    }
+
+    /**
+     * @param notReadyPolls number of result/state calls answered with isReady false before a result is ready
+     */
+    FakeOpenLcaServer setNotReadyPolls(int notReadyPolls) {
+        this.notReadyPolls = notReadyPolls;
+        return this;
+    }
+
+    /**
+     * @param impactCategories number of weighted impacts the score is split into
+     */
+    FakeOpenLcaServer setImpactCategories(int impactCategories) {
+        this.impactCategories = impactCategories;
+        return this;
+    }
+
+    /**
+     * @param httpErrorRate share of requests answered with HTTP status 503
+     */
+    FakeOpenLcaServer setHttpErrorRate(double httpErrorRate) {
+        this.httpErrorRate = httpErrorRate;
+        return this;
+    }
+
+    FakeOpenLcaServer setBatchSupported(boolean batchSupported) {
+        this.batchSupported = batchSupported;
+        return this;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int concurrent = concurrentRequests.incrementAndGet();
+        maxConcurrentRequests.accumulateAndGet(concurrent, Math::max);
+        try (exchange) {
+            requests.incrementAndGet();
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            sleep(latencyMillis + (latencyJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1) : 0));
+            if (httpErrorRate > 0 && ThreadLocalRandom.current().nextDouble() < httpErrorRate) {
+                httpErrors.incrementAndGet();
+                respond(exchange, 503, "Service Unavailable");
+                return;
+            }
+
+            JsonRpcCodec.Reader reader = new JsonRpcCodec.Reader(body);
+            String response;
+            if (reader.peek() == '[') {
+                if (!batchSupported) {
+                    response = error("null", -32600, "Invalid Request");
+                } else {
+                    batchRequests.incrementAndGet();
+                    List<String> responses = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        responses.add(answer(reader));
+                    }
+                    reader.endArray();
+                    response = "[" + String.join(",", responses) + "]";
+                }
+            } else {
+                response = answer(reader);
+            }
+            respond(exchange, 200, response);
+        } catch (RuntimeException e) {
+            respond(exchange, 500, String.valueOf(e.getMessage()));
+        } finally {
+            concurrentRequests.decrementAndGet();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String answer(JsonRpcCodec.Reader reader) throws IOException {
+        String method = null;
+        String id = "null";
+        String target = null;
+        String resultId = null;
+        String normalizationSetId = null;
+        String dataType = null;
+        double amount = 1.0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "method" -> method = reader.nextString();
+                case "id" -> id = new String(reader.captureValue(), StandardCharsets.UTF_8).trim();
+                case "params" -> {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "target" -> target = readId(reader);
+                            case "nwSet" -> normalizationSetId = readId(reader);
+                            case "@id" -> resultId = reader.nextString();
+                            case "@type" -> dataType = reader.nextString();
+                            case "amount" -> amount = reader.nextDouble();
+                            default -> reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return switch (String.valueOf(method)) {
+            case "result/calculate" -> calculate(id, target, normalizationSetId, amount);
+            case "result/state" -> state(id, resultId);
+            case "result/total-impacts/weighted" -> impacts(id, resultId, true);
+            case "result/total-impacts" -> impacts(id, resultId, false);
+            case "data/get" -> "ProductSystem".equals(dataType) ? productSystem(id, resultId) : impactMethod(id, resultId);
+            case "result/dispose" -> {
+                disposals.incrementAndGet();
+                openResults.remove(resultId);
+                yield result(id, "{\"@type\":\"Result\",\"@id\":\"" + resultId + "\"}");
+            }
+            default -> error(id, -32601, "Method not found: " + method);
+        };
+    }
+
+    private static String readId(JsonRpcCodec.Reader reader) throws IOException {
+        String id = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("@id")) {
+                id = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return id;
+    }
+
+    private String calculate(String id, String productSystemId, String normalizationSetId, double amount) {
+        if (productSystemId == null || failingProductSystems.contains(productSystemId)) {
+            return error(id, 500, "Calculation of " + productSystemId + " failed");
+        }
+        DoubleUnaryOperator score = scores.getOrDefault(productSystemId, defaultScore);
+        if (score == null) {
+            return error(id, 404, "Unknown product system " + productSystemId);
+        }
+        calculations.incrementAndGet();
+        calculationsByProductSystem.computeIfAbsent(productSystemId, ps -> new AtomicLong()).incrementAndGet();
+        String resultId = "result-" + nextResultId.incrementAndGet();
+        int polls = notReadyPolls;
+        openResults.put(resultId, new OpenResult(productSystemId, normalizationSetId, score.applyAsDouble(amount), new AtomicInteger(polls)));
+        return stateResult(id, resultId, polls == 0);
+    }
+
+    private String state(String id, String resultId) {
+        statePolls.incrementAndGet();
+        OpenResult result = openResults.get(resultId);
+        if (result == null) {
+            return error(id, 404, "Unknown result " + resultId);
+        }
+        return stateResult(id, resultId, result.remainingNotReadyPolls().getAndDecrement() <= 1);
+    }
+
+    /**
+     * Category i has the characterized result 2 * score / categories, normalized by i + 1 and weighted by (i + 1) / 2,
+     * or by i + 1 in the doubling normalization set
+     */
+    private String impacts(String id, String resultId, boolean weighted) {
+        OpenResult result = openResults.get(resultId);
+        if (result == null) {
+            return error(id, 404, "Unknown result " + resultId);
+        }
+        StringBuilder impacts = new StringBuilder("[");
+        int categories = Math.max(1, impactCategories);
+        double factor = !weighted ? 1.0 : NW_SET_DOUBLED.equals(result.normalizationSetId()) ? 1.0 : 0.5;
+        for (int i = 0; i < categories; i++) {
+            if (i > 0) impacts.append(',');
+            impacts.append("{\"@type\":\"ImpactValue\",\"impactCategory\":{\"@type\":\"ImpactCategory\",\"@id\":\"category-")
+                    .append(i).append("\",\"name\":\"Category ").append(i).append("\"},\"amount\":")
+                    .append(2 * result.score() / categories * factor).append('}');
+        }
+        return result(id, impacts.append(']').toString());
+    }
+
+    private String productSystem(String id, String productSystemId) {
+        if (!scores.containsKey(productSystemId) && defaultScore == null) {
+            return error(id, 404, "No ProductSystem with id " + productSystemId);
+        }
+        return result(id, "{\"@type\":\"ProductSystem\",\"@id\":\"" + productSystemId + "\"}");
+    }
+
+    private String impactMethod(String id, String impactMethodId) {
+        impactMethodReads.incrementAndGet();
+        StringBuilder method = new StringBuilder("{\"@type\":\"ImpactMethod\",\"@id\":\"").append(impactMethodId).append("\",\"nwSets\":[");
+        int categories = Math.max(1, impactCategories);
+        String[] normalizationSets = {NW_SET, NW_SET_DOUBLED};
+        for (int set = 0; set < normalizationSets.length; set++) {
+            if (set > 0) method.append(',');
+            method.append("{\"@type\":\"NwSet\",\"@id\":\"").append(normalizationSets[set]).append("\",\"factors\":[");
+            for (int i = 0; i < categories; i++) {
+                if (i > 0) method.append(',');
+                method.append("{\"impactCategory\":{\"@type\":\"ImpactCategory\",\"@id\":\"category-").append(i)
+                        .append("\"},\"normalisationFactor\":").append(i + 1.0)
+                        .append(",\"weightingFactor\":").append(set == 0 ? (i + 1.0) / 2 : i + 1.0).append('}');
+            }
+            method.append("]}");
+        }
+        return result(id, method.append("]}").toString());
+    }
+
+    private static String stateResult(String id, String resultId, boolean ready) {
+        return result(id, "{\"@type\":\"Result\",\"@id\":\"" + resultId + "\",\"isReady\":" + ready + ",\"isScheduled\":" + !ready + "}");
+    }
+
+    private static String result(String id, String result) {
+        return "{\"jsonrpc\":\"2.0\",\"result\":" + result + ",\"id\":" + id + "}";
+    }
+
+    private static String error(String id, int code, String message) {
+        return "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":" + code + ",\"message\":\"" + message.replace("\"", "'") + "\"},\"id\":" + id + "}";
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getBatchRequests() {
+        return batchRequests.get();
+    }
+
+    long getCalculations() {
+        return calculations.get();
+    }
+
+    long getCalculations(String productSystemId) {
+        AtomicLong count = calculationsByProductSystem.get(productSystemId);
+        return count == null ? 0 : count.get();
+    }
+
+    long getStatePolls() {
+        return statePolls.get();
+    }
+
+    long getDisposals() {
+        return disposals.get();
+    }
+
+    long getImpactMethodReads() {
+        return impactMethodReads.get();
+    }
+
+    long getHttpErrors() {
+        return httpErrors.get();
+    }
+
+    int getMaxConcurrentRequests() {
+        return maxConcurrentRequests.get();
+    }
+
+    /**
+     * @return number of results calculated but not disposed yet
+     */
+    int getOpenResults() {
+        return openResults.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
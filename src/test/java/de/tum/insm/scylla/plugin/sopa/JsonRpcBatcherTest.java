@@ -0,0 +1,152 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonRpcBatcherTest {
+
+    private static final JsonRpcCodec.ResultDecoder<Double> NUMBER = JsonRpcCodec.Reader::nextDouble;
+    private static final byte[] PARAMS = "{}".getBytes(StandardCharsets.UTF_8);
+
+    // Ids of the calls in a request, in order
+    private static List<Long> ids(byte[] payload) throws IOException {
+        JsonRpcCodec.Reader reader = new JsonRpcCodec.Reader(payload);
+        List<Long> ids = new ArrayList<>();
+        boolean batch = reader.peek() == '[';
+        if (batch) reader.beginArray();
+        do {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("id")) {
+                    ids.add(reader.nextLong());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } while (batch && reader.hasNext());
+        return ids;
+    }
+
+    // Answers every call with its id as result
+    private static String answer(long id) {
+        return "{\"jsonrpc\":\"2.0\",\"id\":" + id + ",\"result\":" + id + "}";
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<CompletableFuture<Double>> submit(JsonRpcBatcher batcher, int calls) {
+        List<CompletableFuture<Double>> results = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            results.add(batcher.submit("result/calculate", PARAMS, NUMBER));
+        }
+        return results;
+    }
+
+    @Test
+    @DisplayName("Server errors fail the calls of a batch without sending them again")
+    void testServerErrorFailsBatch() {
+        AtomicInteger requests = new AtomicInteger();
+        JsonRpcBatcher batcher = new JsonRpcBatcher(payload -> {
+            requests.incrementAndGet();
+            throw new IpcServerException(503, "Service Unavailable");
+        }, 4, 1_000);
+        try {
+            for (CompletableFuture<Double> result : submit(batcher, 4)) {
+                CompletionException error = assertThrows(CompletionException.class, result::join);
+                assertTrue(error.getCause() instanceof IpcServerException, String.valueOf(error.getCause()));
+            }
+            assertEquals(1, requests.get());
+            assertTrue(batcher.isBatchingSupported());
+        } finally {
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Client errors on a batch switch to single requests")
+    void testClientErrorFallsBack() {
+        JsonRpcBatcher batcher = new JsonRpcBatcher(payload -> {
+            if (payload[0] == '[') throw new IpcServerException(400, "Bad Request");
+            return stream(answer(ids(payload).get(0)));
+        }, 4, 1_000);
+        try {
+            List<CompletableFuture<Double>> results = submit(batcher, 4);
+            for (CompletableFuture<Double> result : results) {
+                assertTrue(result.join() > 0);
+            }
+            assertFalse(batcher.isBatchingSupported());
+            assertEquals(4, batcher.getSentSingleRequests());
+        } finally {
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Calls answered before a malformed batch response are not sent again")
+    void testMalformedAnswerFallsBack() {
+        JsonRpcBatcher batcher = new JsonRpcBatcher(payload -> {
+            List<Long> ids = ids(payload);
+            if (payload[0] != '[') return stream(answer(ids.get(0)));
+            return stream("[" + answer(ids.get(0)) + ",{\"jsonrpc\":\"2.0\",\"id\":" + ids.get(1) + ",\"res");
+        }, 3, 1_000);
+        try {
+            List<CompletableFuture<Double>> results = submit(batcher, 3);
+            for (CompletableFuture<Double> result : results) {
+                assertTrue(result.join() > 0);
+            }
+            assertFalse(batcher.isBatchingSupported());
+            assertEquals(2, batcher.getSentSingleRequests());
+        } finally {
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Lingered batches are in flight at the same time")
+    void testLingeredBatchesInFlightConcurrently() throws Exception {
+        CountDownLatch bothSent = new CountDownLatch(2);
+        JsonRpcBatcher batcher = new JsonRpcBatcher(payload -> {
+            bothSent.countDown();
+            // The first batch is only answered once the second one was sent as well
+            bothSent.await(5, TimeUnit.SECONDS);
+            StringBuilder answers = new StringBuilder("[");
+            for (long id : ids(payload)) {
+                if (answers.length() > 1) answers.append(',');
+                answers.append(answer(id));
+            }
+            return stream(answers.append(']').toString());
+        }, 64, 1);
+        try {
+            List<CompletableFuture<Double>> first = submit(batcher, 2);
+            Thread.sleep(50);
+            List<CompletableFuture<Double>> second = submit(batcher, 2);
+
+            assertTrue(bothSent.await(5, TimeUnit.SECONDS));
+            for (CompletableFuture<Double> result : first) result.join();
+            for (CompletableFuture<Double> result : second) result.join();
+            assertEquals(2, batcher.getSentBatches());
+        } finally {
+            batcher.shutdown();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonRpcCodecTest {
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Hands out one byte per read, as a slow network would
+    private static InputStream trickle(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+
+    @Test
+    void testEncodesCalculateRequest() {
+        byte[] params = JsonRpcCodec.calculateParams("Shipment \"A\"", "EF 3.1", null, 2.5);
+        String request = new String(JsonRpcCodec.encodeRequest("result/calculate", params, 7), StandardCharsets.UTF_8);
+
+        assertEquals("{\"jsonrpc\":\"2.0\",\"method\":\"result/calculate\",\"params\":"
+                + "{\"target\":{\"@type\":\"ProductSystem\",\"@id\":\"Shipment \\\"A\\\"\"},"
+                + "\"impactMethod\":{\"@type\":\"ImpactMethod\",\"@id\":\"EF 3.1\"},\"amount\":2.5,"
+                + "\"allocation\":\"USE_DEFAULT_ALLOCATION\",\"withCosts\":false,\"withRegionalization\":false},\"id\":7}", request);
+    }
+
+    @Test
+    void testDecodesCalculationState() throws IOException {
+        JsonRpcCodec.CalculationState state = JsonRpcCodec.readResponse(trickle(
+                "{\"jsonrpc\": \"2.0\", \"result\": {\"@type\": \"Result\", \"@id\": \"r-\\u00e41\", \"isReady\": true,"
+                        + " \"time\": 1.5e3, \"flags\": [null, false, {}]}, \"id\": 3}"),
+                JsonRpcCodec.CALCULATION_STATE);
+
+        assertEquals("r-ä1", state.resultId());
+        assertTrue(state.ready());
+    }
+
+    @Test
+    @DisplayName("Weighted impacts are summed over all impact categories")
+    void testSumsWeightedImpacts() throws IOException {
+        StringBuilder json = new StringBuilder("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":[");
+        double expected = 0.0;
+        for (int i = 0; i < 2_000; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"@type\":\"ImpactValue\",\"impactCategory\":{\"@id\":\"c").append(i)
+                    .append("\",\"name\":\"Category, \\\"").append(i).append("\\\"\"},\"amount\":").append(i * 0.25).append("E-1}");
+            expected += i * 0.025;
+        }
+        json.append("]}");
+
+        assertEquals(expected, JsonRpcCodec.readResponse(stream(json.toString()), JsonRpcCodec.WEIGHTED_IMPACT_SUM), 1e-9);
+    }
+
+    @Test
+    @DisplayName("A null amount counts as 0 for the impact results as for the weighted sum")
+    void testNullAmounts() throws IOException {
+        String json = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":[{\"impactCategory\":{\"@id\":\"gwp\"},\"amount\":2.0},"
+                + "{\"impactCategory\":{\"@id\":\"acid\"},\"amount\":null}]}";
+
+        assertEquals(2.0, JsonRpcCodec.readResponse(stream(json), JsonRpcCodec.WEIGHTED_IMPACT_SUM), 1e-12);
+        assertEquals(Map.of("gwp", 2.0, "acid", 0.0), JsonRpcCodec.readResponse(stream(json), JsonRpcCodec.IMPACT_VECTOR));
+    }
+
+    @Test
+    @DisplayName("Normalization sets of an impact method weight the characterized impacts like OpenLCA does")
+    void testDecodesImpactsAndNormalizationSets() throws IOException {
+        Map<String, Double> impacts = JsonRpcCodec.readResponse(trickle("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":["
+                + "{\"impactCategory\":{\"@id\":\"gwp\"},\"amount\":4.0},{\"impactCategory\":{\"@id\":\"acid\"},\"amount\":1.5},"
+                + "{\"impactCategory\":{\"@id\":\"gwp\"},\"amount\":1.0}]}"), JsonRpcCodec.IMPACT_VECTOR);
+        Map<String, NormalizationWeighting> normalizationSets = JsonRpcCodec.readResponse(stream("{\"jsonrpc\":\"2.0\",\"id\":2,"
+                + "\"result\":{\"@type\":\"ImpactMethod\",\"@id\":\"EF 3.1\",\"nwSets\":[{\"@id\":\"EU\",\"factors\":["
+                + "{\"impactCategory\":{\"@id\":\"gwp\"},\"normalisationFactor\":2.0,\"weightingFactor\":0.5},"
+                + "{\"impactCategory\":{\"@id\":\"acid\"},\"normalisationFactor\":null,\"weightingFactor\":2.0}]},"
+                + "{\"@id\":\"Zero\",\"factors\":[{\"impactCategory\":{\"@id\":\"gwp\"},\"normalisationFactor\":0.0}]}]}}"),
+                JsonRpcCodec.NORMALIZATION_SETS);
+
+        assertEquals(Map.of("gwp", 5.0, "acid", 1.5), impacts);
+        assertEquals(5.0 / 2.0 * 0.5 + 1.5 * 2.0, normalizationSets.get("EU").singleScore(impacts), 1e-12);
+        assertEquals(0.0, normalizationSets.get("Zero").singleScore(impacts), 1e-12);
+    }
+
+    @Test
+    void testErrorResponseThrows() {
+        JsonRpcCodec.RpcException error = assertThrows(JsonRpcCodec.RpcException.class, () -> JsonRpcCodec.readResponse(
+                stream("{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32602,\"message\":\"Unknown product system\"},\"id\":1}"),
+                JsonRpcCodec.CALCULATION_STATE));
+        assertTrue(error.getMessage().contains("-32602"));
+        assertTrue(error.getMessage().contains("Unknown product system"));
+    }
+
+    @Test
+    void testMalformedResponseThrows() {
+        assertThrows(IOException.class, () -> JsonRpcCodec.readResponse(stream("{\"result\":{\"@id\":\"r1\""),
+                JsonRpcCodec.CALCULATION_STATE));
+        assertThrows(IOException.class, () -> JsonRpcCodec.readResponse(stream("{\"id\":1}"),
+                JsonRpcCodec.CALCULATION_STATE));
+    }
+
+    @Test
+    @DisplayName("Escaped surrogate pairs are joined, lone surrogates keep the characters after them")
+    void testDecodesSurrogates() throws IOException {
+        assertEquals("a\uD83D\uDE00b", new JsonRpcCodec.Reader(trickle("\"a\\ud83d\\ude00b\"")).nextString());
+        assertEquals("?x", new JsonRpcCodec.Reader(trickle("\"\\ud83dx\"")).nextString());
+        assertEquals("?\n", new JsonRpcCodec.Reader(trickle("\"\\ud83d\\n\"")).nextString());
+        assertEquals("?A", new JsonRpcCodec.Reader(trickle("\"\\ud83d\\u0041\"")).nextString());
+        assertEquals("?\uD83D\uDE00", new JsonRpcCodec.Reader(trickle("\"\\ud83d\\ud83d\\ude00\"")).nextString());
+    }
+
+    @Test
+    @DisplayName("A batch response with a null id fails only its own call")
+    void testNullIdInBatchResponse() throws Exception {
+        List<String> payloads = new ArrayList<>();
+        JsonRpcBatcher batcher = new JsonRpcBatcher(payload -> {
+            String request = new String(payload, StandardCharsets.UTF_8);
+            payloads.add(request);
+            if (request.startsWith("[")) {
+                return stream("[{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32600,\"message\":\"Invalid Request\"},\"id\":null},"
+                        + "{\"jsonrpc\":\"2.0\",\"result\":{\"@id\":\"r2\",\"isReady\":true},\"id\":2}]");
+            }
+            return stream("{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32600,\"message\":\"Invalid Request\"},\"id\":null}");
+        }, 2, 1_000);
+
+        CompletableFuture<JsonRpcCodec.CalculationState> first = batcher.submit("result/state", JsonRpcCodec.resultRefParams("a"), JsonRpcCodec.CALCULATION_STATE);
+        CompletableFuture<JsonRpcCodec.CalculationState> second = batcher.submit("result/state", JsonRpcCodec.resultRefParams("b"), JsonRpcCodec.CALCULATION_STATE);
+
+        assertEquals("r2", second.get().resultId());
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(batcher.isBatchingSupported());
+        // The call without answer was sent once more on its own
+        assertEquals(2, payloads.size());
+        batcher.shutdown();
+    }
+
+    @Test
+    @DisplayName("Batch responses are matched by id, in any order and whether the id comes first or last")
+    void testBatchResponsesAreDemultiplexed() throws Exception {
+        List<String> payloads = new ArrayList<>();
+        JsonRpcBatcher batcher = new JsonRpcBatcher(payload -> {
+            payloads.add(new String(payload, StandardCharsets.UTF_8));
+            return trickle("[{\"jsonrpc\":\"2.0\",\"result\":{\"@id\":\"second\",\"isReady\":false},\"id\":2},"
+                    + "{\"jsonrpc\":\"2.0\",\"id\":3,\"error\":{\"code\":1,\"message\":\"failed\"}},"
+                    + "{\"id\":1,\"jsonrpc\":\"2.0\",\"result\":{\"@id\":\"first\",\"isReady\":true}}]");
+        }, 3, 1_000);
+
+        CompletableFuture<JsonRpcCodec.CalculationState> first = batcher.submit("result/state", JsonRpcCodec.resultRefParams("first"), JsonRpcCodec.CALCULATION_STATE);
+        CompletableFuture<JsonRpcCodec.CalculationState> second = batcher.submit("result/state", JsonRpcCodec.resultRefParams("second"), JsonRpcCodec.CALCULATION_STATE);
+        CompletableFuture<JsonRpcCodec.CalculationState> third = batcher.submit("result/state", JsonRpcCodec.resultRefParams("third"), JsonRpcCodec.CALCULATION_STATE);
+
+        assertEquals(1, payloads.size());
+        assertTrue(payloads.get(0).startsWith("[{"));
+        assertEquals(new JsonRpcCodec.CalculationState("first", true), first.get());
+        assertEquals(new JsonRpcCodec.CalculationState("second", false), second.get());
+        assertTrue(third.isCompletedExceptionally());
+        assertTrue(batcher.isBatchingSupported());
+        batcher.shutdown();
+    }
+
+    @Test
+    void testFallsBackToSingleRequestsWithoutBatchSupport() throws Exception {
+        List<String> payloads = new ArrayList<>();
+        JsonRpcBatcher batcher = new JsonRpcBatcher(payload -> {
+            String request = new String(payload, StandardCharsets.UTF_8);
+            payloads.add(request);
+            if (request.startsWith("[")) {
+                return stream("{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32600,\"message\":\"Invalid Request\"},\"id\":null}");
+            }
+            String id = request.substring(request.lastIndexOf(':') + 1, request.length() - 1);
+            return stream("{\"jsonrpc\":\"2.0\",\"result\":{\"@id\":\"r" + id + "\",\"isReady\":true},\"id\":" + id + "}");
+        }, 2, 1_000);
+
+        CompletableFuture<JsonRpcCodec.CalculationState> first = batcher.submit("result/state", JsonRpcCodec.resultRefParams("a"), JsonRpcCodec.CALCULATION_STATE);
+        CompletableFuture<JsonRpcCodec.CalculationState> second = batcher.submit("result/state", JsonRpcCodec.resultRefParams("b"), JsonRpcCodec.CALCULATION_STATE);
+
+        assertEquals("r1", first.get().resultId());
+        assertEquals("r2", second.get().resultId());
+        assertFalse(batcher.isBatchingSupported());
+        assertEquals(3, payloads.size());
+        batcher.shutdown();
+    }
+}
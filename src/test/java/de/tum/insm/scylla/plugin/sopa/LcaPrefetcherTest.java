@@ -0,0 +1,76 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import de.hpi.bpt.scylla.exception.ScyllaValidationException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LcaPrefetcherTest {
+
+    private static Map<String, Object> distribution(String distributionType, Map<String, Object>... values) {
+        return Map.of("distributionType", distributionType, "values", List.of(values));
+    }
+
+    @Test
+    @DisplayName("Only distributions with few amounts are prefetched amount by amount")
+    void testDiscreteAmounts() {
+        assertEquals(List.of(2.5), LcaPrefetcher.discreteAmounts(
+                distribution("constantDistribution", Map.of("id", "constantValue", "value", 2.5))));
+        assertEquals(List.of(1.0, 4.0), LcaPrefetcher.discreteAmounts(distribution("arbitraryFiniteProbabilityDistribution",
+                Map.of("id", "value", "value", 1.0, "frequency", 0.5),
+                Map.of("id", "value", "value", 4.0, "frequency", 0.25),
+                Map.of("id", "value", "value", 1.0, "frequency", 0.25))));
+        assertEquals(List.of(0.0, 1.0, 2.0), LcaPrefetcher.discreteAmounts(distribution("binomialDistribution",
+                Map.of("id", "probability", "value", 0.3), Map.of("id", "amount", "value", 2))));
+        assertNull(LcaPrefetcher.discreteAmounts(distribution("binomialDistribution",
+                Map.of("id", "probability", "value", 0.3), Map.of("id", "amount", "value", 1_000))));
+        assertNull(LcaPrefetcher.discreteAmounts(distribution("uniformDistribution",
+                Map.of("id", "lower", "value", 1.0), Map.of("id", "upper", "value", 2.0))));
+    }
+
+    @Test
+    @DisplayName("Prefetched scores are not calculated again when the costs are needed")
+    void testCostsUsePrefetchedScores() throws Exception {
+        CostDriverSettings settings = CostDriverSettings.getInstance();
+        String impactMethod = settings.getImpactMethod();
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setScoreTable(Map.of("Shipment_A_Lorry", 0.5, "Receipt", 2.0)).setLatency(20, 0);
+            ConcreteCostDriver.setBridgeServer(server.getUrl(), 8);
+            ConcreteCostDriver.clearCostCache();
+            settings.setImpactMethod("EF 3.1");
+
+            AbstractCostDriver transport = new AbstractCostDriver("Transport", new ArrayList<>());
+            ConcreteCostDriver lorry = new ConcreteCostDriver("Shipment_A_Lorry", transport, 0.0);
+            ConcreteCostDriver receipt = new ConcreteCostDriver("Receipt", transport, 0.0);
+            receipt.setCalculationMode(CalculationMode.LINEAR);
+            transport.addChild(lorry);
+            transport.addChild(receipt);
+            CostVariant byLorry = new CostVariant("By lorry", 0.5, Map.of("Transport", "Shipment_A_Lorry"));
+            byLorry.setDriverDistributions(Map.of("Shipment_A_Lorry",
+                    distribution("constantDistribution", Map.of("id", "constantValue", "value", 4.0))));
+            CostVariant withReceipt = new CostVariant("With receipt", 0.5, Map.of("Transport", "Receipt"));
+            withReceipt.setDriverDistributions(Map.of("Receipt",
+                    distribution("uniformDistribution", Map.of("id", "lower", "value", 1.0), Map.of("id", "upper", "value", 2.0))));
+
+            LcaPrefetcher.reset(List.of(transport));
+            LcaPrefetcher.start(List.of(byLorry, withReceipt)).join();
+
+            assertEquals(2, LcaPrefetcher.getScheduled());
+            assertEquals(2, LcaPrefetcher.getCompleted());
+            assertEquals(2, server.getCalculations());
+            assertEquals(2.0, lorry.calculateCost("EF 3.1", null, 4.0), 1e-9);
+            assertEquals(3.0, receipt.calculateCost("EF 3.1", null, 1.5), 1e-9);
+            assertEquals(2, server.getCalculations());
+        } finally {
+            settings.setImpactMethod(impactMethod);
+            LcaPrefetcher.reset(List.of());
+            ConcreteCostDriver.clearCostCache();
+        }
+    }
+}
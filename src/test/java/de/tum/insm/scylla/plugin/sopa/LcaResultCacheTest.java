@@ -0,0 +1,91 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LcaResultCacheTest {
+
+    @Test
+    @DisplayName("Amounts closer than the old two-decimal key are kept apart")
+    void testKeysAreExact() {
+        LcaResultCache cache = new LcaResultCache(100);
+        cache.put(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.001), 1.0);
+        cache.put(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.004), 2.0);
+
+        assertEquals(1.0, cache.get(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.001)));
+        assertEquals(2.0, cache.get(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.004)));
+        assertNull(cache.get(LcaCacheKey.of("Receipt", "EF 3.1", "EU 2010", 1.001)));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    @DisplayName("The cache never grows beyond its bound")
+    void testSizeIsBounded() {
+        LcaResultCache cache = new LcaResultCache(160);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(LcaCacheKey.of("Shipment_A_Lorry", "EF 3.1", null, i), i);
+        }
+
+        assertTrue(cache.size() <= 160, "Cache holds " + cache.size() + " entries");
+        assertEquals(10_000 - cache.size(), cache.getEvictions());
+    }
+
+    @Test
+    void testRecentlyUsedEntriesSurvive() {
+        LcaResultCache cache = new LcaResultCache(160);
+        LcaCacheKey frequentlyUsed = LcaCacheKey.of("Filling_A", "EF 3.1", null, 1.0);
+        cache.put(frequentlyUsed, 42.0);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(LcaCacheKey.of("Filling_B", "EF 3.1", null, i), i);
+            assertNotNull(cache.get(frequentlyUsed), "Evicted after " + i + " insertions");
+        }
+    }
+
+    @Test
+    void testConcurrentAccess() throws InterruptedException {
+        LcaResultCache cache = new LcaResultCache(1_000);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    LcaCacheKey key = LcaCacheKey.of("Receipt", "EF 3.1", null, i % 500);
+                    if (cache.get(key) == null) {
+                        cache.put(key, i % 500);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(500, cache.size());
+        assertEquals(8 * 5_000, cache.getHits() + cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    void testClearResetsStatistics() {
+        LcaResultCache cache = new LcaResultCache(10);
+        cache.put(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.0), 1.0);
+        cache.get(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.0));
+        cache.recordLoad(1_000_000);
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getLoads());
+        assertEquals(0.0, cache.getHitRate());
+    }
+}
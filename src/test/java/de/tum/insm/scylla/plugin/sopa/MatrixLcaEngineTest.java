@@ -0,0 +1,64 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MatrixLcaEngineTest {
+
+    private Path directory;
+
+    /**
+     * Two processes supplying each other: the lorry transport needs 0.5 diesel, the diesel 0.2 transport.
+     * One elementary flow (CO2) is characterized into two impact categories.
+     */
+    @BeforeEach
+    void exportMatrices() throws IOException {
+        directory = Files.createTempDirectory("lca-matrices");
+        Files.writeString(directory.resolve("index_A.csv"), "index,productSystemId\n0,Shipment_A_Lorry\n1,Diesel\n");
+        Files.writeString(directory.resolve("A.csv"), "row,column,value\n0,0,1.0\n1,0,-0.5\n0,1,-0.2\n1,1,1.0\n");
+        Files.writeString(directory.resolve("B.csv"), "# CO2 per unit of process output\n0,0,2.0\n0,1,1.0\n");
+        Files.writeString(directory.resolve("C.csv"), "0,0,1.0\n1,0,3.0\n");
+        Files.writeString(directory.resolve("NW.csv"), "impactIndex,normalizationFactor,weightingFactor\n0,2.0,1.0\n1,1.0,2.0\n");
+        Files.writeString(directory.resolve("matrix.properties"), "impactMethod=EF 3.1\nnormalizationSet=EU 2010\n");
+    }
+
+    @Test
+    @DisplayName("Scores are the weighted impacts of the inventory of the demand")
+    void testCalculatesWeightedScore() throws IOException {
+        MatrixLcaEngine engine = MatrixLcaEngine.load(directory);
+
+        // Scaling (1/0.9, 0.5/0.9), CO2 2.5/0.9, weighted impacts 0.5 * 1 + 2 * 3 per CO2
+        assertEquals(2 * 6.5 * 2.5 / 0.9, engine.calculate("Shipment_A_Lorry", "EF 3.1", "EU 2010", 2.0), 1e-12);
+        assertEquals(6.5 * 1.4 / 0.9, engine.calculate("Diesel", "EF 3.1", "EU 2010", 1.0), 1e-12);
+        assertEquals(2.5 / 0.9, engine.inventory("Shipment_A_Lorry", 1.0)[0], 1e-12);
+        // Without normalization set the impacts are summed
+        assertEquals(4.0 * 2.5 / 0.9, engine.calculate("Shipment_A_Lorry", "EF 3.1", null, 1.0), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Unknown product systems and other impact methods fail the calculation")
+    void testRejectsWhatWasNotExported() throws IOException {
+        MatrixLcaEngine engine = MatrixLcaEngine.load(directory);
+
+        assertThrows(CompletionException.class, () -> engine.calculateCostAsync("Receipt", "EF 3.1", "EU 2010", 1.0).join());
+        assertThrows(CompletionException.class, () -> engine.calculateCostAsync("Diesel", "ReCiPe", "EU 2010", 1.0).join());
+        assertThrows(IllegalArgumentException.class, () -> engine.calculate("Diesel", "EF 3.1", "World 2000", 1.0));
+    }
+
+    @Test
+    @DisplayName("A singular technology matrix is reported when loading")
+    void testRejectsSingularTechnologyMatrix() throws IOException {
+        Files.writeString(directory.resolve("A.csv"), "0,0,1.0\n1,0,1.0\n0,1,1.0\n1,1,1.0\n");
+
+        assertThrows(IOException.class, () -> MatrixLcaEngine.load(directory));
+    }
+}
@@ -0,0 +1,255 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenLcaCostCalculatorTest {
+
+    private static final PollingStrategy FAST_POLLING = new PollingStrategy(1, 1.0, 1, 0.0, 5_000);
+
+    @Test
+    @DisplayName("Calculates, polls and disposes a result against the fake server")
+    void testCalculatesScore() throws Exception {
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setScoreTable(Map.of("Shipment_A_Lorry", 0.25)).setNotReadyPolls(2);
+            OpenLcaCostCalculator calculator = new OpenLcaCostCalculator(server.getUrl());
+            calculator.setPollingStrategy(FAST_POLLING);
+            calculator.setBatching(false, 1, 0);
+            try {
+                double score = calculator.calculateCostAsync("Shipment_A_Lorry", "EF 3.1", null, 8.0).join();
+
+                assertEquals(2.0, score, 1e-9);
+                assertEquals(1, server.getCalculations());
+                assertEquals(2, server.getStatePolls());
+                assertEquals(2, calculator.getMaxPolls());
+                assertEquals(1, server.getDisposals());
+                assertEquals(0, server.getOpenResults());
+            } finally {
+                calculator.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent calculations travel in batches")
+    void testBatchesConcurrentCalculations() throws Exception {
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setDefaultScore(amount -> amount).setLatency(5, 0);
+            OpenLcaCostCalculator calculator = new OpenLcaCostCalculator(server.getUrl(), 16);
+            calculator.setPollingStrategy(FAST_POLLING);
+            calculator.setBatching(true, 16, 5);
+            try {
+                List<CompletableFuture<Double>> scores = new ArrayList<>();
+                for (int i = 0; i < 32; i++) {
+                    scores.add(calculator.calculateCostAsync("Product_" + i, "EF 3.1", null, i));
+                }
+                for (int i = 0; i < scores.size(); i++) {
+                    assertEquals(i, scores.get(i).join(), 1e-9);
+                }
+
+                assertEquals(32, server.getCalculations());
+                assertTrue(server.getBatchRequests() > 0);
+                assertTrue(calculator.getBatchedCalls() > 0);
+            } finally {
+                calculator.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Falls back to single requests if the server rejects batches")
+    void testFallsBackToSingleRequests() throws Exception {
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setDefaultScore(amount -> 2 * amount).setBatchSupported(false).setLatency(2, 0);
+            OpenLcaCostCalculator calculator = new OpenLcaCostCalculator(server.getUrl(), 8);
+            calculator.setPollingStrategy(FAST_POLLING);
+            calculator.setBatching(true, 8, 5);
+            try {
+                List<CompletableFuture<Double>> scores = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    scores.add(calculator.calculateCostAsync("Product_" + i, "EF 3.1", null, i));
+                }
+                for (int i = 0; i < scores.size(); i++) {
+                    assertEquals(2.0 * i, scores.get(i).join(), 1e-9);
+                }
+                assertEquals(0, server.getBatchRequests());
+            } finally {
+                calculator.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Errors of the server fail the calculation")
+    void testFailsOnServerErrors() throws Exception {
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.failProductSystem("Broken");
+            OpenLcaCostCalculator calculator = new OpenLcaCostCalculator(server.getUrl());
+            calculator.setBatching(false, 1, 0);
+            try {
+                assertThrows(CompletionException.class,
+                        () -> calculator.calculateCostAsync("Broken", "EF 3.1", null, 1.0).join());
+                assertThrows(CompletionException.class,
+                        () -> calculator.calculateCostAsync("Unknown", "EF 3.1", null, 1.0).join());
+
+                server.setScore("Unknown", amount -> 1.0).setHttpErrorRate(1.0);
+                assertThrows(CompletionException.class,
+                        () -> calculator.calculateCostAsync("Unknown", "EF 3.1", null, 1.0).join());
+                assertTrue(server.getHttpErrors() > 0);
+                assertTrue(calculator.isReachable(1_000));
+            } finally {
+                calculator.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Only failures of the server open the circuit breaker, not errors of single calculations")
+    void testCircuitBreakerCountsServerFailures() throws Exception {
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.failProductSystem("Broken");
+            OpenLcaCostCalculator calculator = new OpenLcaCostCalculator(server.getUrl());
+            calculator.setBatching(false, 1, 0);
+            calculator.setCircuitBreaker(new CircuitBreaker(0.5, 2, 4, 60_000));
+            try {
+                for (int i = 0; i < 4; i++) {
+                    assertThrows(CompletionException.class,
+                            () -> calculator.calculateCostAsync("Broken", "EF 3.1", null, 1.0).join());
+                }
+                assertEquals(CircuitBreaker.State.CLOSED, calculator.getCircuitBreaker().getState());
+
+                server.setHttpErrorRate(1.0);
+                for (int i = 0; i < 4; i++) {
+                    assertThrows(CompletionException.class,
+                            () -> calculator.calculateCostAsync("Broken", "EF 3.1", null, 1.0).join());
+                }
+                assertEquals(CircuitBreaker.State.OPEN, calculator.getCircuitBreaker().getState());
+                assertTrue(calculator.getCircuitBreaker().getRejectedCalls() > 0);
+            } finally {
+                calculator.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Reads of normalization sets run like calculations and their server failures open the circuit breaker")
+    void testNormalizationSetReadsUseCircuitBreaker() throws Exception {
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            OpenLcaCostCalculator calculator = new OpenLcaCostCalculator(server.getUrl());
+            calculator.setBatching(false, 1, 0);
+            calculator.setCircuitBreaker(new CircuitBreaker(0.5, 2, 4, 60_000));
+            try {
+                assertTrue(calculator.loadNormalizationSetsAsync("EF 3.1").join().containsKey(FakeOpenLcaServer.NW_SET));
+
+                server.setHttpErrorRate(1.0);
+                for (int i = 0; i < 4; i++) {
+                    assertThrows(CompletionException.class, () -> calculator.loadNormalizationSetsAsync("EF 3.1").join());
+                }
+                assertEquals(CircuitBreaker.State.OPEN, calculator.getCircuitBreaker().getState());
+                CompletionException e = assertThrows(CompletionException.class, () -> calculator.loadNormalizationSetsAsync("EF 3.1").join());
+                assertTrue(e.getCause() instanceof CalculationRejectedException, e.getCause().toString());
+            } finally {
+                calculator.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Server errors on a batch fail its calls but keep batching on")
+    void testBatchedServerErrors() throws Exception {
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setDefaultScore(amount -> amount).setHttpErrorRate(1.0);
+            OpenLcaCostCalculator calculator = new OpenLcaCostCalculator(server.getUrl(), 4);
+            calculator.setPollingStrategy(FAST_POLLING);
+            calculator.setBatching(true, 4, 5);
+            try {
+                List<CompletableFuture<Double>> failing = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    failing.add(calculator.calculateCostAsync("Product_" + i, "EF 3.1", null, i));
+                }
+                for (CompletableFuture<Double> score : failing) {
+                    assertThrows(CompletionException.class, score::join);
+                }
+                // No call was sent again on its own after its batch failed
+                assertTrue(server.getRequests() <= 4, server.getRequests() + " requests");
+
+                server.setHttpErrorRate(0.0);
+                List<CompletableFuture<Double>> scores = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    scores.add(calculator.calculateCostAsync("Product_" + i, "EF 3.1", null, i));
+                }
+                for (int i = 0; i < scores.size(); i++) {
+                    assertEquals(i, scores.get(i).join(), 1e-9);
+                }
+                assertTrue(server.getBatchRequests() > 0);
+            } finally {
+                calculator.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A pool moves calculations of an unreachable server to the others")
+    void testPoolFailsOverToReachableServer() throws Exception {
+        FakeOpenLcaServer stopped = FakeOpenLcaServer.start();
+        String unreachableUrl = stopped.getUrl();
+        stopped.close();
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setDefaultScore(amount -> 3 * amount);
+            OpenLcaServerPool pool = new OpenLcaServerPool(List.of(unreachableUrl, server.getUrl()), 4, 0);
+            pool.setPollingStrategy(FAST_POLLING);
+            try {
+                for (int i = 0; i < 20; i++) {
+                    assertEquals(3.0, pool.calculateCostAsync("Product_" + i, "EF 3.1", null, 1.0).join(), 1e-9);
+                }
+                assertEquals(20, server.getCalculations());
+                assertFalse(pool.getAvailableUrls().isEmpty());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Local weighting applies every normalization set to one impact calculation")
+    void testWeightsCachedImpactsLocally() throws Exception {
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setScoreTable(Map.of("Shipment_A_Lorry", 0.5));
+            OpenLcaServerPool pool = new OpenLcaServerPool(List.of(server.getUrl()), 4, 0);
+            pool.setPollingStrategy(FAST_POLLING);
+            pool.setLocalWeighting(true, 100);
+            try {
+                double score = pool.calculateCostAsync("Shipment_A_Lorry", "EF 3.1", FakeOpenLcaServer.NW_SET, 4.0).join();
+                double doubled = pool.calculateCostAsync("Shipment_A_Lorry", "EF 3.1", FakeOpenLcaServer.NW_SET_DOUBLED, 4.0).join();
+
+                assertEquals(2.0, score, 1e-9);
+                assertEquals(4.0, doubled, 1e-9);
+                assertEquals(1, server.getCalculations());
+                assertEquals(1, server.getImpactMethodReads());
+                assertEquals(1, pool.getImpactVectorHits());
+                assertEquals(1, pool.getImpactVectorMisses());
+                // The server weights the same way
+                pool.setLocalWeighting(false, 100);
+                assertEquals(score, pool.calculateCostAsync("Shipment_A_Lorry", "EF 3.1", FakeOpenLcaServer.NW_SET, 4.0).join(), 1e-9);
+                assertEquals(doubled, pool.calculateCostAsync("Shipment_A_Lorry", "EF 3.1", FakeOpenLcaServer.NW_SET_DOUBLED, 4.0).join(), 1e-9);
+                assertThrows(CompletionException.class, () -> {
+                    pool.setLocalWeighting(true, 100);
+                    pool.calculateCostAsync("Shipment_A_Lorry", "EF 3.1", "unknown-nw-set", 4.0).join();
+                });
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
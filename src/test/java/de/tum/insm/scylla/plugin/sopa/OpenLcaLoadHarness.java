@@ -0,0 +1,464 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import de.hpi.bpt.scylla.exception.ScyllaValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives cost calculations against an OpenLCA JSON-RPC endpoint from many threads and reports throughput,
+ * latency percentiles, polls per calculation and error rates as JSON, so that client changes can be compared.
+ *
+ * Without a url a {@link FakeOpenLcaServer} with the configured latency, not-ready polls and error rate is started.
+ * The workload is generated up front from the seed: every calculation either reuses an earlier key with the
+ * key reuse ratio, or draws a new product system and amount.
+ *
+ * <pre>
+ * java ... OpenLcaLoadHarness target=driver concurrency=64 calculations=20000 keyReuse=0.8 report=target/load.json
+ * </pre>
+ */
+class OpenLcaLoadHarness {
+
+    enum Target {
+        /** {@link OpenLcaCostCalculator#calculateCostAsync}, without any caching */
+        CALCULATOR,
+        /** {@link ConcreteCostDriver#calculateCost}, including caches and single-flight */
+        DRIVER
+    }
+
+    enum AmountDistribution {
+        CONSTANT, UNIFORM, LOG_NORMAL;
+
+        double sample(SplittableRandom random, double mean) {
+            return switch (this) {
+                case CONSTANT -> mean;
+                case UNIFORM -> random.nextDouble(0.0, 2.0 * mean);
+                // Standard deviation of the logarithm of 1, scaled so that the mean is kept
+                case LOG_NORMAL -> mean * Math.exp(gaussian(random) - 0.5);
+            };
+        }
+
+        private static double gaussian(SplittableRandom random) {
+            double u = 1.0 - random.nextDouble();
+            return Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * random.nextDouble());
+        }
+    }
+
+    private record Calculation(String productSystemId, double amount) {
+    }
+
+    /**
+     * Outcome of a load run, all latencies in milliseconds
+     */
+    record Report(Map<String, Object> settings, int calculations, long errors, double durationSeconds,
+                  double throughputPerSecond, double meanMillis, double p50Millis, double p99Millis, double p999Millis,
+                  double maxMillis, double pollsPerCalculation, int maxPolls, long serverCalculations) {
+
+        double errorRate() {
+            return calculations == 0 ? 0.0 : (double) errors / calculations;
+        }
+
+        String toJson() {
+            StringBuilder json = new StringBuilder("{\n  \"settings\": {");
+            int i = 0;
+            for (Map.Entry<String, Object> setting : settings.entrySet()) {
+                json.append(i++ == 0 ? "\n" : ",\n").append("    \"").append(setting.getKey()).append("\": ");
+                Object value = setting.getValue();
+                json.append(value instanceof Number || value instanceof Boolean ? format(value) : "\"" + value + "\"");
+            }
+            json.append("\n  },\n");
+            field(json, "calculations", calculations);
+            field(json, "errors", errors);
+            field(json, "errorRate", errorRate());
+            field(json, "durationSeconds", durationSeconds);
+            field(json, "throughputPerSecond", throughputPerSecond);
+            field(json, "latencyMeanMillis", meanMillis);
+            field(json, "latencyP50Millis", p50Millis);
+            field(json, "latencyP99Millis", p99Millis);
+            field(json, "latencyP999Millis", p999Millis);
+            field(json, "latencyMaxMillis", maxMillis);
+            field(json, "pollsPerCalculation", pollsPerCalculation);
+            field(json, "maxPolls", maxPolls);
+            json.append("  \"serverCalculations\": ").append(serverCalculations).append("\n}\n");
+            return json.toString();
+        }
+
+        private static void field(StringBuilder json, String name, Object value) {
+            json.append("  \"").append(name).append("\": ").append(format(value)).append(",\n");
+        }
+
+        private static String format(Object value) {
+            return value instanceof Double number ? String.format(Locale.ROOT, "%.4f", number) : String.valueOf(value);
+        }
+    }
+
+    private String url;
+    private Target target = Target.CALCULATOR;
+    private int concurrency = 16;
+    private int calculations = 10_000;
+    private int warmup = 200;
+    private double keyReuseRatio = 0.5;
+    private int productSystems = 50;
+    private AmountDistribution amountDistribution = AmountDistribution.LOG_NORMAL;
+    private double meanAmount = 100.0;
+    private long seed = 42;
+    private String impactMethodId = "EF 3.1";
+    private String normalizationSetId;
+    // Settings of the fake server started without url
+    private long fakeLatencyMillis = 2;
+    private long fakeLatencyJitterMillis = 3;
+    private int fakeNotReadyPolls = 1;
+    private double fakeHttpErrorRate;
+
+    OpenLcaLoadHarness url(String url) {
+        this.url = url;
+        return this;
+    }
+
+    OpenLcaLoadHarness target(Target target) {
+        this.target = target;
+        return this;
+    }
+
+    OpenLcaLoadHarness concurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    OpenLcaLoadHarness calculations(int calculations) {
+        this.calculations = calculations;
+        return this;
+    }
+
+    /**
+     * @param warmup calculations sent before the measurement, not part of the report
+     */
+    OpenLcaLoadHarness warmup(int warmup) {
+        this.warmup = warmup;
+        return this;
+    }
+
+    /**
+     * @param keyReuseRatio probability that a calculation repeats product system and amount of an earlier one
+     */
+    OpenLcaLoadHarness keyReuseRatio(double keyReuseRatio) {
+        this.keyReuseRatio = keyReuseRatio;
+        return this;
+    }
+
+    OpenLcaLoadHarness productSystems(int productSystems) {
+        this.productSystems = productSystems;
+        return this;
+    }
+
+    OpenLcaLoadHarness amounts(AmountDistribution amountDistribution, double meanAmount) {
+        this.amountDistribution = amountDistribution;
+        this.meanAmount = meanAmount;
+        return this;
+    }
+
+    OpenLcaLoadHarness seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    OpenLcaLoadHarness impactMethod(String impactMethodId, String normalizationSetId) {
+        this.impactMethodId = impactMethodId;
+        this.normalizationSetId = normalizationSetId;
+        return this;
+    }
+
+    OpenLcaLoadHarness fakeServer(long latencyMillis, long latencyJitterMillis, int notReadyPolls, double httpErrorRate) {
+        this.fakeLatencyMillis = latencyMillis;
+        this.fakeLatencyJitterMillis = latencyJitterMillis;
+        this.fakeNotReadyPolls = notReadyPolls;
+        this.fakeHttpErrorRate = httpErrorRate;
+        return this;
+    }
+
+    /**
+     * Runs the load, against a fake server if no url is set
+     */
+    Report run() throws Exception {
+        if (url != null) {
+            return run(url, null);
+        }
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setDefaultScore(amount -> 0.01 * amount + 0.5)
+                    .setLatency(fakeLatencyMillis, fakeLatencyJitterMillis)
+                    .setNotReadyPolls(fakeNotReadyPolls)
+                    .setHttpErrorRate(fakeHttpErrorRate);
+            return run(server.getUrl(), server);
+        }
+    }
+
+    private Report run(String serverUrl, FakeOpenLcaServer fakeServer) throws Exception {
+        List<Calculation> warmupLoad = workload(warmup, seed ^ 0x5DEECE66DL);
+        List<Calculation> load = workload(calculations, seed);
+
+        Client client = target == Target.CALCULATOR ? calculatorClient(serverUrl) : driverClient(serverUrl);
+        try {
+            execute(client, warmupLoad);
+            long fakeCalculationsBefore = fakeServer == null ? 0 : fakeServer.getCalculations();
+            long pollsBefore = client.totalPolls();
+            long polledBefore = client.polledCalculations();
+            client.resetErrors();
+
+            long start = System.nanoTime();
+            long[] latencies = execute(client, load);
+            double durationSeconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            long polled = client.polledCalculations() - polledBefore;
+            return new Report(settings(serverUrl), load.size(), client.errors(), durationSeconds,
+                    load.size() / Math.max(durationSeconds, 1e-9),
+                    Arrays.stream(latencies).average().orElse(0) / 1e6,
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                    latencies.length == 0 ? 0.0 : latencies[latencies.length - 1] / 1e6,
+                    polled == 0 ? 0.0 : (double) (client.totalPolls() - pollsBefore) / polled,
+                    client.maxPolls(),
+                    fakeServer == null ? -1 : fakeServer.getCalculations() - fakeCalculationsBefore);
+        } finally {
+            client.close();
+        }
+    }
+
+    private List<Calculation> workload(int size, long workloadSeed) {
+        SplittableRandom random = new SplittableRandom(workloadSeed);
+        List<Calculation> workload = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (!workload.isEmpty() && random.nextDouble() < keyReuseRatio) {
+                workload.add(workload.get(random.nextInt(workload.size())));
+            } else {
+                workload.add(new Calculation("Product_" + random.nextInt(productSystems),
+                        amountDistribution.sample(random, meanAmount)));
+            }
+        }
+        return workload;
+    }
+
+    /**
+     * Sends every calculation from the configured number of threads
+     *
+     * @return latency of every calculation in nanoseconds
+     */
+    private long[] execute(Client client, List<Calculation> load) throws Exception {
+        long[] latencies = new long[load.size()];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "load-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int worker = 0; worker < concurrency; worker++) {
+                running.add(workers.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < load.size(); i = next.getAndIncrement()) {
+                        long start = System.nanoTime();
+                        client.calculate(load.get(i));
+                        latencies[i] = System.nanoTime() - start;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return latencies;
+    }
+
+    private static double percentile(long[] sortedLatencies, double quantile) {
+        if (sortedLatencies.length == 0) return 0.0;
+        int rank = (int) Math.ceil(quantile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, Math.min(sortedLatencies.length - 1, rank))] / 1e6;
+    }
+
+    private Map<String, Object> settings(String serverUrl) {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("url", serverUrl);
+        settings.put("fakeServer", url == null);
+        settings.put("target", target.name().toLowerCase(Locale.ROOT));
+        settings.put("concurrency", concurrency);
+        settings.put("warmup", warmup);
+        settings.put("keyReuseRatio", keyReuseRatio);
+        settings.put("productSystems", productSystems);
+        settings.put("amountDistribution", amountDistribution.name().toLowerCase(Locale.ROOT));
+        settings.put("meanAmount", meanAmount);
+        settings.put("seed", seed);
+        return settings;
+    }
+
+    /**
+     * Sends a single calculation the way the target does and keeps the statistics the report needs
+     */
+    private abstract static class Client implements AutoCloseable {
+        final LongAdder errors = new LongAdder();
+
+        abstract void calculate(Calculation calculation);
+
+        abstract List<OpenLcaCostCalculator> calculators();
+
+        long errors() {
+            return errors.sum();
+        }
+
+        void resetErrors() {
+            errors.reset();
+        }
+
+        long totalPolls() {
+            return calculators().stream().mapToLong(OpenLcaCostCalculator::getTotalPolls).sum();
+        }
+
+        long polledCalculations() {
+            return calculators().stream().mapToLong(OpenLcaCostCalculator::getPolledCalculations).sum();
+        }
+
+        int maxPolls() {
+            return calculators().stream().mapToInt(OpenLcaCostCalculator::getMaxPolls).max().orElse(0);
+        }
+
+        @Override
+        public abstract void close();
+    }
+
+    private Client calculatorClient(String serverUrl) {
+        OpenLcaCostCalculator calculator = new OpenLcaCostCalculator(serverUrl, concurrency);
+        return new Client() {
+            @Override
+            void calculate(Calculation calculation) {
+                try {
+                    calculator.calculateCostAsync(calculation.productSystemId(), impactMethodId, normalizationSetId,
+                            calculation.amount()).join();
+                } catch (RuntimeException e) {
+                    errors.increment();
+                }
+            }
+
+            @Override
+            List<OpenLcaCostCalculator> calculators() {
+                return List.of(calculator);
+            }
+
+            @Override
+            public void close() {
+                calculator.shutdown();
+            }
+        };
+    }
+
+    private Client driverClient(String serverUrl) throws ScyllaValidationException {
+        ConcreteCostDriver.setBridgeServer(serverUrl, concurrency);
+        ConcreteCostDriver.clearCostCache();
+        List<ConcreteCostDriver> children = new ArrayList<>();
+        AbstractCostDriver parent = new AbstractCostDriver("Load", children);
+        Map<String, ConcreteCostDriver> drivers = new LinkedHashMap<>();
+        for (int i = 0; i < productSystems; i++) {
+            ConcreteCostDriver driver = new ConcreteCostDriver("Product_" + i, parent, 0.0);
+            children.add(driver);
+            drivers.put(driver.getOpenLCAProductSystemRef(), driver);
+        }
+        return new Client() {
+            private long fallbacksBefore;
+
+            @Override
+            void calculate(Calculation calculation) {
+                drivers.get(calculation.productSystemId()).calculateCost(impactMethodId, normalizationSetId, calculation.amount());
+            }
+
+            @Override
+            long errors() {
+                // Failed calculations fall back to the static score instead of failing
+                return drivers.values().stream().mapToLong(ConcreteCostDriver::getFallbacks).sum() - fallbacksBefore;
+            }
+
+            @Override
+            void resetErrors() {
+                fallbacksBefore += errors();
+            }
+
+            @Override
+            List<OpenLcaCostCalculator> calculators() {
+                return ConcreteCostDriver.getCostCalculator().getCalculators();
+            }
+
+            @Override
+            public void close() {
+                System.out.println("[OpenLcaLoadHarness] " + ConcreteCostDriver.getCostCache());
+                ConcreteCostDriver.clearCostCache();
+            }
+        };
+    }
+
+    /**
+     * Runs the load and writes the report as JSON
+     */
+    Report runAndWrite(Path reportFile) throws Exception {
+        Report report = run();
+        if (reportFile.getParent() != null) {
+            Files.createDirectories(reportFile.getParent());
+        }
+        Files.writeString(reportFile, report.toJson(), StandardCharsets.UTF_8);
+        return report;
+    }
+
+    /**
+     * Arguments are key=value pairs named like the setters, e.g. concurrency=64 keyReuse=0.8 amounts=uniform
+     * meanAmount=50 url=http://localhost:8081 report=target/load-test.json
+     */
+    public static void main(String[] args) throws Exception {
+        OpenLcaLoadHarness harness = new OpenLcaLoadHarness();
+        Path reportFile = Path.of("target", "load-test.json");
+        double meanAmount = harness.meanAmount;
+        AmountDistribution amounts = harness.amountDistribution;
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Argument " + arg + " is not of the form key=value");
+            }
+            String key = arg.substring(0, separator);
+            String value = arg.substring(separator + 1);
+            switch (key) {
+                case "url" -> harness.url(value);
+                case "target" -> harness.target(Target.valueOf(value.toUpperCase(Locale.ROOT)));
+                case "concurrency" -> harness.concurrency(Integer.parseInt(value));
+                case "calculations" -> harness.calculations(Integer.parseInt(value));
+                case "warmup" -> harness.warmup(Integer.parseInt(value));
+                case "keyReuse" -> harness.keyReuseRatio(Double.parseDouble(value));
+                case "productSystems" -> harness.productSystems(Integer.parseInt(value));
+                case "amounts" -> amounts = AmountDistribution.valueOf(value.toUpperCase(Locale.ROOT));
+                case "meanAmount" -> meanAmount = Double.parseDouble(value);
+                case "seed" -> harness.seed(Long.parseLong(value));
+                case "impactMethod" -> harness.impactMethodId = value;
+                case "normalizationSet" -> harness.normalizationSetId = value;
+                case "fakeLatency" -> harness.fakeLatencyMillis = Long.parseLong(value);
+                case "fakeJitter" -> harness.fakeLatencyJitterMillis = Long.parseLong(value);
+                case "fakeNotReadyPolls" -> harness.fakeNotReadyPolls = Integer.parseInt(value);
+                case "fakeErrorRate" -> harness.fakeHttpErrorRate = Double.parseDouble(value);
+                case "report" -> reportFile = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown argument " + key);
+            }
+        }
+        harness.amounts(amounts, meanAmount);
+        Report report = harness.runAndWrite(reportFile);
+        System.out.print(report.toJson());
+        System.out.println("Report written to " + reportFile.toAbsolutePath());
+    }
+}
@@ -0,0 +1,49 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenLcaLoadHarnessTest {
+
+    @Test
+    @DisplayName("Reports latency percentiles and polls of the calculator as JSON")
+    void testWritesCalculatorReport() throws Exception {
+        Path reportFile = Files.createTempDirectory("load-test").resolve("report.json");
+        OpenLcaLoadHarness.Report report = new OpenLcaLoadHarness()
+                .concurrency(8).calculations(200).warmup(20).keyReuseRatio(0.5)
+                .fakeServer(1, 1, 1, 0.0)
+                .runAndWrite(reportFile);
+
+        assertEquals(200, report.calculations());
+        assertEquals(0, report.errors());
+        assertEquals(200, report.serverCalculations());
+        assertTrue(report.p50Millis() <= report.p99Millis() && report.p99Millis() <= report.p999Millis());
+        assertTrue(report.p999Millis() <= report.maxMillis());
+        assertEquals(1.0, report.pollsPerCalculation(), 1e-9);
+
+        String json = Files.readString(reportFile);
+        assertTrue(json.contains("\"latencyP999Millis\": "));
+        assertTrue(json.contains("\"target\": \"calculator\""));
+    }
+
+    @Test
+    @DisplayName("Reused keys are served by the cost cache of the drivers")
+    void testDriverTargetReusesKeys() throws Exception {
+        OpenLcaLoadHarness.Report report = new OpenLcaLoadHarness()
+                .target(OpenLcaLoadHarness.Target.DRIVER)
+                .concurrency(8).calculations(300).warmup(0).keyReuseRatio(0.9).productSystems(5)
+                .amounts(OpenLcaLoadHarness.AmountDistribution.UNIFORM, 10.0)
+                .fakeServer(1, 0, 0, 0.0)
+                .run();
+
+        assertEquals(300, report.calculations());
+        assertEquals(0, report.errors());
+        assertTrue(report.serverCalculations() < report.calculations());
+    }
+}
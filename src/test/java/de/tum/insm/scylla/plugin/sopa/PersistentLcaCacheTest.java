@@ -0,0 +1,102 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PersistentLcaCacheTest {
+
+    private Path cacheFile;
+
+    @BeforeEach
+    void createCacheFile() throws IOException {
+        cacheFile = Files.createTempFile("lca-cache", ".bin");
+        Files.delete(cacheFile);
+    }
+
+    @AfterEach
+    void deleteCacheFile() throws IOException {
+        Files.deleteIfExists(cacheFile);
+    }
+
+    @Test
+    @DisplayName("Scores survive reopening the cache")
+    void testScoresArePersisted() throws IOException {
+        try (PersistentLcaCache cache = new PersistentLcaCache(cacheFile, "db-1")) {
+            cache.put(LcaCacheKey.of("Shipment_A_Lorry", "EF 3.1", "EU 2010", 2.5), 0.125);
+            cache.put(LcaCacheKey.of("Shipment_A_Lorry", "EF 3.1", null, 1.0), 0.05);
+        }
+        try (PersistentLcaCache cache = new PersistentLcaCache(cacheFile, "db-1")) {
+            assertEquals(2, cache.size());
+            assertEquals(0.125, cache.get(LcaCacheKey.of("Shipment_A_Lorry", "EF 3.1", "EU 2010", 2.5)));
+            assertEquals(0.05, cache.get(LcaCacheKey.of("Shipment_A_Lorry", "EF 3.1", null, 1.0)));
+            assertNull(cache.get(LcaCacheKey.of("Shipment_A_Lorry", "EF 3.1", "EU 2010", 2.5000001)));
+            assertNull(cache.get(LcaCacheKey.of("Shipment_A_Lorry", "ReCiPe", "EU 2010", 2.5)));
+        }
+    }
+
+    @Test
+    @DisplayName("Scores of another database are not returned")
+    void testFingerprintSeparatesDatabases() throws IOException {
+        try (PersistentLcaCache cache = new PersistentLcaCache(cacheFile, "db-1")) {
+            cache.put(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.0), 3.0);
+        }
+        try (PersistentLcaCache cache = new PersistentLcaCache(cacheFile, "db-2")) {
+            assertNull(cache.get(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.0)));
+            cache.put(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.0), 4.0);
+            assertEquals(4.0, cache.get(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.0)));
+        }
+        try (PersistentLcaCache cache = new PersistentLcaCache(cacheFile, "db-1")) {
+            assertEquals(3.0, cache.get(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.0)));
+        }
+    }
+
+    @Test
+    @DisplayName("Appends of one cache instance are visible to another one on the same file")
+    void testConcurrentInstancesShareAppends() throws IOException {
+        try (PersistentLcaCache first = new PersistentLcaCache(cacheFile, "db-1");
+             PersistentLcaCache second = new PersistentLcaCache(cacheFile, "db-1")) {
+            first.put(LcaCacheKey.of("Filling_A", "EF 3.1", null, 1.0), 7.0);
+            assertEquals(7.0, second.get(LcaCacheKey.of("Filling_A", "EF 3.1", null, 1.0)));
+            second.put(LcaCacheKey.of("Filling_A", "EF 3.1", null, 2.0), 14.0);
+            // Already cached by the first instance, must not be appended again
+            second.put(LcaCacheKey.of("Filling_A", "EF 3.1", null, 1.0), 7.0);
+            assertEquals(14.0, first.get(LcaCacheKey.of("Filling_A", "EF 3.1", null, 2.0)));
+            assertEquals(2, first.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Many records and records larger than the read buffer are all read back")
+    void testManyAndLargeRecords() throws IOException {
+        String longId = "Shipment_".repeat(20_000);
+        try (PersistentLcaCache cache = new PersistentLcaCache(cacheFile, "db-1")) {
+            for (int i = 0; i < 5_000; i++) {
+                cache.put(LcaCacheKey.of("Shipment_" + i, "EF 3.1", null, 1.0), i);
+            }
+            cache.put(LcaCacheKey.of(longId, "EF 3.1", null, 1.0), -1.0);
+            cache.put(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.0), -2.0);
+        }
+        try (PersistentLcaCache cache = new PersistentLcaCache(cacheFile, "db-1")) {
+            assertEquals(5_002, cache.size());
+            assertEquals(4_999.0, cache.get(LcaCacheKey.of("Shipment_4999", "EF 3.1", null, 1.0)));
+            assertEquals(-1.0, cache.get(LcaCacheKey.of(longId, "EF 3.1", null, 1.0)));
+            assertEquals(-2.0, cache.get(LcaCacheKey.of("Receipt", "EF 3.1", null, 1.0)));
+        }
+    }
+
+    @Test
+    void testRejectsForeignFiles() throws IOException {
+        Files.writeString(cacheFile, "not a cache file at all");
+        assertThrows(IOException.class, () -> new PersistentLcaCache(cacheFile, "db-1"));
+    }
+}
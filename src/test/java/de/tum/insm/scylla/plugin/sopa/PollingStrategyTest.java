@@ -0,0 +1,92 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PollingStrategyTest {
+
+    @Test
+    @DisplayName("Delays grow exponentially up to the maximum delay")
+    void testBackoffSequence() {
+        PollingStrategy strategy = new PollingStrategy(20, 2.0, 200, 0.0, 30_000);
+
+        long[] expected = {20, 40, 80, 160, 200, 200, 200};
+        for (int poll = 0; poll < expected.length; poll++) {
+            assertEquals(expected[poll], strategy.delayBeforePoll(poll), "poll " + poll);
+        }
+        // Many polls neither overflow nor exceed the maximum
+        assertEquals(200, strategy.delayBeforePoll(10_000));
+    }
+
+    @Test
+    @DisplayName("Jitter stays within its relative bounds")
+    void testJitterBounds() {
+        PollingStrategy strategy = new PollingStrategy(100, 1.0, 100, 0.2, 30_000);
+
+        for (int i = 0; i < 1_000; i++) {
+            long delay = strategy.delayBeforePoll(i);
+            assertTrue(delay >= 80 && delay <= 120, "delay " + delay);
+        }
+    }
+
+    @Test
+    @DisplayName("Invalid parameters are rejected")
+    void testRejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new PollingStrategy(-1, 2.0, 100, 0.0, 1_000));
+        assertThrows(IllegalArgumentException.class, () -> new PollingStrategy(200, 2.0, 100, 0.0, 1_000));
+        assertThrows(IllegalArgumentException.class, () -> new PollingStrategy(20, 0.5, 100, 0.0, 1_000));
+        assertThrows(IllegalArgumentException.class, () -> new PollingStrategy(20, 2.0, 100, 1.5, 1_000));
+        assertThrows(IllegalArgumentException.class, () -> new PollingStrategy(20, 2.0, 100, 0.0, 0));
+    }
+
+    @Test
+    @DisplayName("A calculation that is not ready before the deadline fails")
+    void testDeadline() throws Exception {
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setDefaultScore(amount -> amount).setNotReadyPolls(Integer.MAX_VALUE);
+            OpenLcaCostCalculator calculator = new OpenLcaCostCalculator(server.getUrl());
+            calculator.setPollingStrategy(new PollingStrategy(10, 2.0, 40, 0.0, 200));
+            calculator.setBatching(false, 1, 0);
+            try {
+                long start = System.nanoTime();
+                assertThrows(CompletionException.class,
+                        () -> calculator.calculateCostAsync("Slow", "EF 3.1", null, 1.0).join());
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+                // At most the delays 10 + 20 + 40 + 40 + 40 + 40 ms and a last one cut to the deadline fit into it,
+                // request times come on top
+                long polls = server.getStatePolls();
+                assertTrue(polls >= 1 && polls <= 7, polls + " polls");
+                assertEquals(polls, calculator.getMaxPolls());
+                assertTrue(elapsedMillis >= 200, "gave up after " + elapsedMillis + " ms");
+                assertTrue(elapsedMillis < 2_000, "gave up after " + elapsedMillis + " ms");
+            } finally {
+                calculator.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("The result is polled once more at the deadline instead of giving up before a longer delay")
+    void testPollsAtDeadline() throws Exception {
+        try (FakeOpenLcaServer server = FakeOpenLcaServer.start()) {
+            server.setDefaultScore(amount -> amount).setNotReadyPolls(5);
+            OpenLcaCostCalculator calculator = new OpenLcaCostCalculator(server.getUrl());
+            // The delays 10 + 20 + 40 + 80 ms fit into the deadline, the next one of 160 ms does not
+            calculator.setPollingStrategy(new PollingStrategy(10, 2.0, 1_000, 0.0, 300));
+            calculator.setBatching(false, 1, 0);
+            try {
+                assertEquals(2.0, calculator.calculateCostAsync("Slow", "EF 3.1", null, 2.0).join(), 1e-9);
+                assertEquals(5, calculator.getMaxPolls());
+            } finally {
+                calculator.shutdown();
+            }
+        }
+    }
+}
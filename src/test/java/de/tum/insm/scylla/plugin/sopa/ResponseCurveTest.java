@@ -0,0 +1,73 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseCurveTest {
+
+    private final AtomicInteger calculations = new AtomicInteger();
+
+    private DoubleFunction<CompletableFuture<Double>> exact(DoubleUnaryOperator score) {
+        return amount -> {
+            calculations.incrementAndGet();
+            return CompletableFuture.completedFuture(score.applyAsDouble(amount));
+        };
+    }
+
+    @Test
+    @DisplayName("Linear product systems need no refinement")
+    void testLinearScoreIsReproduced() {
+        ResponseCurve curve = ResponseCurve.build(exact(amount -> 3.0 * amount), new AmountRange(0.0, 10.0),
+                ResponseCurve.Interpolation.LINEAR, 5, 33, 0.01);
+
+        assertEquals(5, curve.getGridPoints());
+        assertEquals(0.0, curve.getMaxObservedError(), 1e-12);
+        assertEquals(7.5, curve.valueAt(2.5), 1e-12);
+        assertEquals(27.3, curve.valueAt(9.1), 1e-12);
+        // 5 grid points and one check per interval
+        assertEquals(9, calculations.get());
+    }
+
+    @Test
+    @DisplayName("Fixed setup flows are refined to the tolerance")
+    void testNonLinearScoreIsRefined() {
+        DoubleUnaryOperator score = amount -> 50.0 + 2.0 * amount + 0.5 * amount * amount;
+        ResponseCurve curve = ResponseCurve.build(exact(score), new AmountRange(1.0, 100.0),
+                ResponseCurve.Interpolation.MONOTONE_CUBIC, 3, 65, 0.001);
+
+        assertTrue(curve.getGridPoints() > 3, "Curve was not refined");
+        assertTrue(curve.getMaxObservedError() > 0.001, "Refinement must have observed errors above the tolerance");
+        for (double amount = 1.0; amount <= 100.0; amount += 0.7) {
+            double exactScore = score.applyAsDouble(amount);
+            assertTrue(ResponseCurve.relativeError(curve.valueAt(amount), exactScore) < 0.005,
+                    "Interpolation at " + amount + " too far from " + exactScore);
+        }
+    }
+
+    @Test
+    void testRefinementStopsAtMaxGridPoints() {
+        ResponseCurve curve = ResponseCurve.build(exact(Math::exp), new AmountRange(0.0, 20.0),
+                ResponseCurve.Interpolation.LINEAR, 3, 6, 1e-9);
+
+        assertEquals(6, curve.getGridPoints());
+        assertTrue(curve.getMaxObservedError() > 1e-9);
+    }
+
+    @Test
+    void testConstantDistributionNeedsOneCalculation() {
+        ResponseCurve curve = ResponseCurve.build(exact(amount -> amount + 1.0), new AmountRange(4.0, 4.0),
+                ResponseCurve.Interpolation.MONOTONE_CUBIC, 5, 33, 0.01);
+
+        assertEquals(1, curve.getGridPoints());
+        assertEquals(5.0, curve.valueAt(4.0), 1e-12);
+        assertEquals(1, calculations.get());
+    }
+}
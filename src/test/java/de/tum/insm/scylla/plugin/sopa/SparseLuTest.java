@@ -0,0 +1,76 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SparseLuTest {
+
+    // Sparse matrix shaped like a technology matrix: outputs on the diagonal, a few inputs off it
+    private static SparseMatrix randomTechnologyMatrix(int n, int inputsPerProcess, long seed) {
+        Random random = new Random(seed);
+        SparseMatrix.Builder builder = SparseMatrix.builder();
+        for (int j = 0; j < n; j++) {
+            builder.add(j, j, 1.0 + random.nextDouble());
+            for (int input = 0; input < inputsPerProcess; input++) {
+                builder.add(random.nextInt(n), j, -0.3 * random.nextDouble());
+            }
+        }
+        return builder.build(n, n);
+    }
+
+    private static double[] randomVector(int n, long seed) {
+        Random random = new Random(seed);
+        double[] vector = new double[n];
+        for (int i = 0; i < n; i++) {
+            vector[i] = random.nextGaussian();
+        }
+        return vector;
+    }
+
+    @Test
+    @DisplayName("Solves a sparse system and its transpose")
+    void testSolvesRandomSystem() {
+        SparseMatrix a = randomTechnologyMatrix(500, 4, 1);
+        SparseLu lu = SparseLu.factorize(a);
+        double[] b = randomVector(500, 2);
+
+        assertArrayEquals(b, a.multiply(lu.solve(b)), 1e-9);
+        assertArrayEquals(b, a.multiplyTransposed(lu.solveTransposed(b)), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Pivots rows if the diagonal is zero")
+    void testPivotsZeroDiagonal() {
+        SparseMatrix a = SparseMatrix.builder()
+                .add(1, 0, 2.0).add(0, 1, 3.0).add(2, 1, 1.0).add(2, 2, 4.0).add(0, 2, 1.0)
+                .build(3, 3);
+        SparseLu lu = SparseLu.factorize(a);
+
+        double[] x = lu.solve(new double[]{5.0, 4.0, 9.0});
+        assertArrayEquals(new double[]{5.0, 4.0, 9.0}, a.multiply(x), 1e-12);
+        assertEquals(2.0, x[0], 1e-12);
+    }
+
+    @Test
+    @DisplayName("Duplicate entries are summed")
+    void testSumsDuplicates() {
+        SparseMatrix a = SparseMatrix.builder().add(0, 0, 1.0).add(0, 0, 2.0).add(1, 1, 1.0).add(1, 0, 0.0).build(2, 2);
+
+        assertEquals(3.0, a.get(0, 0));
+        assertEquals(2, a.nonZeros());
+    }
+
+    @Test
+    @DisplayName("Singular matrices are rejected")
+    void testRejectsSingularMatrix() {
+        SparseMatrix a = SparseMatrix.builder().add(0, 0, 1.0).add(1, 0, 1.0).add(0, 1, 2.0).add(1, 1, 2.0).build(2, 2);
+
+        assertThrows(ArithmeticException.class, () -> SparseLu.factorize(a));
+    }
+}
@@ -0,0 +1,94 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatisticsXmlWriterTest {
+
+    // Writes the element's attributes, text and child elements as the plugin would, ignoring indentation
+    private static void replay(Element element, StatisticsXmlWriter xml) throws Exception {
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            xml.attribute(attributes.item(i).getNodeName(), attributes.item(i).getNodeValue());
+        }
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element childElement) {
+                xml.start(childElement.getTagName());
+                replay(childElement, xml);
+                xml.end();
+            } else if (child.getNodeType() == Node.TEXT_NODE && !child.getNodeValue().isBlank()) {
+                xml.text(child.getNodeValue());
+            }
+        }
+    }
+
+    private static String stream(Document document) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (StatisticsXmlWriter xml = new StatisticsXmlWriter(output, document.getDocumentElement().getTagName())) {
+            replay(document.getDocumentElement(), xml);
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String transform(Document document) throws Exception {
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(new DOMSource(document), new StreamResult(output));
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("The statistics file is written byte by byte as before")
+    void testSameOutputAsStatisticsFile() throws Exception {
+        byte[] statistics = Files.readAllBytes(Path.of(getClass().getClassLoader()
+                .getResource("Shipping/cost_driver_output/sustainability_global_information_statistic.xml").toURI()));
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(statistics));
+
+        // The file was written on Windows, the writer breaks lines like the platform it runs on
+        assertEquals(new String(statistics, StandardCharsets.UTF_8).replace("\r\n", System.lineSeparator()), stream(document));
+    }
+
+    @Test
+    @DisplayName("Empty elements, attribute order and escaping match the DOM serialization")
+    void testSameOutputAsTransformer() throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = document.createElement("Sustainability_Info");
+        document.appendChild(root);
+        Element driver = document.createElement("Concrete_Cost_Driver");
+        driver.setAttribute("id", "Shipment_A_Lorry");
+        driver.setAttribute("fallbacks", "3");
+        Element surrogate = document.createElement("Surrogate");
+        surrogate.setAttribute("upper", "2.0");
+        surrogate.setAttribute("impactMethod", "EF 3.1 & \"ReCiPe\" <2016>");
+        driver.appendChild(surrogate);
+        root.appendChild(driver);
+        Element activity = document.createElement("Activity_Cost");
+        Element cost = document.createElement("Activity_Average_Cost");
+        cost.setAttribute("id", "Ship_goods");
+        cost.setTextContent("1.5E-4 < 2 & > 1 \"é\"");
+        activity.appendChild(cost);
+        root.appendChild(activity);
+        root.appendChild(document.createElement("Activity_Instance_Cost"));
+
+        assertEquals(transform(document), stream(document));
+    }
+}
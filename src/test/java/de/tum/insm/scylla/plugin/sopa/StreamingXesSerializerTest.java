@@ -0,0 +1,76 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import org.deckfour.xes.classification.XEventAttributeClassifier;
+import org.deckfour.xes.extension.std.XConceptExtension;
+import org.deckfour.xes.extension.std.XLifecycleExtension;
+import org.deckfour.xes.extension.std.XTimeExtension;
+import org.deckfour.xes.factory.XFactory;
+import org.deckfour.xes.factory.XFactoryRegistry;
+import org.deckfour.xes.model.XAttributeMap;
+import org.deckfour.xes.model.XLog;
+import org.deckfour.xes.model.XTrace;
+import org.deckfour.xes.out.XesXmlSerializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamingXesSerializerTest {
+
+    private final XFactory factory = XFactoryRegistry.instance().currentDefault();
+
+    private XLog header() {
+        XLog log = factory.createLog();
+        log.getExtensions().add(XConceptExtension.instance());
+        log.getExtensions().add(XLifecycleExtension.instance());
+        log.getExtensions().add(XTimeExtension.instance());
+        log.getGlobalTraceAttributes().add(XConceptExtension.ATTR_NAME);
+        log.getGlobalEventAttributes().add(XConceptExtension.ATTR_NAME);
+        log.getClassifiers().add(new XEventAttributeClassifier("Cost Variant", "cost:variant"));
+        log.getAttributes().put(XConceptExtension.KEY_NAME,
+                factory.createAttributeLiteral(XConceptExtension.KEY_NAME, "Shipping", XConceptExtension.instance()));
+        return log;
+    }
+
+    private XTrace trace(int processInstanceId) {
+        XTrace trace = factory.createTrace();
+        trace.getAttributes().put(XConceptExtension.KEY_NAME, factory.createAttributeLiteral(XConceptExtension.KEY_NAME,
+                String.valueOf(processInstanceId), XConceptExtension.instance()));
+        trace.getAttributes().put("cost:Process_Instance",
+                factory.createAttributeLiteral("cost:Process_Instance", String.valueOf(processInstanceId * 0.5), null));
+        for (String taskName : new String[]{"Pack goods", "Ship goods"}) {
+            XAttributeMap attributes = factory.createAttributeMap();
+            attributes.put(XConceptExtension.KEY_NAME, factory.createAttributeLiteral(XConceptExtension.KEY_NAME, taskName, XConceptExtension.instance()));
+            attributes.put(XTimeExtension.KEY_TIMESTAMP, factory.createAttributeTimestamp(XTimeExtension.KEY_TIMESTAMP,
+                    new Date(1_700_000_000_000L + processInstanceId), XTimeExtension.instance()));
+            attributes.put("cost:activity", factory.createAttributeLiteral("cost:activity", "1.5 & <more>", null));
+            trace.add(factory.createEvent(attributes));
+        }
+        return trace;
+    }
+
+    @Test
+    @DisplayName("Streamed traces give the same log as serializing the complete log")
+    void testSameOutputAsCompleteLog() throws Exception {
+        XLog log = header();
+        for (int i = 0; i < 3; i++) {
+            log.add(trace(i));
+        }
+        ByteArrayOutputStream complete = new ByteArrayOutputStream();
+        new XesXmlSerializer().serialize(log, complete);
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try (StreamingXesSerializer serializer = new StreamingXesSerializer(header(), streamed)) {
+            for (int i = 0; i < 3; i++) {
+                serializer.write(trace(i));
+            }
+            assertEquals(3, serializer.getTraces());
+        }
+
+        assertEquals(complete.toString(StandardCharsets.UTF_8), streamed.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,93 @@
+package de.tum.insm.scylla.plugin.sopa;
+
+import de.hpi.bpt.scylla.exception.ScyllaValidationException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UnitScoreTableTest {
+
+    private static Path csvTable() throws IOException {
+        Path file = Files.createTempFile("unit-scores", ".csv");
+        Files.writeString(file, "productSystemId,impactMethodId,normalizationSetId,unitScore\n"
+                + "# transport per tkm\n"
+                + "Shipment_A_Lorry,EF 3.1,EU 2010,0.25\n"
+                + "Shipment_A_Lorry,EF 3.1,,0.5\n"
+                + "Receipt,EF 3.1,EU 2010,1e-3\n");
+        return file;
+    }
+
+    @Test
+    @DisplayName("Costs are the unit score times the amount")
+    void testScalesUnitScore() throws IOException {
+        UnitScoreTable table = UnitScoreTable.load(csvTable());
+
+        assertEquals(3, table.size());
+        assertEquals(1.0, table.calculateCostAsync("Shipment_A_Lorry", "EF 3.1", "EU 2010", 4.0).join());
+        assertEquals(2.0, table.calculateCostAsync("Shipment_A_Lorry", "EF 3.1", null, 4.0).join());
+        assertNull(table.getUnitScore("Receipt", "ReCiPe", "EU 2010"));
+
+        CompletionException missing = assertThrows(CompletionException.class,
+                () -> table.calculateCostAsync("Receipt", "ReCiPe", "EU 2010", 1.0).join());
+        assertTrue(missing.getCause() instanceof CalculationRejectedException);
+    }
+
+    @Test
+    @DisplayName("The binary form holds the same unit scores")
+    void testBinaryRoundTrip() throws IOException {
+        Path binary = Files.createTempFile("unit-scores", ".bin");
+        UnitScoreTable.load(csvTable()).writeBinary(binary);
+
+        UnitScoreTable table = UnitScoreTable.load(binary);
+        assertEquals(3, table.size());
+        assertEquals(0.25, table.getUnitScore("Shipment_A_Lorry", "EF 3.1", "EU 2010"));
+        assertEquals(0.5, table.getUnitScore("Shipment_A_Lorry", "EF 3.1", null));
+        assertEquals(1e-3, table.getUnitScore("Receipt", "EF 3.1", "EU 2010"));
+    }
+
+    @Test
+    @DisplayName("Malformed lines are reported")
+    void testRejectsMalformedLines() throws IOException {
+        Path file = Files.createTempFile("unit-scores", ".csv");
+        Files.writeString(file, "Shipment_A_Lorry,EF 3.1,EU 2010,0.25\nReceipt,EF 3.1,EU 2010,cheap\n");
+
+        assertThrows(IOException.class, () -> UnitScoreTable.load(file));
+    }
+
+    @Test
+    @DisplayName("Drivers use the calculator they or their abstract cost driver choose")
+    void testRoutesDriversToTheirCalculator() throws IOException, ScyllaValidationException {
+        ConcreteCostDriver.clearCostCache();
+        ConcreteCostDriver.setLocalCalculator(CostCalculatorType.TABLE, UnitScoreTable.load(csvTable()));
+        try {
+            AbstractCostDriver transport = new AbstractCostDriver("Transport", new ArrayList<>());
+            transport.setCalculatorType(CostCalculatorType.TABLE);
+            ConcreteCostDriver lorry = new ConcreteCostDriver("Shipment_A_Lorry", transport, 9.0);
+            ConcreteCostDriver receipt = new ConcreteCostDriver("Receipt", transport, 7.0);
+            receipt.setCalculatorType(CostCalculatorType.STATIC);
+            ConcreteCostDriver diesel = new ConcreteCostDriver("Diesel", transport, 3.0);
+            diesel.setCalculatorType(CostCalculatorType.ENGINE);
+
+            assertEquals(1.0, lorry.calculateCost("EF 3.1", "EU 2010", 4.0));
+            assertEquals(7.0, receipt.calculateCost("EF 3.1", "EU 2010", 4.0));
+            assertEquals(0, receipt.getFallbacks());
+            // No engine is configured, so the static cost is used instead
+            assertEquals(3.0, diesel.calculateCost("EF 3.1", "EU 2010", 4.0));
+            assertEquals(1, diesel.getFallbacks());
+            assertEquals(1, ConcreteCostDriver.getCostCache().getLoads());
+        } finally {
+            ConcreteCostDriver.setLocalCalculator(CostCalculatorType.TABLE, null);
+            ConcreteCostDriver.clearCostCache();
+        }
+    }
+}